@@ -0,0 +1,175 @@
+package com.communiverse.communiverse.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * equals/hashCode of the entities, and their insertion into the TreeSets holding their collections.
+ * Each benchmark goes over {@code size} entities, the scores are per entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private User[] users;
+    private Post[] posts;
+    private Comment[] comments;
+    // equal to the above, distinct instances
+    private User[] userCopies;
+    private Post[] postCopies;
+    private Comment[] commentCopies;
+
+    @Setup
+    public void setUp() {
+        users = new User[SIZE];
+        posts = new Post[SIZE];
+        comments = new Comment[SIZE];
+        userCopies = new User[SIZE];
+        postCopies = new Post[SIZE];
+        commentCopies = new Comment[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            users[i] = user(i);
+            posts[i] = post(i, users[i]);
+            comments[i] = comment(i, users[(i + 1) % SIZE], posts[i], i > 0 ? comments[i - 1] : null);
+            userCopies[i] = user(i);
+            postCopies[i] = post(i, userCopies[i]);
+            commentCopies[i] = comment(i, userCopies[(i + 1) % SIZE], postCopies[i], i > 0 ? commentCopies[i - 1] : null);
+        }
+        // a comment's hash includes its parent's, so the above chain makes it deep; keep it at most 10 levels
+        for (int i = 0; i < SIZE; i += 10) {
+            comments[i].setParentComment(null);
+            commentCopies[i].setParentComment(null);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int userHashCode() {
+        int hash = 0;
+        for (User user : users) {
+            hash += user.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int postHashCode() {
+        int hash = 0;
+        for (Post post : posts) {
+            hash += post.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int commentHashCode() {
+        int hash = 0;
+        for (Comment comment : comments) {
+            hash += comment.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int userEquals() {
+        int equal = 0;
+        for (int i = 0; i < SIZE; i++) {
+            equal += users[i].equals(userCopies[i]) ? 1 : 0;
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int postEquals() {
+        int equal = 0;
+        for (int i = 0; i < SIZE; i++) {
+            equal += posts[i].equals(postCopies[i]) ? 1 : 0;
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int commentEquals() {
+        int equal = 0;
+        for (int i = 0; i < SIZE; i++) {
+            equal += comments[i].equals(commentCopies[i]) ? 1 : 0;
+        }
+        return equal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Set<Post> postTreeSetInsertion() {
+        Set<Post> set = new TreeSet<>();
+        for (Post post : posts) {
+            set.add(post);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Set<Comment> commentTreeSetInsertion() {
+        Set<Comment> set = new TreeSet<>();
+        for (Comment comment : comments) {
+            set.add(comment);
+        }
+        return set;
+    }
+
+    // deterministic, distinct creation times so the TreeSets keep every entity
+
+    private static User user(int i) {
+        User user = new User();
+        user.setId((long) i);
+        user.setUserName("user" + i);
+        user.setEmail("user" + i + "@communiverse.com");
+        user.setPassword("password" + i);
+        user.setProfilePicture("https://communiverse.com/pictures/" + i + ".png");
+        user.setLastLogin(START.plusMinutes(i));
+        user.setCreated(START.plusSeconds(i));
+        user.setModified(START.plusSeconds(i));
+        return user;
+    }
+
+    private static Post post(int i, User user) {
+        Post post = new Post();
+        post.setId((long) i);
+        post.setTitle("title " + i);
+        post.setContent("content of post " + i + ", long enough to be representative of a short post body");
+        post.setImage("https://communiverse.com/images/" + i + ".png");
+        post.setUser(user);
+        // shuffled, so the insertions aren't in order
+        post.setCreated(START.plusSeconds((i * 7919L) % SIZE));
+        post.setModified(post.getCreated());
+        return post;
+    }
+
+    private static Comment comment(int i, User user, Post post, Comment parentComment) {
+        Comment comment = new Comment();
+        comment.setId((long) i);
+        comment.setContent("comment " + i + " on post " + post.getId());
+        comment.setUser(user);
+        comment.setPost(post);
+        comment.setParentComment(parentComment);
+        comment.setCreated(START.plusSeconds((i * 7919L) % SIZE));
+        comment.setModified(comment.getCreated());
+        return comment;
+    }
+}
@@ -0,0 +1,134 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.CommuniverseApplication;
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Dataset;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Scale;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full service calls against the embedded H2 DB of the {@code test} profile, seeded once per run by the
+ * SyntheticDataGenerator with {@code users} users, {@code posts} posts, about {@code likes} post likes and
+ * {@code comments} comments, the most commented post being read by getPostComments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    // users generated without any like, liking the posts in the likePost benchmark
+    private static final int LIKERS = 1000;
+
+    @Param("10000")
+    public int users;
+
+    @Param("50000")
+    public int posts;
+
+    @Param("200000")
+    public int likes;
+
+    @Param("100000")
+    public int comments;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private LikeService likeService;
+    private CommentService commentService;
+
+    private long firstLikerId;
+    private long firstPostId;
+    private long hotPostId;
+    // the index of the next (liker, post) pair to like
+    private final AtomicLong nextLike = new AtomicLong();
+
+    private User updatedUser;
+    private User otherUpdatedUser;
+    private User updatableUser;
+    private boolean alterToOther;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(CommuniverseApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run();
+        userService = context.getBean(UserService.class);
+        likeService = context.getBean(LikeService.class);
+        commentService = context.getBean(CommentService.class);
+        seed(context.getBean(JdbcTemplate.class));
+
+        updatableUser = new User();
+        updatedUser = new User();
+        updatedUser.setEmail("updated@communiverse.com");
+        updatedUser.setPassword("updated password");
+        updatedUser.setLastLogin(LocalDateTime.of(2024, 1, 1, 0, 0));
+        otherUpdatedUser = new User();
+        otherUpdatedUser.setEmail("other@communiverse.com");
+        otherUpdatedUser.setPassword("other password");
+        otherUpdatedUser.setLastLogin(LocalDateTime.of(2024, 1, 2, 0, 0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public User alterUserData() {
+        // alternates between two sources, so each call updates the target
+        alterToOther = !alterToOther;
+        userService.alterUserData(alterToOther ? otherUpdatedUser : updatedUser, updatableUser);
+        return updatableUser;
+    }
+
+    @Benchmark
+    public void likePost() {
+        long like = nextLike.getAndIncrement();
+        likeService.likePost(likeUserId(like), likePostId(like)).block();
+    }
+
+    @Benchmark
+    public List<Comment> getPostComments() {
+        return commentService.getPostComments(hotPostId).collectList().block();
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(jdbcTemplate);
+        Dataset dataset = generator.generate(Scale.defaults()
+                .users(users)
+                .maxFollowers(users / 10)
+                .posts(posts)
+                .postLikes(likes)
+                .comments(comments)
+                .commentLikes(likes / 10));
+        firstPostId = dataset.firstPostId();
+        hotPostId = dataset.postId(1);
+        firstLikerId = generator.generate(Scale.defaults().users(LIKERS).maxFollowers(0).posts(0)).firstUserId();
+        context.getBean(FollowerGraphService.class).load();
+    }
+
+    // a distinct (liker, post) pair for each index below LIKERS * posts
+    private long likeUserId(long like) {
+        return firstLikerId + like % LIKERS;
+    }
+
+    private long likePostId(long like) {
+        return firstPostId + like / LIKERS % posts;
+    }
+}
@@ -0,0 +1,93 @@
+package com.communiverse.communiverse.utils;
+
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.dto.UserDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the DTOs and of an error payload, Gson through JsonUtils against CompactJson.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_000_000);
+
+    private PostDto post;
+    private UserDto user;
+    private CommentDto comment;
+    private List<PostDto> page;
+    private String error;
+
+    @Setup
+    public void setUp() {
+        post = new PostDto(1L, "title of the post", "content of the post, long enough to be representative of a short " +
+                "post body with \"quotes\" and a\nline break", "https://communiverse.com/images/1.png",
+                2L, "author", 42, 7, CREATED, CREATED);
+        user = new UserDto(2L, "author", "author@communiverse.com", "https://communiverse.com/pictures/2.png",
+                CREATED, 1200, 300, CREATED, CREATED);
+        comment = new CommentDto(3L, "a reply to the post", 4L, "replier", 1L, null, 5, 2, CREATED, CREATED);
+        page = Collections.nCopies(20, post);
+        error = "BAD REQUEST, Status: 400, URI: /api/posts/1/get, Error: Post not found 1";
+    }
+
+    @Benchmark
+    public String gsonPost() {
+        return JsonUtils.toJson(post);
+    }
+
+    @Benchmark
+    public String compactPost() {
+        return CompactJson.toJson(post);
+    }
+
+    @Benchmark
+    public String gsonUser() {
+        return JsonUtils.toJson(user);
+    }
+
+    @Benchmark
+    public String compactUser() {
+        return CompactJson.toJson(user);
+    }
+
+    @Benchmark
+    public String gsonComment() {
+        return JsonUtils.toJson(comment);
+    }
+
+    @Benchmark
+    public String compactComment() {
+        return CompactJson.toJson(comment);
+    }
+
+    @Benchmark
+    public String gsonPostPage() {
+        return JsonUtils.toJson(page);
+    }
+
+    @Benchmark
+    public String compactPostPage() {
+        return CompactJson.toJson(page);
+    }
+
+    @Benchmark
+    public String gsonError() {
+        return JsonUtils.toJson(error);
+    }
+
+    @Benchmark
+    public String compactError() {
+        return CompactJson.toJson(error);
+    }
+}
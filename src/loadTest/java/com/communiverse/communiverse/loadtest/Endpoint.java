@@ -0,0 +1,91 @@
+package com.communiverse.communiverse.loadtest;
+
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Dataset;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+
+/**
+ * The endpoints driven by the load test, with their default share of the requests. Users, posts and comments are
+ * picked with a log-uniform skew over their ranks, so the popular ones of the generated data are the most requested.
+ */
+enum Endpoint {
+
+    USER_GET(10, "GET", (data, random) -> "/api/users/" + user(data, random) + "/get"),
+    USER_FOLLOWER_COUNT(5, "GET", (data, random) -> "/api/users/" + user(data, random) + "/followers/count"),
+    USER_FEED(5, "GET", (data, random) -> "/api/users/" + user(data, random) + "/feed"),
+    USER_FOLLOW(2, "POST", (data, random) -> "/api/users/" + user(data, random) + "/" + anyUser(data, random) + "/follow"),
+    POSTS_PAGE(5, "GET", (data, random) -> "/api/posts?limit=20"),
+    POST_GET(15, "GET", (data, random) -> "/api/posts/" + post(data, random) + "/get"),
+    POST_CREATE(3, "POST", (data, random) -> "/api/posts/create",
+            (data, random) -> "{\"title\":\"load test post\",\"content\":\"written by the load test\"," +
+                    "\"user\":{\"id\":" + anyUser(data, random) + "}}"),
+    POST_COMMENTS(8, "GET", (data, random) -> "/api/comments/post/" + post(data, random) + "/get"),
+    COMMENT_GET(8, "GET", (data, random) -> "/api/comments/" + comment(data, random) + "/get"),
+    COMMENT_ANCESTORS(3, "GET", (data, random) -> "/api/comments/" + comment(data, random) + "/ancestors"),
+    COMMENT_CREATE(4, "POST", (data, random) -> "/api/comments/create",
+            (data, random) -> "{\"content\":\"written by the load test\",\"user\":{\"id\":" + anyUser(data, random) +
+                    "},\"post\":{\"id\":" + post(data, random) + "}}"),
+    POST_LIKE(8, "POST", (data, random) -> "/api/likes/" + post(data, random) + "/" + anyUser(data, random) + "/like"),
+    POST_UNLIKE(4, "DELETE", (data, random) -> "/api/likes/" + post(data, random) + "/" + anyUser(data, random) + "/unlike"),
+    POST_LIKE_COUNT(5, "GET", (data, random) -> "/api/likes/post/" + post(data, random) + "/count"),
+    COMMENT_LIKE(3, "POST", (data, random) -> "/api/likes/comment/" + comment(data, random) + "/" + anyUser(data, random) + "/like");
+
+    private final int defaultWeight;
+    private final String method;
+    private final BiFunction<Dataset, SplittableRandom, String> path;
+    private final BiFunction<Dataset, SplittableRandom, String> body;
+
+    Endpoint(int defaultWeight, @NotNull String method, @NotNull BiFunction<Dataset, SplittableRandom, String> path) {
+        this(defaultWeight, method, path, null);
+    }
+
+    Endpoint(int defaultWeight, @NotNull String method, @NotNull BiFunction<Dataset, SplittableRandom, String> path,
+             @Nullable BiFunction<Dataset, SplittableRandom, String> body) {
+        this.defaultWeight = defaultWeight;
+        this.method = method;
+        this.path = path;
+        this.body = body;
+    }
+
+    int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    @NotNull String getMethod() {
+        return method;
+    }
+
+    @NotNull String path(@NotNull Dataset data, @NotNull SplittableRandom random) {
+        return path.apply(data, random);
+    }
+
+    // the JSON body of the request, null if it has none
+    @Nullable String body(@NotNull Dataset data, @NotNull SplittableRandom random) {
+        return body == null ? null : body.apply(data, random);
+    }
+
+    private static long user(@NotNull Dataset data, @NotNull SplittableRandom random) {
+        return data.userId(skewedRank(data.users(), random));
+    }
+
+    private static long anyUser(@NotNull Dataset data, @NotNull SplittableRandom random) {
+        return data.userId(1 + random.nextInt(data.users()));
+    }
+
+    private static long post(@NotNull Dataset data, @NotNull SplittableRandom random) {
+        return data.postId(skewedRank(data.posts(), random));
+    }
+
+    // comment ids are in the order of their post ranks, so the low ones are on the popular posts
+    private static long comment(@NotNull Dataset data, @NotNull SplittableRandom random) {
+        return data.firstCommentId() + skewedRank((int) Math.min(data.comments(), Integer.MAX_VALUE), random) - 1;
+    }
+
+    // rank r picked with a probability about proportional to 1 / r, like a Zipf distribution of exponent 1
+    private static int skewedRank(int n, @NotNull SplittableRandom random) {
+        return Math.max(1, (int) Math.pow(n, random.nextDouble()));
+    }
+}
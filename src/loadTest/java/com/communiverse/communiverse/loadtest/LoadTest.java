@@ -0,0 +1,292 @@
+package com.communiverse.communiverse.loadtest;
+
+import com.communiverse.communiverse.CommuniverseApplication;
+import com.communiverse.communiverse.services.FollowerGraphService;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Dataset;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Scale;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the HTTP API. It starts the application on the H2 {@code test} profile on a random port, seeds it with
+ * the SyntheticDataGenerator, then has {@code load.clients} virtual-thread clients send requests of the endpoint mix
+ * for a warm-up and a measured period. The latencies of each endpoint are recorded in an HdrHistogram, their
+ * p50/p99/p999 and the throughput are printed and written to {@code results.json} of the report directory.
+ * <p>
+ * Failed requests aren't recorded in the histograms, so the run fails when more than {@code load.maxErrorRatio} of an
+ * endpoint's requests failed, before looking at its latencies.
+ * <p>
+ * The p99 of each endpoint is compared with the baseline file of an earlier run, the run fails when one exceeds the
+ * baseline's by more than {@code load.maxP99Regression} (a ratio) and {@code load.minP99RegressionMs}. The baseline,
+ * {@code load.baseline}, is kept under src/loadTest/resources so it's committed and survives clean builds. It is
+ * written when missing, or overwritten with {@code load.saveBaseline=true}.
+ * <p>
+ * Each client sends its next request once the previous one is answered, so a slower server also gets fewer requests:
+ * the latencies of a saturated server are lower than a fixed request rate would show.
+ */
+public class LoadTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Latencies and throughput of an endpoint in a run, as written to the results and baseline files.
+     */
+    public record EndpointResult(long requests, long errors, double throughput, double p50Ms, double p99Ms,
+                                 double p999Ms, double maxMs) {
+    }
+
+    private record Options(int clients, int warmupSeconds, int durationSeconds, @NotNull Map<Endpoint, Integer> mix,
+                           int users, int posts, long seed, @NotNull Path reportDir, @NotNull Path baseline,
+                           boolean saveBaseline, double maxErrorRatio, double maxP99Regression,
+                           double minP99RegressionMs) {
+
+        private static @NotNull Options fromSystemProperties() {
+            Path reportDir = Path.of(System.getProperty("load.reportDir", "build/reports/load-test"));
+            return new Options(
+                    Integer.getInteger("load.clients", 64),
+                    Integer.getInteger("load.warmupSeconds", 10),
+                    Integer.getInteger("load.durationSeconds", 30),
+                    parseMix(System.getProperty("load.mix", "")),
+                    Integer.getInteger("load.users", 2_000),
+                    Integer.getInteger("load.posts", 10_000),
+                    Long.getLong("load.seed", 42),
+                    reportDir,
+                    Path.of(System.getProperty("load.baseline", "src/loadTest/resources/load-test-baseline.json")),
+                    Boolean.parseBoolean(System.getProperty("load.saveBaseline", "false")),
+                    Double.parseDouble(System.getProperty("load.maxErrorRatio", "0.01")),
+                    Double.parseDouble(System.getProperty("load.maxP99Regression", "0.25")),
+                    Double.parseDouble(System.getProperty("load.minP99RegressionMs", "2")));
+        }
+
+        // e.g. POST_GET=20,POST_LIKE=5 - the default mix with those weights replaced, 0 leaving an endpoint out
+        private static @NotNull Map<Endpoint, Integer> parseMix(@NotNull String mix) {
+            Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+            for (Endpoint endpoint : Endpoint.values()) {
+                weights.put(endpoint, endpoint.getDefaultWeight());
+            }
+            for (String entry : mix.split(",")) {
+                if (!entry.isBlank()) {
+                    String[] weight = entry.split("=");
+                    weights.put(Endpoint.valueOf(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+                }
+            }
+            weights.values().removeIf(weight -> weight <= 0);
+            return weights;
+        }
+    }
+
+    private static final class EndpointStats {
+        // values in microseconds, resized as needed
+        private final Recorder latencies = new Recorder(3);
+        private final LongAdder errors = new LongAdder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.fromSystemProperties();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CommuniverseApplication.class)
+                .profiles("test")
+                .logStartupInfo(false)
+                .run("--server.port=0", "--logging.level.root=WARN");
+        boolean passed;
+        try {
+            Dataset dataset = new SyntheticDataGenerator(context.getBean(JdbcTemplate.class))
+                    .generate(Scale.defaults()
+                            .seed(options.seed())
+                            .users(options.users())
+                            .maxFollowers(options.users() / 5)
+                            .posts(options.posts())
+                            .postLikes(options.posts() * 4L)
+                            .comments(options.posts() * 2L)
+                            .commentLikes(options.posts() * 2L));
+            // the follows were written behind the in-memory follower graph
+            context.getBean(FollowerGraphService.class).load();
+            System.out.printf("Seeded %d users, %d posts, %d comments, %d follows, %d likes in %d ms%n",
+                    dataset.users(), dataset.posts(), dataset.comments(), dataset.follows(),
+                    dataset.postLikes() + dataset.commentLikes(), dataset.durationMs());
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Map<Endpoint, EndpointResult> results = run(options, URI.create("http://localhost:" + port), dataset);
+            print(results);
+            Files.createDirectories(options.reportDir());
+            OBJECT_MAPPER.writerWithDefaultPrettyPrinter()
+                    .writeValue(options.reportDir().resolve("results.json").toFile(), results);
+            // a failing run neither compares with nor replaces the baseline
+            passed = checkErrorRatio(options, results) && compareWithBaseline(options, results);
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static @NotNull Map<Endpoint, EndpointResult> run(@NotNull Options options, @NotNull URI baseUri,
+                                                              @NotNull Dataset dataset) throws InterruptedException {
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        options.mix().keySet().forEach(endpoint -> stats.put(endpoint, new EndpointStats()));
+        Endpoint[] endpoints = options.mix().keySet().toArray(Endpoint[]::new);
+        int[] cumulativeWeights = new int[endpoints.length];
+        int totalWeight = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            totalWeight += options.mix().get(endpoints[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        System.out.printf("Running %d clients against %s: %d s of warm-up, then %d s measured%n",
+                options.clients(), baseUri, options.warmupSeconds(), options.durationSeconds());
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        int weights = totalWeight;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < options.clients(); client++) {
+                SplittableRandom random = new SplittableRandom(options.seed() * 31 + client);
+                clients.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        int pick = random.nextInt(weights);
+                        int index = 0;
+                        while (cumulativeWeights[index] <= pick) {
+                            index++;
+                        }
+                        send(httpClient, baseUri, endpoints[index], dataset, random, stats.get(endpoints[index]));
+                    }
+                });
+            }
+            TimeUnit.NANOSECONDS.sleep(measureStart - System.nanoTime());
+            // drops what was recorded during the warm-up
+            stats.values().forEach(endpointStats -> {
+                endpointStats.latencies.getIntervalHistogram();
+                endpointStats.errors.reset();
+            });
+        }
+
+        double seconds = options.durationSeconds();
+        Map<Endpoint, EndpointResult> results = new EnumMap<>(Endpoint.class);
+        stats.forEach((endpoint, endpointStats) -> {
+            Histogram histogram = endpointStats.latencies.getIntervalHistogram();
+            results.put(endpoint, new EndpointResult(histogram.getTotalCount(), endpointStats.errors.sum(),
+                    histogram.getTotalCount() / seconds, millis(histogram, 50), millis(histogram, 99),
+                    millis(histogram, 99.9), histogram.getMaxValue() / 1000.0));
+        });
+        return results;
+    }
+
+    private static void send(@NotNull HttpClient httpClient, @NotNull URI baseUri, @NotNull Endpoint endpoint,
+                             @NotNull Dataset dataset, @NotNull SplittableRandom random, @NotNull EndpointStats stats) {
+        String body = endpoint.body(dataset, random);
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(endpoint.path(dataset, random)))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .method(endpoint.getMethod(), body == null
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+                stats.errors.increment();
+            } else {
+                stats.latencies.recordValue(Math.max(1, (System.nanoTime() - start) / 1000));
+            }
+        } catch (IOException e) {
+            stats.errors.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double millis(@NotNull Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static void print(@NotNull Map<Endpoint, EndpointResult> results) {
+        String format = "%-20s %10s %8s %10s %9s %9s %9s %9s%n";
+        System.out.printf(format, "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long requests = 0;
+        double throughput = 0;
+        for (Map.Entry<Endpoint, EndpointResult> entry : results.entrySet()) {
+            EndpointResult result = entry.getValue();
+            System.out.printf(format, entry.getKey(), result.requests(), result.errors(),
+                    "%.1f".formatted(result.throughput()), "%.2f".formatted(result.p50Ms()),
+                    "%.2f".formatted(result.p99Ms()), "%.2f".formatted(result.p999Ms()), "%.2f".formatted(result.maxMs()));
+            requests += result.requests();
+            throughput += result.throughput();
+        }
+        System.out.printf(format, "TOTAL", requests, results.values().stream().mapToLong(EndpointResult::errors).sum(),
+                "%.1f".formatted(throughput), "", "", "", "");
+    }
+
+    // false if too many requests of an endpoint failed, their latencies weren't recorded
+    private static boolean checkErrorRatio(@NotNull Options options, @NotNull Map<Endpoint, EndpointResult> results) {
+        List<String> failures = new ArrayList<>();
+        results.forEach((endpoint, result) -> {
+            long sent = result.requests() + result.errors();
+            if (sent > 0 && (double) result.errors() / sent > options.maxErrorRatio()) {
+                failures.add("%s %d errors out of %d requests".formatted(endpoint, result.errors(), sent));
+            }
+        });
+        if (failures.isEmpty()) {
+            return true;
+        }
+        System.out.printf("More than %.1f%% of the requests failed:%n", options.maxErrorRatio() * 100);
+        failures.forEach(failure -> System.out.println("  " + failure));
+        return false;
+    }
+
+    // false if an endpoint's p99 regressed past the threshold
+    private static boolean compareWithBaseline(@NotNull Options options, @NotNull Map<Endpoint, EndpointResult> results)
+            throws IOException {
+        if (options.saveBaseline() || !Files.exists(options.baseline())) {
+            Files.createDirectories(options.baseline().toAbsolutePath().getParent());
+            OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(options.baseline().toFile(), results);
+            System.out.println("Baseline saved to " + options.baseline());
+            return true;
+        }
+
+        Map<Endpoint, EndpointResult> baseline = OBJECT_MAPPER.readValue(options.baseline().toFile(), new TypeReference<>() {
+        });
+        List<String> regressions = new ArrayList<>();
+        results.forEach((endpoint, result) -> {
+            EndpointResult baselineResult = baseline.get(endpoint);
+            if (baselineResult != null
+                    && result.p99Ms() > baselineResult.p99Ms() * (1 + options.maxP99Regression())
+                    && result.p99Ms() - baselineResult.p99Ms() > options.minP99RegressionMs()) {
+                regressions.add("%s p99 %.2f ms, baseline %.2f ms".formatted(endpoint, result.p99Ms(), baselineResult.p99Ms()));
+            }
+        });
+        if (regressions.isEmpty()) {
+            System.out.println("No p99 regression against " + options.baseline());
+            return true;
+        }
+        System.out.printf("p99 regressed by more than %.0f%% against %s:%n", options.maxP99Regression() * 100,
+                options.baseline());
+        regressions.forEach(regression -> System.out.println("  " + regression));
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package com.communiverse.communiverse.config;
+
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.repo.reactive.ReactiveCommentRepository;
+import com.communiverse.communiverse.repo.reactive.ReactivePostRepository;
+import com.communiverse.communiverse.utils.ReadThroughCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Read-through caches of the flat posts and comments served by the get endpoints when nothing is expanded.
+ * <p>
+ * Loaded by the reactive repositories, and shared by the services whose writes make entries stale: post, comment
+ * and user updates and deletes invalidate them once committed. Likes, counters and author names may lag until an
+ * entry is refreshed.
+ */
+@Configuration
+public class HotCacheConfig {
+
+    @Bean
+    public ReadThroughCache<PostDto> postCache(ReactivePostRepository reactivePostRepository,
+                                               ObjectProvider<MeterRegistry> meterRegistry,
+                                               @Value("${communiverse.hot-cache.posts.max-size:10000}") long maxSize,
+                                               @Value("${communiverse.hot-cache.posts.refresh-after-ms:5000}") long refreshAfterMs,
+                                               @Value("${communiverse.hot-cache.posts.ttl-ms:60000}") long ttlMs) {
+        return new ReadThroughCache<>("posts", reactivePostRepository::findDtoById, maxSize,
+                Duration.ofMillis(refreshAfterMs), Duration.ofMillis(ttlMs),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean
+    public ReadThroughCache<CommentDto> commentCache(ReactiveCommentRepository reactiveCommentRepository,
+                                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                                     @Value("${communiverse.hot-cache.comments.max-size:50000}") long maxSize,
+                                                     @Value("${communiverse.hot-cache.comments.refresh-after-ms:5000}") long refreshAfterMs,
+                                                     @Value("${communiverse.hot-cache.comments.ttl-ms:60000}") long ttlMs) {
+        return new ReadThroughCache<>("comments", reactiveCommentRepository::findDtoById, maxSize,
+                Duration.ofMillis(refreshAfterMs), Duration.ofMillis(ttlMs),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+}
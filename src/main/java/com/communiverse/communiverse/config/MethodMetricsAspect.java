@@ -0,0 +1,106 @@
+package com.communiverse.communiverse.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times the public methods of the user, post, comment and like services under {@code communiverse.service}, and those
+ * of the reactive repositories under {@code communiverse.repository}, tagged by class, method, outcome and exception.
+ * Failures are also counted under {@code <name>.errors}. The JPA repositories are timed by Spring Data under
+ * {@code spring.data.repository.invocations}.
+ * <p>
+ * A method returning a Mono or a Flux only assembles it, so those are timed from subscription to completion, error
+ * or cancellation, the time the work actually runs.
+ */
+@Aspect
+@Component
+public class MethodMetricsAspect {
+
+    public static final String SERVICE_METRIC = "communiverse.service";
+    public static final String REPOSITORY_METRIC = "communiverse.repository";
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public MethodMetricsAspect(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    @Around("execution(public * com.communiverse.communiverse.services.UserService.*(..)) || " +
+            "execution(public * com.communiverse.communiverse.services.PostService.*(..)) || " +
+            "execution(public * com.communiverse.communiverse.services.CommentService.*(..)) || " +
+            "execution(public * com.communiverse.communiverse.services.LikeService.*(..))")
+    public Object timeService(@NotNull ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_METRIC, joinPoint);
+    }
+
+    @Around("execution(public * com.communiverse.communiverse.repo.reactive.*.*(..))")
+    public Object timeReactiveRepository(@NotNull ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_METRIC, joinPoint);
+    }
+
+    private Object time(@NotNull String metric, @NotNull ProceedingJoinPoint joinPoint) throws Throwable {
+        String className = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            stop(sample, metric, className, method, "error", e);
+            throw e;
+        }
+
+        if (result instanceof Mono<?> mono) {
+            return Mono.defer(() -> {
+                Timer.Sample subscribed = Timer.start(meterRegistry);
+                return mono
+                        .doOnSuccess(value -> stop(subscribed, metric, className, method, "success", null))
+                        .doOnError(e -> stop(subscribed, metric, className, method, "error", e))
+                        .doOnCancel(() -> stop(subscribed, metric, className, method, "cancelled", null));
+            });
+        }
+        if (result instanceof Flux<?> flux) {
+            return Flux.defer(() -> {
+                Timer.Sample subscribed = Timer.start(meterRegistry);
+                return flux
+                        .doOnComplete(() -> stop(subscribed, metric, className, method, "success", null))
+                        .doOnError(e -> stop(subscribed, metric, className, method, "error", e))
+                        .doOnCancel(() -> stop(subscribed, metric, className, method, "cancelled", null));
+            });
+        }
+        stop(sample, metric, className, method, "success", null);
+        return result;
+    }
+
+    private void stop(@NotNull Timer.Sample sample, @NotNull String metric, @NotNull String className,
+                      @NotNull String method, @NotNull String outcome, @Nullable Throwable error) {
+        String exception = error == null ? "none" : error.getClass().getSimpleName();
+        sample.stop(Timer.builder(metric)
+                .tag("class", className)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .register(meterRegistry));
+        if (error != null) {
+            Counter.builder(metric + ".errors")
+                    .tag("class", className)
+                    .tag("method", method)
+                    .tag("exception", exception)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.communiverse.communiverse.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Scheduler for the blocking persistence calls (JPA, JDBC), so they never run on request or event-loop threads.
+ * <p>
+ * Every call is deferred until subscription and subscribed on this scheduler. By default each call gets its own
+ * JDK virtual thread, {@code communiverse.persistence.scheduler.type=bounded-elastic} switches to Reactor's bounded
+ * elastic platform threads. The scheduler is instrumented with Micrometer under {@code communiverse.persistence},
+ * the pending task timer shows the time calls spend queueing before they run.
+ */
+@Component
+@Slf4j
+public class PersistenceScheduler {
+
+    public static final String METRICS_PREFIX = "communiverse.persistence";
+
+    private final Scheduler scheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public PersistenceScheduler(TransactionTemplate transactionTemplate, ObjectProvider<MeterRegistry> meterRegistry,
+                                @Value("${communiverse.persistence.scheduler.type:virtual}") String type) {
+        this.transactionTemplate = transactionTemplate;
+        Scheduler rawScheduler = switch (type) {
+            case "virtual" -> Schedulers.fromExecutorService(Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("persistence-", 0).factory()), "persistence");
+            case "bounded-elastic" -> Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                    Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "persistence");
+            default -> throw new IllegalArgumentException("Unknown persistence scheduler type " + type);
+        };
+        this.scheduler = Micrometer.timedScheduler(rawScheduler, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                METRICS_PREFIX, Tags.of("type", type));
+        log.info("Blocking persistence calls run on the {} scheduler", type);
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Defers the blocking call to subscription time and runs it on the persistence scheduler.
+     * A null result completes the Mono empty.
+     */
+    public <T> Mono<T> mono(@NotNull Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(scheduler);
+    }
+
+    /**
+     * Like {@link #mono(Callable)}, for calls returning a collection.
+     */
+    public <T> Flux<T> flux(@NotNull Callable<? extends Iterable<? extends T>> call) {
+        return Mono.<Iterable<? extends T>>fromCallable(call::call)
+                .flatMapMany(iterable -> Flux.<T>fromIterable(iterable))
+                .subscribeOn(scheduler);
+    }
+
+    public Mono<Void> run(@NotNull Runnable call) {
+        return Mono.<Void>fromRunnable(call).subscribeOn(scheduler);
+    }
+
+    /**
+     * Like {@link #mono(Callable)}, wrapping the call in a transaction.
+     * Used instead of {@code @Transactional}, which would end before the deferred call runs.
+     */
+    public <T> Mono<T> transactional(@NotNull Supplier<T> call) {
+        return Mono.fromCallable(() -> transactionTemplate.execute(status -> call.get())).subscribeOn(scheduler);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,80 @@
+package com.communiverse.communiverse.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache: Caffeine caches behind JCache, a region per cached entity plus the query cache.
+ * <p>
+ * Each region gets its own size and time to live. Writes going through Hibernate update or evict the cached entries,
+ * writes bypassing it (JDBC counters, native queries) must evict them or declare the tables they touch.
+ * Hit, miss, put and eviction counts of each region are published as {@code cache.*} meters tagged with the region.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String USER_REGION = "user";
+    public static final String POST_REGION = "post";
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    // must outlive any cached query result, so never expires
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+    public static final List<String> REGIONS = List.of(USER_REGION, POST_REGION, QUERY_RESULTS_REGION, UPDATE_TIMESTAMPS_REGION);
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(ApplicationContext applicationContext,
+                                                ObjectProvider<MeterRegistry> meterRegistry,
+                                                @Value("${communiverse.cache.users.max-size:10000}") long usersMaxSize,
+                                                @Value("${communiverse.cache.users.ttl-ms:600000}") long usersTtlMs,
+                                                @Value("${communiverse.cache.posts.max-size:50000}") long postsMaxSize,
+                                                @Value("${communiverse.cache.posts.ttl-ms:300000}") long postsTtlMs,
+                                                @Value("${communiverse.cache.queries.max-size:10000}") long queriesMaxSize,
+                                                @Value("${communiverse.cache.queries.ttl-ms:60000}") long queriesTtlMs) {
+        // a manager per application context, contexts sharing a JVM (tests) don't share regions
+        URI uri = URI.create("communiverse-" + applicationContext.getId() + "-" + System.identityHashCode(applicationContext));
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(uri, getClass().getClassLoader());
+        cacheManager.createCache(USER_REGION, regionConfiguration(usersMaxSize, usersTtlMs));
+        cacheManager.createCache(POST_REGION, regionConfiguration(postsMaxSize, postsTtlMs));
+        cacheManager.createCache(QUERY_RESULTS_REGION, regionConfiguration(queriesMaxSize, queriesTtlMs));
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, regionConfiguration(0, 0));
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        REGIONS.forEach(region -> JCacheMetrics.monitor(registry, cacheManager.getCache(region)));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+
+    /**
+     * @param maxSize Max number of entries, 0 for unbounded.
+     * @param ttlMs   Time to live of an entry since written, 0 for no expiry.
+     */
+    private static @NotNull CaffeineConfiguration<Object, Object> regionConfiguration(long maxSize, long ttlMs) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maxSize > 0 ? OptionalLong.of(maxSize) : OptionalLong.empty());
+        configuration.setExpireAfterWrite(ttlMs > 0 ? OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)) : OptionalLong.empty());
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
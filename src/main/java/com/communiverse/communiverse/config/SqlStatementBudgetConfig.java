@@ -0,0 +1,156 @@
+package com.communiverse.communiverse.config;
+
+import com.communiverse.communiverse.utils.SqlStatementCounter;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.scheduler.Schedulers;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Per-request budget of SQL statements, catching the N+1 selects the eager associations silently cause.
+ * <p>
+ * The JDBC DataSource is wrapped to count every statement executed, batches once, in the {@link SqlStatementCounter}
+ * scope active on the executing thread. Each HTTP request runs in its own scope, propagated to the persistence
+ * scheduler threads, and a warning naming the endpoint is logged when a request ends over the budget. With a budget
+ * of 0 nothing is wrapped nor counted.
+ */
+@Configuration
+@ConditionalOnExpression("${communiverse.sql.max-statements-per-request:50} > 0")
+@Slf4j
+public class SqlStatementBudgetConfig {
+
+    @Bean
+    public static BeanPostProcessor sqlStatementCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(@NotNull Object bean, @NotNull String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)
+                        ? new StatementCountingDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public OncePerRequestFilter sqlStatementBudgetFilter(
+            @Value("${communiverse.sql.max-statements-per-request:50}") long maxStatementsPerRequest) {
+        return new SqlStatementBudgetFilter(maxStatementsPerRequest);
+    }
+
+    @PostConstruct
+    public void propagateScopesToSchedulers() {
+        // keyed, so contexts sharing a JVM (tests) register it once
+        Schedulers.onScheduleHook(SqlStatementCounter.class.getName(), SqlStatementCounter::propagate);
+    }
+
+    private static class SqlStatementBudgetFilter extends OncePerRequestFilter {
+
+        private static final String SCOPE_ATTRIBUTE = SqlStatementBudgetFilter.class.getName() + ".scope";
+
+        private final long maxStatementsPerRequest;
+
+        private SqlStatementBudgetFilter(long maxStatementsPerRequest) {
+            this.maxStatementsPerRequest = maxStatementsPerRequest;
+        }
+
+        // a request returning a Mono or a Flux completes in an async dispatch, in the scope of the initial one
+        @Override
+        protected boolean shouldNotFilterAsyncDispatch() {
+            return false;
+        }
+
+        @Override
+        protected void doFilterInternal(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response,
+                                        @NotNull FilterChain filterChain) throws ServletException, IOException {
+            SqlStatementCounter.Scope scope = (SqlStatementCounter.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+            if (scope == null) {
+                scope = SqlStatementCounter.newScope();
+                request.setAttribute(SCOPE_ATTRIBUTE, scope);
+            }
+            SqlStatementCounter.Activation activation = scope.activate();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                activation.close();
+                if (!request.isAsyncStarted() && scope.getStatements() > maxStatementsPerRequest) {
+                    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                    log.warn("{} {} executed {} SQL statements, over the budget of {}", request.getMethod(),
+                            pattern != null ? pattern : request.getRequestURI(), scope.getStatements(),
+                            maxStatementsPerRequest);
+                }
+            }
+        }
+    }
+
+    // unwrap() and isWrapperFor() reach the target, so the pool metrics still find the Hikari pool
+    private static class StatementCountingDataSource extends DelegatingDataSource {
+
+        private StatementCountingDataSource(@NotNull DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public @NotNull Connection getConnection() throws SQLException {
+            return countingConnection(obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public @NotNull Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(obtainTargetDataSource().getConnection(username, password));
+        }
+
+        private static Connection countingConnection(@NotNull Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        return result instanceof Statement statement
+                                ? countingStatement(statement, method.getReturnType())
+                                : result;
+                    });
+        }
+
+        private static Object countingStatement(@NotNull Statement statement, @NotNull Class<?> type) {
+            Class<?> statementType = type == CallableStatement.class || type == PreparedStatement.class
+                    ? type
+                    : Statement.class;
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{statementType},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute")) {
+                            SqlStatementCounter.countStatement();
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(@NotNull Object target, @NotNull Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
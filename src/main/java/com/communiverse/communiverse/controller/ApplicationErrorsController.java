@@ -1,6 +1,6 @@
 package com.communiverse.communiverse.controller;
 
-import com.communiverse.communiverse.utils.JsonUtils;
+import com.communiverse.communiverse.utils.CompactJson;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -54,7 +54,7 @@ public class ApplicationErrorsController implements ErrorController {
         }
 
         log.error(error);
-        return ResponseEntity.badRequest().body(JsonUtils.toJson(error));
+        return ResponseEntity.badRequest().body(CompactJson.toJson(error));
     }
 
     /**
@@ -0,0 +1,31 @@
+package com.communiverse.communiverse.controller;
+
+import com.communiverse.communiverse.dto.BulkTransferDto;
+import com.communiverse.communiverse.services.BulkTransferService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/bulk")
+public class BulkTransferController {
+
+    private final BulkTransferService bulkTransferService;
+
+    @Autowired
+    public BulkTransferController(BulkTransferService bulkTransferService) {
+        this.bulkTransferService = bulkTransferService;
+    }
+
+    // Endpoint to export all the users, follows, posts, comments and likes to the bulk directory of that name
+    @PostMapping("/{name}/export")
+    public Mono<BulkTransferDto> exportGraph(@PathVariable String name) {
+        return bulkTransferService.exportGraph(name);
+    }
+
+    // Endpoint to import the export of that name, resuming an interrupted import of it
+    @PostMapping("/{name}/import")
+    public Mono<BulkTransferDto> importGraph(@PathVariable String name) {
+        return bulkTransferService.importGraph(name);
+    }
+}
@@ -0,0 +1,27 @@
+package com.communiverse.communiverse.controller;
+
+import com.communiverse.communiverse.dto.CacheRegionStatsDto;
+import com.communiverse.communiverse.services.CacheStatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final CacheStatisticsService cacheStatisticsService;
+
+    @Autowired
+    public CacheController(CacheStatisticsService cacheStatisticsService) {
+        this.cacheStatisticsService = cacheStatisticsService;
+    }
+
+    // Endpoint to get the hit, miss and eviction counts of each second-level cache region
+    @GetMapping("/regions")
+    public Flux<CacheRegionStatsDto> getRegionStatistics() {
+        return cacheStatisticsService.getRegionStatistics();
+    }
+}
@@ -1,13 +1,20 @@
 package com.communiverse.communiverse.controller;
 
+import com.communiverse.communiverse.dto.CommentDetailsDto;
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.CommentTreeNode;
 import com.communiverse.communiverse.model.Comment;
 import com.communiverse.communiverse.services.CommentService;
+import com.communiverse.communiverse.utils.PagingUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/comments")
 public class CommentController {
@@ -19,24 +26,67 @@ public class CommentController {
         this.commentService = commentService;
     }
 
+    // ?expand=author,replies,likes adds those associations to the comment, fetching only them
     @GetMapping("/{id}/get")
-    public Mono<Comment> getCommentById(@PathVariable Long id) {
-        return commentService.getCommentById(id);
+    public Mono<CommentDetailsDto> getCommentById(@PathVariable Long id, @RequestParam(required = false) Set<String> expand) {
+        return commentService.getCommentDetails(id, expand);
+    }
+
+    @GetMapping("/{id}/replies/count")
+    public Mono<Long> getReplyCount(@PathVariable Long id) {
+        return commentService.getReplyCount(id);
+    }
+
+    @GetMapping("/{id}/descendants")
+    public Flux<CommentDto> getDescendants(@PathVariable Long id) {
+        return commentService.getDescendantDtos(id);
+    }
+
+    @GetMapping("/{id}/descendants/count")
+    public Mono<Long> getDescendantCount(@PathVariable Long id) {
+        return commentService.getDescendantCount(id);
+    }
+
+    @GetMapping("/{id}/ancestors")
+    public Flux<CommentDto> getAncestors(@PathVariable Long id) {
+        return commentService.getAncestorDtos(id);
     }
 
     @GetMapping("/post/{postId}/get")
-    public Flux<Comment> getCommentsByPostId(@PathVariable Long postId) {
-        return commentService.getPostComments(postId);
+    public Flux<CommentDto> getCommentsByPostId(@PathVariable Long postId) {
+        return commentService.getPostCommentDtos(postId);
+    }
+
+    // Accept: application/x-ndjson streams the post's comments, one JSON line each, as fast as the client reads them
+    @GetMapping(value = "/post/{postId}/get", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CommentDto> streamCommentsByPostId(@PathVariable Long postId) {
+        return commentService.streamPostCommentDtos(postId);
+    }
+
+    @GetMapping("/post/{postId}/tree")
+    public Flux<CommentTreeNode> getCommentTreeByPostId(@PathVariable Long postId,
+                                                        @RequestParam(required = false) Long after,
+                                                        @RequestParam(defaultValue = "" + PagingUtils.DEFAULT_PAGE_SIZE) int limit,
+                                                        @RequestParam(required = false) Integer depth) {
+        return commentService.getPostCommentTree(postId, after, limit, depth);
+    }
+
+    @GetMapping("/{id}/tree")
+    public Flux<CommentTreeNode> getReplyTree(@PathVariable Long id,
+                                              @RequestParam(required = false) Long after,
+                                              @RequestParam(defaultValue = "" + PagingUtils.DEFAULT_PAGE_SIZE) int limit,
+                                              @RequestParam(required = false) Integer depth) {
+        return commentService.getReplyTree(id, after, limit, depth);
     }
 
     @GetMapping("/user/{userId}/get")
-    public Flux<Comment> getCommentsByUserId(@PathVariable Long userId) {
-        return commentService.getUserComments(userId);
+    public Flux<CommentDto> getCommentsByUserId(@PathVariable Long userId) {
+        return commentService.getUserCommentDtos(userId);
     }
 
     @GetMapping("/post/{postId}/user/{userId}/get")
-    public Flux<Comment> getCommentByPostIdAndUserId(@PathVariable Long postId, @PathVariable Long userId) {
-        return commentService.getCommentByPostIdAndUserId(postId, userId);
+    public Flux<CommentDto> getCommentByPostIdAndUserId(@PathVariable Long postId, @PathVariable Long userId) {
+        return commentService.getCommentDtosByPostIdAndUserId(postId, userId);
     }
 
     @PostMapping("/create")
@@ -63,8 +113,8 @@ public class CommentController {
 
     // Endpoint to get all comments by user ID
     @GetMapping("/{userId}/comments")
-    public Flux<Comment> getUserComments(@PathVariable Long userId) {
-        return commentService.getUserComments(userId);
+    public Flux<CommentDto> getUserComments(@PathVariable Long userId) {
+        return commentService.getUserCommentDtos(userId);
     }
 }
 
@@ -1,6 +1,6 @@
 package com.communiverse.communiverse.controller;
 
-import com.communiverse.communiverse.model.like.Like;
+import com.communiverse.communiverse.dto.LikeDto;
 import com.communiverse.communiverse.services.LikeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -21,7 +21,7 @@ public class LikeController {
 
     @PostMapping("/{postId}/{userId}/like")
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<Like> likePost(@PathVariable Long postId, @PathVariable Long userId) {
+    public Mono<Void> likePost(@PathVariable Long postId, @PathVariable Long userId) {
         return likeService.likePost(userId, postId);
     }
 
@@ -31,29 +31,42 @@ public class LikeController {
         return likeService.unlikePost(userId, postId);
     }
 
-    @PostMapping("/{commentId}/{userId}/like")
+    // under /comment, the same path as the post like would map to both
+    @PostMapping("/comment/{commentId}/{userId}/like")
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<Like> likeComment(@PathVariable Long commentId, @PathVariable Long userId) {
+    public Mono<Void> likeComment(@PathVariable Long commentId, @PathVariable Long userId) {
         return likeService.likeComment(userId, commentId);
     }
 
-    @DeleteMapping("/{commentId}/{userId}/unlike")
+    @DeleteMapping("/comment/{commentId}/{userId}/unlike")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> unlikeComment(@PathVariable Long commentId, @PathVariable Long userId) {
         return likeService.unlikeComment(userId, commentId);
     }
 
 
+    // Endpoint to get the number of likes of a post
+    @GetMapping("/post/{postId}/count")
+    public Mono<Long> getPostLikeCount(@PathVariable Long postId) {
+        return likeService.getPostLikeCount(postId);
+    }
+
+    // Endpoint to get the number of likes of a comment
+    @GetMapping("/comment/{commentId}/count")
+    public Mono<Long> getCommentLikeCount(@PathVariable Long commentId) {
+        return likeService.getCommentLikeCount(commentId);
+    }
+
     // Endpoint to get all posts likes by user ID
     @GetMapping("/{userId}/post-likes")
-    public Flux<Like> getUserPostLikes(@PathVariable Long userId) {
-        return likeService.getUserPostLikes(userId);
+    public Flux<LikeDto> getUserPostLikes(@PathVariable Long userId) {
+        return likeService.getUserPostLikeDtos(userId);
     }
 
     // Endpoint to get all comments likes by user ID
     @GetMapping("/{userId}/comment-likes")
-    public Flux<Like> getUserCommentLikes(@PathVariable Long userId) {
-        return likeService.getUserCommentLikes(userId);
+    public Flux<LikeDto> getUserCommentLikes(@PathVariable Long userId) {
+        return likeService.getUserCommentLikeDtos(userId);
     }
 }
 
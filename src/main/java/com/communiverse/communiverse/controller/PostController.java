@@ -1,13 +1,19 @@
 package com.communiverse.communiverse.controller;
 
+import com.communiverse.communiverse.dto.PostDetailsDto;
+import com.communiverse.communiverse.dto.PostDto;
 import com.communiverse.communiverse.model.Post;
 import com.communiverse.communiverse.services.PostService;
+import com.communiverse.communiverse.utils.PagingUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/posts")
 public class PostController {
@@ -19,14 +25,28 @@ public class PostController {
         this.postService = postService;
     }
 
+    // ?expand=author,comments,likes adds those associations to the post, fetching only them
     @GetMapping("/{id}/get")
-    public Mono<Post> getPostById(@PathVariable("id") Long id) {
-        return postService.findPostById(id);
+    public Mono<PostDetailsDto> getPostById(@PathVariable("id") Long id, @RequestParam(required = false) Set<String> expand) {
+        return postService.getPostDetails(id, expand);
     }
 
+    // ?after=<created>_<id> of the last post of the previous page
     @GetMapping
-    public Flux<Post> getAllPosts() {
-        return postService.getAllPosts();
+    public Flux<PostDto> getAllPosts(@RequestParam(required = false) String after,
+                                  @RequestParam(defaultValue = "" + PagingUtils.DEFAULT_PAGE_SIZE) int limit) {
+        return postService.getPostsPage(after == null ? null : PagingUtils.Cursor.parse(after), limit);
+    }
+
+    // Accept: application/x-ndjson streams all the posts, one JSON line each, as fast as the client reads them
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<PostDto> streamAllPosts() {
+        return postService.streamAllPosts();
+    }
+
+    @GetMapping("/{id}/comments/count")
+    public Mono<Long> getCommentCount(@PathVariable("id") Long id) {
+        return postService.getCommentCount(id);
     }
 
     @PostMapping("/create")
@@ -1,34 +1,52 @@
 package com.communiverse.communiverse.controller;
 
-import com.communiverse.communiverse.model.Comment;
-import com.communiverse.communiverse.model.like.Like;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.dto.RecommendationDto;
+import com.communiverse.communiverse.dto.UserDto;
 import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.services.FeedService;
+import com.communiverse.communiverse.services.RecommendationService;
 import com.communiverse.communiverse.services.UserService;
+import com.communiverse.communiverse.utils.PagingUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
     private final UserService userService;
+    private final FeedService feedService;
+    private final RecommendationService recommendationService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FeedService feedService, RecommendationService recommendationService) {
         this.userService = userService;
+        this.feedService = feedService;
+        this.recommendationService = recommendationService;
     }
 
     @GetMapping("/{id}/get")
-    public Mono<User> getUserById(@PathVariable Long id) {
-        return userService.getUserById(id);
+    public Mono<UserDto> getUserById(@PathVariable Long id) {
+        return userService.getUserDtoById(id);
     }
 
     @GetMapping
-    public Flux<User> getAllUsers() {
-        return userService.getAllUsers();
+    public Flux<UserDto> getAllUsers(@RequestParam(required = false) Long after,
+                                  @RequestParam(defaultValue = "" + PagingUtils.DEFAULT_PAGE_SIZE) int limit) {
+        return userService.getUsersPage(after, limit);
+    }
+
+    // Accept: application/x-ndjson streams all the users, one JSON line each, as fast as the client reads them
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserDto> streamAllUsers() {
+        return userService.streamAllUsers();
     }
 
     @PostMapping("/create")
@@ -50,8 +68,47 @@ public class UserController {
 
     // Endpoint to get all followers by user ID
     @GetMapping("/{userId}/followers")
-    public Flux<User> getUserFollowers(@PathVariable Long userId) {
-        return userService.getUserFollowers(userId);
+    public Flux<UserDto> getUserFollowers(@PathVariable Long userId) {
+        return userService.getUserFollowerDtos(userId);
+    }
+
+    // Endpoint to check whether a user follows another one
+    @GetMapping("/{userId}/{followerId}/follows")
+    public Mono<Boolean> isFollowing(@PathVariable Long userId, @PathVariable Long followerId) {
+        return userService.isFollowing(userId, followerId);
+    }
+
+    // Endpoint to get the ids of the users following both users
+    @GetMapping("/{userId}/followers/mutual/{otherUserId}")
+    public Flux<Long> getMutualFollowerIds(@PathVariable Long userId, @PathVariable Long otherUserId) {
+        return userService.getMutualFollowerIds(userId, otherUserId);
+    }
+
+    // Endpoint to get the number of followers of a user
+    @GetMapping("/{userId}/followers/count")
+    public Mono<Long> getFollowerCount(@PathVariable Long userId) {
+        return userService.getFollowerCount(userId);
+    }
+
+    // Endpoint to get the number of users a user follows
+    @GetMapping("/{userId}/following/count")
+    public Mono<Long> getFollowingCount(@PathVariable Long userId) {
+        return userService.getFollowingCount(userId);
+    }
+
+    // Endpoint to get the recent posts of everyone the user follows, newest first
+    @GetMapping("/{id}/feed")
+    public Flux<PostDto> getUserFeed(@PathVariable Long id,
+                                  @RequestParam(required = false) Long after,
+                                  @RequestParam(defaultValue = "" + PagingUtils.DEFAULT_PAGE_SIZE) int limit) {
+        return feedService.getFeed(id, after, limit);
+    }
+
+    // Endpoint to get the users followed by the users the user follows, most mutual connections first
+    @GetMapping("/{id}/recommendations")
+    public Flux<RecommendationDto> getRecommendations(@PathVariable Long id,
+                                                     @RequestParam(defaultValue = "" + PagingUtils.DEFAULT_PAGE_SIZE) int limit) {
+        return recommendationService.getRecommendations(id, limit);
     }
 
     // Endpoint to follow a user
@@ -61,6 +118,13 @@ public class UserController {
         return userService.followUser(userId, followerId);
     }
 
+    // Endpoint to follow many users at once, e.g. an imported contact list, returns the number of users newly followed
+    @PostMapping("/{id}/follow/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Integer> followUsers(@PathVariable Long id, @RequestBody List<Long> userIds) {
+        return userService.followUsers(id, userIds);
+    }
+
     // Endpoint to unfollow a user
     @DeleteMapping("/{userId}/{followerId}/unfollow")
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -0,0 +1,21 @@
+package com.communiverse.communiverse.dto;
+
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Outcome of a bulk export or import of the social graph.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkTransferDto {
+
+    private String exportId;
+    private Map<String, Long> rowCounts;    // by table, in import order
+    private long durationMs;
+}
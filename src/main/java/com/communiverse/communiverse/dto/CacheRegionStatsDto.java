@@ -0,0 +1,22 @@
+package com.communiverse.communiverse.dto;
+
+import lombok.*;
+
+/**
+ * Counts of a second-level cache region since startup.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CacheRegionStatsDto {
+
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;   // by size or expiry
+    private long removals;    // by Hibernate, on update, delete or invalidation
+}
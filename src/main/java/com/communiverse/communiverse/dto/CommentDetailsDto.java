@@ -0,0 +1,31 @@
+package com.communiverse.communiverse.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A comment with the associations requested by {@code ?expand=author,replies,likes}, the others are left out.
+ * Replies are the direct ones only, see {@code GET /api/comments/{id}/tree} for the whole thread.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CommentDetailsDto {
+
+    public static final String AUTHOR = "author";
+    public static final String REPLIES = "replies";
+    public static final String LIKES = "likes";
+
+    @JsonUnwrapped
+    private CommentDto comment;
+    private UserDto author;
+    private List<CommentDto> replies;
+    private List<LikeDto> likes;
+}
@@ -1,12 +1,38 @@
 package com.communiverse.communiverse.dto;
 
+import com.communiverse.communiverse.model.Comment;
 import lombok.*;
+import org.jetbrains.annotations.NotNull;
 
+import java.time.LocalDateTime;
+
+/**
+ * Flat read model of a comment, referencing its author, post and parent comment by id only.
+ * Filled by JPQL constructor expressions, so the field order must match the queries in CommentRepository.
+ */
 @Getter
 @Setter
 @ToString
-//@NoArgsConstructor
-//@AllArgsConstructor
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class CommentDto {
+
+    private Long id;
+    private String content;
+    private Long userId;
+    private String userName;
+    private Long postId;
+    private Long parentCommentId;
+    private long likeCount;
+    private long replyCount;
+    private LocalDateTime created;
+    private LocalDateTime modified;
+
+    public static @NotNull CommentDto of(@NotNull Comment comment) {
+        return new CommentDto(comment.getId(), comment.getContent(), comment.getUser().getId(),
+                comment.getUser().getUserName(), comment.getPost().getId(),
+                comment.getParentComment() == null ? null : comment.getParentComment().getId(),
+                comment.getLikeCount(), comment.getReplyCount(), comment.getCreated(), comment.getModified());
+    }
 }
@@ -0,0 +1,20 @@
+package com.communiverse.communiverse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A comment of a thread as loaded by the recursive thread queries, before being assembled into a tree.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CommentThreadRow {
+
+    private final CommentDto comment;
+    // 0 for the roots of the loaded slice, 1 for their replies and so on
+    private final int depth;
+    // true if the comment is at the depth bound and has replies that were not loaded
+    private final boolean moreReplies;
+}
@@ -0,0 +1,27 @@
+package com.communiverse.communiverse.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A comment with its loaded replies, oldest first.
+ * When the thread was loaded depth-bounded, {@code moreRepliesCursor} is set on the comments whose replies were cut off:
+ * it's the comment id to load the rest from, with {@code GET /api/comments/{id}/tree}.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentTreeNode {
+
+    private CommentDto comment;
+    private List<CommentTreeNode> replies = new ArrayList<>();
+    private Long moreRepliesCursor;
+
+    public CommentTreeNode(CommentDto comment) {
+        this.comment = comment;
+    }
+}
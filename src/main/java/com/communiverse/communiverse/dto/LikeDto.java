@@ -1,15 +1,38 @@
 package com.communiverse.communiverse.dto;
 
-import lombok.Builder;
-import lombok.Getter;
-import lombok.Setter;
-import lombok.ToString;
+import com.communiverse.communiverse.model.like.LikeOnComment;
+import com.communiverse.communiverse.model.like.LikeOnPost;
+import lombok.*;
+import org.jetbrains.annotations.NotNull;
 
+import java.time.LocalDateTime;
+
+/**
+ * Flat read model of a like on a post or on a comment.
+ * Filled by JPQL constructor expressions, so the field order must match the queries in the like repositories.
+ */
 @Getter
 @Setter
 @ToString
-//@NoArgsConstructor
-//@AllArgsConstructor
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class LikeDto {
+
+    public static final String POST = "post";
+    public static final String COMMENT = "comment";
+
+    private Long id;
+    private Long userId;
+    private Long targetId;
+    private String targetType;  // POST or COMMENT
+    private LocalDateTime created;
+
+    public static @NotNull LikeDto of(@NotNull LikeOnPost like) {
+        return new LikeDto(like.getId(), like.getUser().getId(), like.getPost().getId(), POST, like.getCreated());
+    }
+
+    public static @NotNull LikeDto of(@NotNull LikeOnComment like) {
+        return new LikeDto(like.getId(), like.getUser().getId(), like.getComment().getId(), COMMENT, like.getCreated());
+    }
 }
@@ -0,0 +1,30 @@
+package com.communiverse.communiverse.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A post with the associations requested by {@code ?expand=author,comments,likes}, the others are left out.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PostDetailsDto {
+
+    public static final String AUTHOR = "author";
+    public static final String COMMENTS = "comments";
+    public static final String LIKES = "likes";
+
+    @JsonUnwrapped
+    private PostDto post;
+    private UserDto author;
+    private List<CommentDto> comments;
+    private List<LikeDto> likes;
+}
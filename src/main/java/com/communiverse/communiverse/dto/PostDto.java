@@ -1,12 +1,37 @@
 package com.communiverse.communiverse.dto;
 
+import com.communiverse.communiverse.model.Post;
 import lombok.*;
+import org.jetbrains.annotations.NotNull;
 
+import java.time.LocalDateTime;
+
+/**
+ * Flat read model of a post, referencing its author by id and name only.
+ * Filled by JPQL constructor expressions, so the field order must match the queries in PostRepository.
+ */
 @Getter
 @Setter
 @ToString
-//@NoArgsConstructor
-//@AllArgsConstructor
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class PostDto {
+
+    private Long id;
+    private String title;
+    private String content;
+    private String image;
+    private Long userId;
+    private String userName;
+    private long likeCount;
+    private long commentCount;
+    private LocalDateTime created;
+    private LocalDateTime modified;
+
+    public static @NotNull PostDto of(@NotNull Post post) {
+        return new PostDto(post.getId(), post.getTitle(), post.getContent(), post.getImage(),
+                post.getUser().getId(), post.getUser().getUserName(), post.getLikeCount(), post.getCommentCount(),
+                post.getCreated(), post.getModified());
+    }
 }
@@ -0,0 +1,18 @@
+package com.communiverse.communiverse.dto;
+
+import lombok.*;
+
+/**
+ * A user recommended to follow, with the number of users followed by the requesting user who follow them.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecommendationDto {
+
+    private UserDto user;
+    private int mutualConnections;
+}
@@ -1,12 +1,35 @@
 package com.communiverse.communiverse.dto;
 
+import com.communiverse.communiverse.model.User;
 import lombok.*;
+import org.jetbrains.annotations.NotNull;
 
+import java.time.LocalDateTime;
+
+/**
+ * Flat read model of a user, without credentials and related collections.
+ * Filled by JPQL constructor expressions, so the field order must match the queries in UserRepository.
+ */
 @Getter
 @Setter
 @ToString
-//@NoArgsConstructor
-//@AllArgsConstructor
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class UserDto {
+
+    private Long id;
+    private String userName;
+    private String email;
+    private String profilePicture;
+    private LocalDateTime lastLogin;
+    private long followerCount;
+    private long followingCount;
+    private LocalDateTime created;
+    private LocalDateTime modified;
+
+    public static @NotNull UserDto of(@NotNull User user) {
+        return new UserDto(user.getId(), user.getUserName(), user.getEmail(), user.getProfilePicture(),
+                user.getLastLogin(), user.getFollowerCount(), user.getFollowingCount(), user.getCreated(), user.getModified());
+    }
 }
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -18,6 +20,11 @@ import java.util.TreeSet;
 
 @Entity
 @Table(name = "comment")
+@NamedEntityGraph(name = "Comment.author", attributeNodes = @NamedAttributeNode("user"))
+@NamedEntityGraph(name = "Comment.replies", attributeNodes = @NamedAttributeNode(value = "replies", subgraph = "author"),
+        subgraphs = @NamedSubgraph(name = "author", attributeNodes = @NamedAttributeNode("user")))
+@NamedEntityGraph(name = "Comment.likes", attributeNodes = @NamedAttributeNode(value = "likes", subgraph = "author"),
+        subgraphs = @NamedSubgraph(name = "author", attributeNodes = @NamedAttributeNode("user")))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -44,12 +51,21 @@ public class Comment implements Comparable<Comment> {
     @JoinColumn(name = "parent_comment_id")
     private Comment parentComment; // For comment replies
 
-    @OneToMany(mappedBy = "parentComment", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "parentComment", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<Comment> replies = new TreeSet<>(); // For comment replies
 
-    @OneToMany(mappedBy = "comment", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "comment", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<LikeOnComment> likes = new TreeSet<>();    // For comment likes
 
+    // maintained by EngagementCounterService, never written through the entity
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false)
+    private long likeCount;
+
+    @Column(name = "reply_count", nullable = false, insertable = false, updatable = false)
+    private long replyCount;
+
     @Column(name = "created", nullable = false, updatable = false)
     @CreatedDate
     private LocalDateTime created = LocalDateTime.now(ZoneOffset.UTC);
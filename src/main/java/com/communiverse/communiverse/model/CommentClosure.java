@@ -0,0 +1,44 @@
+package com.communiverse.communiverse.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Closure table of the comment reply trees: one row per comment and each of its ancestors, plus one row
+ * per comment referencing itself at depth 0. Rows are inserted along with the comment and deleted by
+ * the DB when either comment is deleted.
+ */
+@Entity
+@Table(name = "comment_closure")
+@IdClass(CommentClosure.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentClosure {
+
+    @Id
+    @Column(name = "ancestor_id", nullable = false, updatable = false)
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id", nullable = false, updatable = false)
+    private Long descendantId;
+
+    // number of reply levels between the ancestor and the descendant
+    @Column(name = "depth", nullable = false, updatable = false)
+    private int depth;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
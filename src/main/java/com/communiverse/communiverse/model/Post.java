@@ -1,11 +1,16 @@
 package com.communiverse.communiverse.model;
 
+import com.communiverse.communiverse.config.SecondLevelCacheConfig;
 import com.communiverse.communiverse.model.like.LikeOnPost;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -18,6 +23,12 @@ import java.util.TreeSet;
 
 @Entity
 @Table(name = "post")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.POST_REGION)
+@NamedEntityGraph(name = "Post.author", attributeNodes = @NamedAttributeNode("user"))
+@NamedEntityGraph(name = "Post.comments", attributeNodes = @NamedAttributeNode(value = "comments", subgraph = "author"),
+        subgraphs = @NamedSubgraph(name = "author", attributeNodes = @NamedAttributeNode("user")))
+@NamedEntityGraph(name = "Post.likes", attributeNodes = @NamedAttributeNode(value = "likes", subgraph = "author"),
+        subgraphs = @NamedSubgraph(name = "author", attributeNodes = @NamedAttributeNode("user")))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -42,12 +53,21 @@ public class Post implements Comparable<Post> {
     @JoinColumn(name = "user_id")
     private User user;
 
-    @OneToMany(mappedBy = "post", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "post", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<Comment> comments = new TreeSet<>();
 
-    @OneToMany(mappedBy = "post", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "post", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<LikeOnPost> likes = new TreeSet<>();
 
+    // maintained by EngagementCounterService, never written through the entity; it evicts the cached entity on flush
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false)
+    private long likeCount;
+
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false)
+    private long commentCount;
+
     @Column(name = "created", nullable = false, updatable = false)
     @CreatedDate
     private LocalDateTime created = LocalDateTime.now(ZoneOffset.UTC);
@@ -1,5 +1,6 @@
 package com.communiverse.communiverse.model;
 
+import com.communiverse.communiverse.config.SecondLevelCacheConfig;
 import com.communiverse.communiverse.model.like.LikeOnComment;
 import com.communiverse.communiverse.model.like.LikeOnPost;
 import jakarta.persistence.*;
@@ -7,6 +8,10 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 
@@ -19,6 +24,7 @@ import java.util.TreeSet;
 
 @Entity
 @Table(name = "user")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USER_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -45,24 +51,37 @@ public class User {
     @Column(name = "last_login")
     private LocalDateTime lastLogin;
 
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    // collections are loaded on access or by a fetch plan, one query per collection role rather than a cartesian product
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<Post> posts = new TreeSet<>();
 
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<Comment> comments = new TreeSet<>();
 
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<LikeOnPost> likeOnPosts = new TreeSet<>();
 
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @Fetch(FetchMode.SUBSELECT)
     private Set<LikeOnComment> likeOnComments = new TreeSet<>();
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Fetch(FetchMode.SUBSELECT)
     @JoinTable(name = "user_followers",
             joinColumns = @JoinColumn(name = "follower_id"),
             inverseJoinColumns = @JoinColumn(name = "followed_id"))
     private Set<User> followers = new HashSet<>();
 
+    // maintained by EngagementCounterService, never written through the entity; it evicts the cached entity on flush
+    @Column(name = "follower_count", nullable = false, insertable = false, updatable = false)
+    private long followerCount;
+
+    @Column(name = "following_count", nullable = false, insertable = false, updatable = false)
+    private long followingCount;
+
     @Column(name = "created", nullable = false, updatable = false)
     @CreatedDate
     private LocalDateTime created = LocalDateTime.now(ZoneOffset.UTC);
@@ -81,8 +100,7 @@ public class User {
                 && Objects.equals(email, user.email)
                 && Objects.equals(password, user.password)
                 && Objects.equals(profilePicture, user.profilePicture)
-                && Objects.equals(lastLogin, user.lastLogin)
-                && Objects.equals(followers, user.followers);
+                && Objects.equals(lastLogin, user.lastLogin);
     }
 
     @Override
@@ -0,0 +1,46 @@
+package com.communiverse.communiverse.repo;
+
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import org.hibernate.Hibernate;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Initializes the lazy collections of a loaded entity down to what the "with all related data" loaders return:
+ * a user with their posts, comments, likes and followers, and the comments, likes and replies of those.
+ * A comment's post comes with its comments too: the build enables association management, so linking a new comment
+ * or reply to that post adds it to them, which fails on a detached comment when they were not loaded.
+ * <p>
+ * Must be called in the transaction the entity was loaded in. The collections are subselect-fetched, so each
+ * collection role costs a query per level of the aggregate rather than a query per entity.
+ */
+public final class Aggregates {
+
+    private Aggregates() {
+    }
+
+    public static @NotNull User initialize(@NotNull User user) {
+        user.getPosts().forEach(Aggregates::initialize);
+        user.getComments().forEach(Aggregates::initialize);
+        Hibernate.initialize(user.getLikeOnPosts());
+        Hibernate.initialize(user.getLikeOnComments());
+        Hibernate.initialize(user.getFollowers());
+        return user;
+    }
+
+    public static @NotNull Post initialize(@NotNull Post post) {
+        post.getComments().forEach(Aggregates::initialize);
+        Hibernate.initialize(post.getLikes());
+        return post;
+    }
+
+    public static @NotNull Comment initialize(@NotNull Comment comment) {
+        if (comment.getPost() != null) {
+            Hibernate.initialize(comment.getPost().getComments());
+        }
+        Hibernate.initialize(comment.getLikes());
+        comment.getReplies().forEach(Aggregates::initialize);
+        return comment;
+    }
+}
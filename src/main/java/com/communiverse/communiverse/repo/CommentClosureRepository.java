@@ -0,0 +1,42 @@
+package com.communiverse.communiverse.repo;
+
+import com.communiverse.communiverse.model.CommentClosure;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface CommentClosureRepository extends JpaRepository<CommentClosure, CommentClosure.Key> {
+
+    /**
+     * Adds the rows of a newly created comment: itself, and each ancestor of its parent one level deeper.
+     */
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "comment_closure"))
+    @Query(value = "INSERT INTO comment_closure (ancestor_id, descendant_id, depth) " +
+            "SELECT c.id, c.id, 0 FROM comment c WHERE c.id = :commentId " +
+            "UNION ALL " +
+            "SELECT cc.ancestor_id, c.id, cc.depth + 1 FROM comment c " +
+            "JOIN comment_closure cc ON cc.descendant_id = c.parent_comment_id WHERE c.id = :commentId",
+            nativeQuery = true)
+    int insertComment(@Param("commentId") Long commentId);
+
+    @Query("SELECT COUNT(cc) FROM CommentClosure cc WHERE cc.ancestorId = :commentId AND cc.depth > 0")
+    long countDescendants(@Param("commentId") Long commentId);
+
+    @Query("SELECT cc.descendantId FROM CommentClosure cc WHERE cc.ancestorId = :commentId AND cc.depth > 0")
+    List<Long> findDescendantIds(@Param("commentId") Long commentId);
+
+    @Query("SELECT COUNT(cc) FROM CommentClosure cc JOIN Comment c ON c.id = cc.descendantId " +
+            "WHERE cc.ancestorId = :commentId AND cc.depth > 0 AND c.content <> :content")
+    long countDescendantsWithContentOtherThan(@Param("commentId") Long commentId, @Param("content") String content);
+}
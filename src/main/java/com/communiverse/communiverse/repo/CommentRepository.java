@@ -1,8 +1,16 @@
 package com.communiverse.communiverse.repo;
 
+import com.communiverse.communiverse.dto.CommentDto;
 import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.utils.PagingUtils;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,6 +25,89 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     List<Comment> findByPostIdAndUserId(Long postId, Long userId);
 
+    String COMMENT_DTO = "SELECT new com.communiverse.communiverse.dto.CommentDto(" +
+            "c.id, c.content, u.id, u.userName, c.post.id, pc.id, c.likeCount, c.replyCount, c.created, c.modified) " +
+            "FROM Comment c JOIN c.user u LEFT JOIN c.parentComment pc ";
+
+    @Query(COMMENT_DTO + "WHERE c.id = :commentId")
+    Optional<CommentDto> findDtoById(@Param("commentId") Long commentId);
+
+    @Query(COMMENT_DTO + "WHERE c.post.id = :postId ORDER BY c.id")
+    List<CommentDto> findDtosByPostId(@Param("postId") Long postId);
+
+    // chunks of the streaming endpoint, in id order
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = PagingUtils.STREAM_FETCH_SIZE))
+    @Query(COMMENT_DTO + "WHERE c.post.id = :postId AND c.id > :afterId ORDER BY c.id")
+    List<CommentDto> findDtoChunkByPostIdAfter(@Param("postId") Long postId, @Param("afterId") Long afterId,
+                                               Pageable pageable);
+
+    @Query(COMMENT_DTO + "WHERE u.id = :userId ORDER BY c.id")
+    List<CommentDto> findDtosByUserId(@Param("userId") Long userId);
+
+    @Query(COMMENT_DTO + "WHERE c.post.id = :postId AND u.id = :userId ORDER BY c.id")
+    List<CommentDto> findDtosByPostIdAndUserId(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Query(COMMENT_DTO + "JOIN CommentClosure cc ON cc.descendantId = c.id " +
+            "WHERE cc.ancestorId = :commentId AND cc.depth > 0 ORDER BY cc.depth, c.id")
+    List<CommentDto> findDescendantDtos(@Param("commentId") Long commentId);
+
+    // root first
+    @Query(COMMENT_DTO + "JOIN CommentClosure cc ON cc.ancestorId = c.id " +
+            "WHERE cc.descendantId = :commentId AND cc.depth > 0 ORDER BY cc.depth DESC")
+    List<CommentDto> findAncestorDtos(@Param("commentId") Long commentId);
+
+    // the ids of the comment and its descendants, materialized so MySQL reads them before the closure rows cascade away
+    String SUBTREE_IDS = "(SELECT s.id FROM (SELECT cc.descendant_id AS id FROM comment_closure cc " +
+            "WHERE cc.ancestor_id = :commentId) s)";
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "like_comment"))
+    @Query(value = "DELETE FROM like_comment WHERE comment_id IN " + SUBTREE_IDS, nativeQuery = true)
+    int deleteSubtreeLikes(@Param("commentId") Long commentId);
+
+    /**
+     * Deletes the comment and all its descendants in a single statement, their likes must be deleted first.
+     * The closure rows are removed by the DB.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "comment"))
+    @Query(value = "DELETE FROM comment WHERE id IN " + SUBTREE_IDS, nativeQuery = true)
+    int deleteSubtree(@Param("commentId") Long commentId);
+
+    /*
+        Recursive thread queries: the anchor selects one page of root comments, the recursive part descends
+        to their replies up to :depth levels. Parents are ordered before their replies, so the tree can be
+        assembled in a single pass. Columns are read by position, see THREAD_COLUMNS.
+     */
+    String THREAD_COLUMNS = "t.id, t.content, t.user_id, u.username, t.post_id, t.parent_comment_id, " +
+            "t.like_count, t.reply_count, t.created, t.modified, t.depth, " +
+            "CASE WHEN t.depth = :depth AND EXISTS (SELECT 1 FROM comment r WHERE r.parent_comment_id = t.id) " +
+            "THEN 1 ELSE 0 END AS more_replies";
+
+    String THREAD_ROOTS = "WITH RECURSIVE thread (id, content, user_id, post_id, parent_comment_id, " +
+            "like_count, reply_count, created, modified, depth) AS (" +
+            "SELECT * FROM (SELECT c.id, c.content, c.user_id, c.post_id, c.parent_comment_id, " +
+            "c.like_count, c.reply_count, c.created, c.modified, 0 AS depth FROM comment c WHERE ";
+
+    String THREAD_REPLIES = " AND c.id > :after ORDER BY c.id LIMIT :limit) roots " +
+            "UNION ALL " +
+            "SELECT c.id, c.content, c.user_id, c.post_id, c.parent_comment_id, " +
+            "c.like_count, c.reply_count, c.created, c.modified, t.depth + 1 " +
+            "FROM comment c JOIN thread t ON c.parent_comment_id = t.id WHERE t.depth < :depth) " +
+            "SELECT " + THREAD_COLUMNS + " FROM thread t JOIN user u ON u.id = t.user_id ORDER BY t.depth, t.id";
+
+    String POST_THREAD = THREAD_ROOTS + "c.post_id = :postId AND c.parent_comment_id IS NULL" + THREAD_REPLIES;
+
+    String REPLY_THREAD = THREAD_ROOTS + "c.parent_comment_id = :commentId" + THREAD_REPLIES;
+
+    @Query(value = POST_THREAD, nativeQuery = true)
+    List<Object[]> findPostThread(@Param("postId") Long postId, @Param("after") Long after,
+                                  @Param("limit") int limit, @Param("depth") int depth);
+
+    @Query(value = REPLY_THREAD, nativeQuery = true)
+    List<Object[]> findReplyThread(@Param("commentId") Long commentId, @Param("after") Long after,
+                                   @Param("limit") int limit, @Param("depth") int depth);
+
 //    @Query("SELECT c FROM Comment c " +
 //            "LEFT JOIN FETCH c.likes " +
 //            "WHERE c.id = :commentId")
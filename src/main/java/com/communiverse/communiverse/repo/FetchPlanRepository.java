@@ -0,0 +1,74 @@
+package com.communiverse.communiverse.repo;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Loads an entity along with a per-request fetch plan made of named entity graphs, e.g. {@code Post.comments}.
+ * <p>
+ * Each graph is fetched by its own query into the same persistence context, so expanding several collections
+ * doesn't join them into a cartesian product, and a graph covering only eager associations costs no query. The associations left out of the plan stay lazy: callers must
+ * read the entity in the transaction it was loaded in, touching only what the plan fetched.
+ */
+@Repository
+public class FetchPlanRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Maps the names of the associations to expand to the entity graphs named {@code <Entity>.<association>}.
+     *
+     * @param expandable The associations of the entity having a graph.
+     */
+    public static @NotNull List<String> graphNames(@NotNull Class<?> entityType, @NotNull Collection<String> expand,
+                                                   @NotNull Set<String> expandable) {
+        return expand.stream()
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .sorted()
+                .map(name -> {
+                    if (!expandable.contains(name)) {
+                        throw new RuntimeException("Unknown expand " + name + ", expected one of " + expandable);
+                    }
+                    return entityType.getSimpleName() + "." + name;
+                })
+                .toList();
+    }
+
+    /**
+     * Finds the entity, its eager associations joined, then runs a query per graph that adds something it hasn't loaded.
+     *
+     * @param graphNames Names of the entity graphs to fetch, empty to load the entity alone.
+     */
+    public <T> Optional<T> findById(@NotNull Class<T> entityType, @NotNull Long id, @NotNull Collection<String> graphNames) {
+        T entity = entityManager.find(entityType, id);
+        if (entity == null) {
+            return Optional.empty();
+        }
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        String query = "SELECT e FROM " + entityType.getSimpleName() + " e WHERE e.id = :id";
+        for (String graphName : graphNames) {
+            EntityGraph<?> graph = entityManager.getEntityGraph(graphName);
+            boolean loaded = graph.getAttributeNodes().stream()
+                    .allMatch(node -> persistenceUnitUtil.isLoaded(entity, node.getAttributeName()));
+            if (!loaded) {
+                entityManager.createQuery(query, entityType)
+                        .setParameter("id", id)
+                        .setHint("jakarta.persistence.loadgraph", graph)
+                        .getResultList();
+            }
+        }
+        return Optional.of(entity);
+    }
+}
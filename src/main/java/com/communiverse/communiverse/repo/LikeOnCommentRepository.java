@@ -1,11 +1,18 @@
 package com.communiverse.communiverse.repo;
 
+import com.communiverse.communiverse.dto.LikeDto;
 import com.communiverse.communiverse.model.like.LikeOnComment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,10 +21,31 @@ public interface LikeOnCommentRepository extends JpaRepository<LikeOnComment, Lo
 
     Optional<LikeOnComment> findByCommentIdAndUserId(Long commentId, Long userId);
 
+    boolean existsByCommentIdAndUserId(Long commentId, Long userId);
+
+    // inserts nothing if the user already likes the comment, fails on the foreign keys if either is missing
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "like_comment"))
+    @Query(value = "INSERT INTO like_comment (comment_id, user_id, created, modified) " +
+            "SELECT :commentId, :userId, :now, :now FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM like_comment l WHERE l.comment_id = :commentId AND l.user_id = :userId)",
+            nativeQuery = true)
+    int insertLike(@Param("commentId") Long commentId, @Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LikeOnComment l WHERE l.comment.id = :commentId AND l.user.id = :userId")
+    int deleteLike(@Param("commentId") Long commentId, @Param("userId") Long userId);
+
     @Query("SELECT l FROM LikeOnComment l WHERE l.user.id = :userId")
     List<LikeOnComment> findCommentLikesByUserId(@Param("userId") Long userId);
 
     @Query("SELECT l FROM LikeOnComment l WHERE l.comment.id = :commentId")
     List<LikeOnComment> findLikesByCommentId(@Param("commentId") Long commentId);
+
+    @Query("SELECT new com.communiverse.communiverse.dto.LikeDto(l.id, l.user.id, l.comment.id, '" + LikeDto.COMMENT + "', l.created) " +
+            "FROM LikeOnComment l WHERE l.user.id = :userId ORDER BY l.id")
+    List<LikeDto> findCommentLikeDtosByUserId(@Param("userId") Long userId);
 }
 
@@ -1,11 +1,18 @@
 package com.communiverse.communiverse.repo;
 
+import com.communiverse.communiverse.dto.LikeDto;
 import com.communiverse.communiverse.model.like.LikeOnPost;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,10 +21,31 @@ public interface LikeOnPostRepository extends JpaRepository<LikeOnPost, Long> {
 
     Optional<LikeOnPost> findByPostIdAndUserId(Long postId, Long userId);
 
+    boolean existsByPostIdAndUserId(Long postId, Long userId);
+
+    // inserts nothing if the user already likes the post, fails on the foreign keys if either is missing
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "like_post"))
+    @Query(value = "INSERT INTO like_post (post_id, user_id, created, modified) " +
+            "SELECT :postId, :userId, :now, :now FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM like_post l WHERE l.post_id = :postId AND l.user_id = :userId)",
+            nativeQuery = true)
+    int insertLike(@Param("postId") Long postId, @Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LikeOnPost l WHERE l.post.id = :postId AND l.user.id = :userId")
+    int deleteLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
     @Query("SELECT l FROM LikeOnPost l WHERE l.user.id = :userId")
     List<LikeOnPost> findPostLikesByUserId(@Param("userId") Long userId);
 
     @Query("SELECT l FROM LikeOnPost l WHERE l.post.id = :postId")
     List<LikeOnPost> findLikesByPostId(@Param("postId") Long postId);
+
+    @Query("SELECT new com.communiverse.communiverse.dto.LikeDto(l.id, l.user.id, l.post.id, '" + LikeDto.POST + "', l.created) " +
+            "FROM LikeOnPost l WHERE l.user.id = :userId ORDER BY l.id")
+    List<LikeDto> findPostLikeDtosByUserId(@Param("userId") Long userId);
 }
 
@@ -1,15 +1,56 @@
 package com.communiverse.communiverse.repo;
 
+import com.communiverse.communiverse.dto.PostDto;
 import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.utils.PagingUtils;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
+    // served by the query cache, the posts themselves by the second-level cache
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Post> findByUserId(Long userId);
+
+    String POST_DTO = "SELECT new com.communiverse.communiverse.dto.PostDto(" +
+            "p.id, p.title, p.content, p.image, u.id, u.userName, p.likeCount, p.commentCount, p.created, p.modified) ";
+
+    @Query(POST_DTO + "FROM Post p JOIN p.user u WHERE p.id = :postId")
+    Optional<PostDto> findDtoById(@Param("postId") Long postId);
+
+    @Query(POST_DTO + "FROM Post p JOIN p.user u WHERE p.id IN :postIds")
+    List<PostDto> findDtosByIdIn(@Param("postIds") Collection<Long> postIds);
+
+    // keyset paging on (created, id), newest first
+    @Query(POST_DTO + "FROM Post p JOIN p.user u ORDER BY p.created DESC, p.id DESC")
+    List<PostDto> findDtoFirstPage(Pageable pageable);
+
+    @Query(POST_DTO + "FROM Post p JOIN p.user u " +
+            "WHERE p.created < :afterCreated OR (p.created = :afterCreated AND p.id < :afterId) " +
+            "ORDER BY p.created DESC, p.id DESC")
+    List<PostDto> findDtoPageAfter(@Param("afterCreated") LocalDateTime afterCreated, @Param("afterId") Long afterId,
+                                   Pageable pageable);
+
+    // chunks of the streaming endpoint, in id order
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = PagingUtils.STREAM_FETCH_SIZE))
+    @Query(POST_DTO + "FROM Post p JOIN p.user u WHERE p.id > :afterId ORDER BY p.id")
+    List<PostDto> findDtoChunkAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // newest first; post ids are generated in insertion order, so they double as the feed cursor
+    @Query("SELECT p.id FROM Post p WHERE p.user.id IN :userIds AND p.id < :beforeId ORDER BY p.id DESC")
+    List<Long> findIdsByUserIdsBefore(@Param("userIds") Collection<Long> userIds,
+                                      @Param("beforeId") Long beforeId,
+                                      Pageable pageable);
 }
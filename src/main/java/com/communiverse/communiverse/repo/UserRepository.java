@@ -1,21 +1,85 @@
 package com.communiverse.communiverse.repo;
 
+import com.communiverse.communiverse.dto.UserDto;
 import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.utils.PagingUtils;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    @Query("SELECT u FROM User u " +
-            "LEFT JOIN FETCH u.followers " +
-            "LEFT JOIN FETCH u.likeOnPosts " +
-            "LEFT JOIN FETCH u.likeOnComments " +
-            "LEFT JOIN FETCH u.comments " +
-            "LEFT JOIN FETCH u.posts " +
-            "WHERE u.id = :userId")
-    Optional<User> findByIdWithAllRelatedData(Long userId);
+    // the collections are subselect-fetched, a query per collection rather than joining them all
+    @Transactional(readOnly = true)
+    default Optional<User> findByIdWithAllRelatedData(Long userId) {
+        return findById(userId).map(Aggregates::initialize);
+    }
+
+    String USER_DTO = "SELECT new com.communiverse.communiverse.dto.UserDto(" +
+            "u.id, u.userName, u.email, u.profilePicture, u.lastLogin, u.followerCount, u.followingCount, u.created, u.modified) ";
+
+    @Query(USER_DTO + "FROM User u WHERE u.id = :userId")
+    Optional<UserDto> findDtoById(@Param("userId") Long userId);
+
+    // keyset paging on the primary key
+    @Query(USER_DTO + "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserDto> findDtoPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // chunks of the streaming endpoint, in id order
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = PagingUtils.STREAM_FETCH_SIZE))
+    @Query(USER_DTO + "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserDto> findDtoChunkAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(USER_DTO + "FROM User u WHERE u.id IN :userIds")
+    List<UserDto> findDtosByIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Query("SELECT new com.communiverse.communiverse.dto.UserDto(" +
+            "f.id, f.userName, f.email, f.profilePicture, f.lastLogin, f.followerCount, f.followingCount, f.created, f.modified) " +
+            "FROM User u JOIN u.followers f WHERE u.id = :userId")
+    List<UserDto> findFollowerDtos(@Param("userId") Long userId);
+
+    // a row of user_followers means followed_id follows follower_id, skips the insert if it already does
+    // the native writes declare the tables they touch, else Hibernate invalidates every second-level cache region
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_followers"))
+    @Query(value = "INSERT INTO user_followers (follower_id, followed_id) SELECT :userId, :followerId FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM user_followers f WHERE f.follower_id = :userId AND f.followed_id = :followerId)",
+            nativeQuery = true)
+    int insertFollower(@Param("userId") Long userId, @Param("followerId") Long followerId);
+
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_followers"))
+    @Query(value = "DELETE FROM user_followers WHERE follower_id = :userId AND followed_id = :followerId", nativeQuery = true)
+    int deleteFollower(@Param("userId") Long userId, @Param("followerId") Long followerId);
+
+    @Query(value = "SELECT COUNT(*) FROM user_followers WHERE follower_id = :userId AND followed_id = :followerId",
+            nativeQuery = true)
+    long countFollower(@Param("userId") Long userId, @Param("followerId") Long followerId);
+
+    @Query(value = "SELECT followed_id FROM user_followers WHERE follower_id = :userId", nativeQuery = true)
+    List<Long> findFollowerIds(@Param("userId") Long userId);
+
+    @Query(value = "SELECT follower_id FROM user_followers WHERE followed_id = :userId", nativeQuery = true)
+    List<Long> findFollowedIds(@Param("userId") Long userId);
+
+    // both ways, only the rows of the user's own followers are deleted along with the user
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_followers"))
+    @Query(value = "DELETE FROM user_followers WHERE follower_id = :userId OR followed_id = :userId", nativeQuery = true)
+    int deleteFollows(@Param("userId") Long userId);
 }
@@ -0,0 +1,96 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.CommentThreadRow;
+import com.communiverse.communiverse.repo.CommentRepository;
+import com.communiverse.communiverse.utils.PagingUtils;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("!r2dbc")
+public class JpaReactiveCommentRepository implements ReactiveCommentRepository {
+
+    private final CommentRepository commentRepository;
+    private final PersistenceScheduler persistenceScheduler;
+
+    @Autowired
+    public JpaReactiveCommentRepository(CommentRepository commentRepository, PersistenceScheduler persistenceScheduler) {
+        this.commentRepository = commentRepository;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    @Override
+    public Mono<CommentDto> findDtoById(Long commentId) {
+        return persistenceScheduler.mono(() -> commentRepository.findDtoById(commentId))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    @Override
+    public Flux<CommentDto> findDtosByPostId(Long postId) {
+        return persistenceScheduler.mono(() -> commentRepository.findDtosByPostId(postId))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    @Override
+    public Flux<CommentDto> streamDtosByPostId(Long postId) {
+        return PagingUtils.streamChunks((afterId, chunk) ->
+                        persistenceScheduler.flux(() -> commentRepository.findDtoChunkByPostIdAfter(postId, afterId, chunk)),
+                CommentDto::getId);
+    }
+
+    @Override
+    public Flux<CommentThreadRow> findPostThread(Long postId, Long after, int limit, int depth) {
+        return persistenceScheduler.flux(() -> commentRepository.findPostThread(postId, after, limit, depth))
+                .map(JpaReactiveCommentRepository::toThreadRow);
+    }
+
+    @Override
+    public Flux<CommentThreadRow> findReplyThread(Long commentId, Long after, int limit, int depth) {
+        return persistenceScheduler.flux(() -> commentRepository.findReplyThread(commentId, after, limit, depth))
+                .map(JpaReactiveCommentRepository::toThreadRow);
+    }
+
+    // columns in the order of CommentRepository.THREAD_COLUMNS
+    private static @NotNull CommentThreadRow toThreadRow(@NotNull Object[] row) {
+        CommentDto comment = CommentDto.builder()
+                .id(((Number) row[0]).longValue())
+                .content(toText(row[1]))
+                .userId(((Number) row[2]).longValue())
+                .userName((String) row[3])
+                .postId(((Number) row[4]).longValue())
+                .parentCommentId(row[5] == null ? null : ((Number) row[5]).longValue())
+                .likeCount(((Number) row[6]).longValue())
+                .replyCount(((Number) row[7]).longValue())
+                .created(toLocalDateTime(row[8]))
+                .modified(toLocalDateTime(row[9]))
+                .build();
+        return new CommentThreadRow(comment, ((Number) row[10]).intValue(), ((Number) row[11]).intValue() > 0);
+    }
+
+    private static String toText(Object value) {
+        // TEXT columns are read as CLOBs by some drivers
+        if (value instanceof Clob clob) {
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to read comment content", e);
+            }
+        }
+        return (String) value;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+}
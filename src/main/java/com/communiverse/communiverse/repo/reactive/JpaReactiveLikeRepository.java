@@ -0,0 +1,59 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.repo.LikeOnCommentRepository;
+import com.communiverse.communiverse.repo.LikeOnPostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("!r2dbc")
+public class JpaReactiveLikeRepository implements ReactiveLikeRepository {
+
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+    private final PersistenceScheduler persistenceScheduler;
+
+    @Autowired
+    public JpaReactiveLikeRepository(LikeOnPostRepository likeOnPostRepository,
+                                     LikeOnCommentRepository likeOnCommentRepository,
+                                     PersistenceScheduler persistenceScheduler) {
+        this.likeOnPostRepository = likeOnPostRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    @Override
+    public Mono<Long> insertPostLike(Long postId, Long userId, LocalDateTime now) {
+        return persistenceScheduler.mono(() -> (long) likeOnPostRepository.insertLike(postId, userId, now));
+    }
+
+    @Override
+    public Mono<Long> deletePostLike(Long postId, Long userId) {
+        return persistenceScheduler.mono(() -> (long) likeOnPostRepository.deleteLike(postId, userId));
+    }
+
+    @Override
+    public Mono<Boolean> existsPostLike(Long postId, Long userId) {
+        return persistenceScheduler.mono(() -> likeOnPostRepository.existsByPostIdAndUserId(postId, userId));
+    }
+
+    @Override
+    public Mono<Long> insertCommentLike(Long commentId, Long userId, LocalDateTime now) {
+        return persistenceScheduler.mono(() -> (long) likeOnCommentRepository.insertLike(commentId, userId, now));
+    }
+
+    @Override
+    public Mono<Long> deleteCommentLike(Long commentId, Long userId) {
+        return persistenceScheduler.mono(() -> (long) likeOnCommentRepository.deleteLike(commentId, userId));
+    }
+
+    @Override
+    public Mono<Boolean> existsCommentLike(Long commentId, Long userId) {
+        return persistenceScheduler.mono(() -> likeOnCommentRepository.existsByCommentIdAndUserId(commentId, userId));
+    }
+}
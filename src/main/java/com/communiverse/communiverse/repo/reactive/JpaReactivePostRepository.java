@@ -0,0 +1,52 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.repo.PostRepository;
+import com.communiverse.communiverse.utils.PagingUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("!r2dbc")
+public class JpaReactivePostRepository implements ReactivePostRepository {
+
+    private final PostRepository postRepository;
+    private final PersistenceScheduler persistenceScheduler;
+
+    @Autowired
+    public JpaReactivePostRepository(PostRepository postRepository, PersistenceScheduler persistenceScheduler) {
+        this.postRepository = postRepository;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    @Override
+    public Mono<PostDto> findDtoById(Long postId) {
+        return persistenceScheduler.mono(() -> postRepository.findDtoById(postId))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    @Override
+    public Flux<PostDto> findDtoFirstPage(Pageable pageable) {
+        return persistenceScheduler.mono(() -> postRepository.findDtoFirstPage(pageable))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    @Override
+    public Flux<PostDto> findDtoPageAfter(LocalDateTime afterCreated, Long afterId, Pageable pageable) {
+        return persistenceScheduler.mono(() -> postRepository.findDtoPageAfter(afterCreated, afterId, pageable))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    @Override
+    public Flux<PostDto> streamDtos() {
+        return PagingUtils.streamChunks((afterId, chunk) ->
+                persistenceScheduler.flux(() -> postRepository.findDtoChunkAfter(afterId, chunk)), PostDto::getId);
+    }
+}
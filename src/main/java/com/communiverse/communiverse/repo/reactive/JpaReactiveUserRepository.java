@@ -0,0 +1,50 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.UserDto;
+import com.communiverse.communiverse.repo.UserRepository;
+import com.communiverse.communiverse.utils.PagingUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("!r2dbc")
+public class JpaReactiveUserRepository implements ReactiveUserRepository {
+
+    private final UserRepository userRepository;
+    private final PersistenceScheduler persistenceScheduler;
+
+    @Autowired
+    public JpaReactiveUserRepository(UserRepository userRepository, PersistenceScheduler persistenceScheduler) {
+        this.userRepository = userRepository;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    @Override
+    public Mono<UserDto> findDtoById(Long userId) {
+        return persistenceScheduler.mono(() -> userRepository.findDtoById(userId))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    @Override
+    public Flux<UserDto> findDtoPageAfter(Long afterId, Pageable pageable) {
+        return persistenceScheduler.mono(() -> userRepository.findDtoPageAfter(afterId, pageable))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    @Override
+    public Flux<UserDto> findFollowerDtos(Long userId) {
+        return persistenceScheduler.mono(() -> userRepository.findFollowerDtos(userId))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    @Override
+    public Flux<UserDto> streamDtos() {
+        return PagingUtils.streamChunks((afterId, chunk) ->
+                persistenceScheduler.flux(() -> userRepository.findDtoChunkAfter(afterId, chunk)), UserDto::getId);
+    }
+}
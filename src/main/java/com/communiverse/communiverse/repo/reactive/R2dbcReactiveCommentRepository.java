@@ -0,0 +1,96 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.CommentThreadRow;
+import com.communiverse.communiverse.repo.CommentRepository;
+import io.r2dbc.spi.Readable;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("r2dbc")
+public class R2dbcReactiveCommentRepository implements ReactiveCommentRepository {
+
+    private static final String COMMENT_DTO = "SELECT c.id, c.content, u.id AS user_id, u.username, c.post_id, " +
+            "c.parent_comment_id, c.like_count, c.reply_count, c.created, c.modified " +
+            "FROM comment c JOIN user u ON u.id = c.user_id ";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public R2dbcReactiveCommentRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<CommentDto> findDtoById(Long commentId) {
+        return databaseClient.sql(COMMENT_DTO + "WHERE c.id = :commentId")
+                .bind("commentId", commentId)
+                .map(R2dbcReactiveCommentRepository::toCommentDto)
+                .one();
+    }
+
+    @Override
+    public Flux<CommentDto> findDtosByPostId(Long postId) {
+        return databaseClient.sql(COMMENT_DTO + "WHERE c.post_id = :postId ORDER BY c.id")
+                .bind("postId", postId)
+                .map(R2dbcReactiveCommentRepository::toCommentDto)
+                .all();
+    }
+
+    @Override
+    public Flux<CommentDto> streamDtosByPostId(Long postId) {
+        // a single query, R2DBC reads the rows as they're requested
+        return findDtosByPostId(postId);
+    }
+
+    @Override
+    public Flux<CommentThreadRow> findPostThread(Long postId, Long after, int limit, int depth) {
+        return databaseClient.sql(CommentRepository.POST_THREAD)
+                .bind("postId", postId)
+                .bind("after", after)
+                .bind("limit", limit)
+                .bind("depth", depth)
+                .map(R2dbcReactiveCommentRepository::toThreadRow)
+                .all();
+    }
+
+    @Override
+    public Flux<CommentThreadRow> findReplyThread(Long commentId, Long after, int limit, int depth) {
+        return databaseClient.sql(CommentRepository.REPLY_THREAD)
+                .bind("commentId", commentId)
+                .bind("after", after)
+                .bind("limit", limit)
+                .bind("depth", depth)
+                .map(R2dbcReactiveCommentRepository::toThreadRow)
+                .all();
+    }
+
+    private static @NotNull CommentThreadRow toThreadRow(@NotNull Readable row) {
+        // the integer types of the computed columns differ between drivers
+        return new CommentThreadRow(toCommentDto(row), ((Number) row.get("depth")).intValue(),
+                ((Number) row.get("more_replies")).intValue() > 0);
+    }
+
+    private static @NotNull CommentDto toCommentDto(@NotNull Readable row) {
+        return CommentDto.builder()
+                .id(row.get("id", Long.class))
+                .content(row.get("content", String.class))
+                .userId(row.get("user_id", Long.class))
+                .userName(row.get("username", String.class))
+                .postId(row.get("post_id", Long.class))
+                .parentCommentId(row.get("parent_comment_id", Long.class))
+                .likeCount(row.get("like_count", Long.class))
+                .replyCount(row.get("reply_count", Long.class))
+                .created(row.get("created", LocalDateTime.class))
+                .modified(row.get("modified", LocalDateTime.class))
+                .build();
+    }
+}
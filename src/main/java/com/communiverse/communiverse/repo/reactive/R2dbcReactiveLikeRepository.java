@@ -0,0 +1,81 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("r2dbc")
+public class R2dbcReactiveLikeRepository implements ReactiveLikeRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public R2dbcReactiveLikeRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertPostLike(Long postId, Long userId, LocalDateTime now) {
+        return insertLike("like_post", "post_id", postId, userId, now);
+    }
+
+    @Override
+    public Mono<Long> deletePostLike(Long postId, Long userId) {
+        return deleteLike("like_post", "post_id", postId, userId);
+    }
+
+    @Override
+    public Mono<Boolean> existsPostLike(Long postId, Long userId) {
+        return existsLike("like_post", "post_id", postId, userId);
+    }
+
+    @Override
+    public Mono<Long> insertCommentLike(Long commentId, Long userId, LocalDateTime now) {
+        return insertLike("like_comment", "comment_id", commentId, userId, now);
+    }
+
+    @Override
+    public Mono<Long> deleteCommentLike(Long commentId, Long userId) {
+        return deleteLike("like_comment", "comment_id", commentId, userId);
+    }
+
+    @Override
+    public Mono<Boolean> existsCommentLike(Long commentId, Long userId) {
+        return existsLike("like_comment", "comment_id", commentId, userId);
+    }
+
+    private @NotNull Mono<Long> insertLike(String table, String targetColumn, Long targetId, Long userId,
+                                           LocalDateTime now) {
+        return databaseClient.sql("INSERT INTO " + table + " (" + targetColumn + ", user_id, created, modified) " +
+                        "SELECT :targetId, :userId, :now, :now FROM DUAL WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM " + table + " WHERE " + targetColumn + " = :targetId AND user_id = :userId)")
+                .bind("targetId", targetId)
+                .bind("userId", userId)
+                .bind("now", now)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private @NotNull Mono<Long> deleteLike(String table, String targetColumn, Long targetId, Long userId) {
+        return databaseClient.sql("DELETE FROM " + table + " WHERE " + targetColumn + " = :targetId AND user_id = :userId")
+                .bind("targetId", targetId)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private @NotNull Mono<Boolean> existsLike(String table, String targetColumn, Long targetId, Long userId) {
+        return databaseClient.sql("SELECT 1 FROM " + table + " WHERE " + targetColumn + " = :targetId AND user_id = :userId")
+                .bind("targetId", targetId)
+                .bind("userId", userId)
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+}
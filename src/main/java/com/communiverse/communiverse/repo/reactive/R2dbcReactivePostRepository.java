@@ -0,0 +1,80 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.dto.PostDto;
+import io.r2dbc.spi.Readable;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("r2dbc")
+public class R2dbcReactivePostRepository implements ReactivePostRepository {
+
+    private static final String POST_DTO = "SELECT p.id, p.title, p.content, p.image, u.id AS user_id, u.username, " +
+            "p.like_count, p.comment_count, p.created, p.modified " +
+            "FROM post p JOIN user u ON u.id = p.user_id ";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public R2dbcReactivePostRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<PostDto> findDtoById(Long postId) {
+        return databaseClient.sql(POST_DTO + "WHERE p.id = :postId")
+                .bind("postId", postId)
+                .map(R2dbcReactivePostRepository::toPostDto)
+                .one();
+    }
+
+    @Override
+    public Flux<PostDto> findDtoFirstPage(Pageable pageable) {
+        return databaseClient.sql(POST_DTO + "ORDER BY p.created DESC, p.id DESC LIMIT :limit")
+                .bind("limit", pageable.getPageSize())
+                .map(R2dbcReactivePostRepository::toPostDto)
+                .all();
+    }
+
+    @Override
+    public Flux<PostDto> findDtoPageAfter(LocalDateTime afterCreated, Long afterId, Pageable pageable) {
+        return databaseClient.sql(POST_DTO + "WHERE p.created < :afterCreated OR (p.created = :afterCreated AND p.id < :afterId) " +
+                        "ORDER BY p.created DESC, p.id DESC LIMIT :limit")
+                .bind("afterCreated", afterCreated)
+                .bind("afterId", afterId)
+                .bind("limit", pageable.getPageSize())
+                .map(R2dbcReactivePostRepository::toPostDto)
+                .all();
+    }
+
+    @Override
+    public Flux<PostDto> streamDtos() {
+        // a single query, R2DBC reads the rows as they're requested
+        return databaseClient.sql(POST_DTO + "ORDER BY p.id")
+                .map(R2dbcReactivePostRepository::toPostDto)
+                .all();
+    }
+
+    private static @NotNull PostDto toPostDto(@NotNull Readable row) {
+        return PostDto.builder()
+                .id(row.get("id", Long.class))
+                .title(row.get("title", String.class))
+                .content(row.get("content", String.class))
+                .image(row.get("image", String.class))
+                .userId(row.get("user_id", Long.class))
+                .userName(row.get("username", String.class))
+                .likeCount(row.get("like_count", Long.class))
+                .commentCount(row.get("comment_count", Long.class))
+                .created(row.get("created", LocalDateTime.class))
+                .modified(row.get("modified", LocalDateTime.class))
+                .build();
+    }
+}
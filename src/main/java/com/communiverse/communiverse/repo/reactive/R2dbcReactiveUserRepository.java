@@ -0,0 +1,78 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.dto.UserDto;
+import io.r2dbc.spi.Readable;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@Profile("r2dbc")
+public class R2dbcReactiveUserRepository implements ReactiveUserRepository {
+
+    private static final String USER_DTO = "SELECT u.id, u.username, u.email, u.profile_picture, u.last_login, " +
+            "u.follower_count, u.following_count, u.created, u.modified ";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public R2dbcReactiveUserRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<UserDto> findDtoById(Long userId) {
+        return databaseClient.sql(USER_DTO + "FROM user u WHERE u.id = :userId")
+                .bind("userId", userId)
+                .map(R2dbcReactiveUserRepository::toUserDto)
+                .one();
+    }
+
+    @Override
+    public Flux<UserDto> findDtoPageAfter(Long afterId, Pageable pageable) {
+        return databaseClient.sql(USER_DTO + "FROM user u WHERE u.id > :afterId ORDER BY u.id LIMIT :limit")
+                .bind("afterId", afterId)
+                .bind("limit", pageable.getPageSize())
+                .map(R2dbcReactiveUserRepository::toUserDto)
+                .all();
+    }
+
+    @Override
+    public Flux<UserDto> findFollowerDtos(Long userId) {
+        // the followers of a user are the rows keyed by the user in follower_id, see User.followers
+        return databaseClient.sql(USER_DTO + "FROM user_followers f JOIN user u ON u.id = f.followed_id " +
+                        "WHERE f.follower_id = :userId")
+                .bind("userId", userId)
+                .map(R2dbcReactiveUserRepository::toUserDto)
+                .all();
+    }
+
+    @Override
+    public Flux<UserDto> streamDtos() {
+        // a single query, R2DBC reads the rows as they're requested
+        return databaseClient.sql(USER_DTO + "FROM user u ORDER BY u.id")
+                .map(R2dbcReactiveUserRepository::toUserDto)
+                .all();
+    }
+
+    private static @NotNull UserDto toUserDto(@NotNull Readable row) {
+        return UserDto.builder()
+                .id(row.get("id", Long.class))
+                .userName(row.get("username", String.class))
+                .email(row.get("email", String.class))
+                .profilePicture(row.get("profile_picture", String.class))
+                .lastLogin(row.get("last_login", LocalDateTime.class))
+                .followerCount(row.get("follower_count", Long.class))
+                .followingCount(row.get("following_count", Long.class))
+                .created(row.get("created", LocalDateTime.class))
+                .modified(row.get("modified", LocalDateTime.class))
+                .build();
+    }
+}
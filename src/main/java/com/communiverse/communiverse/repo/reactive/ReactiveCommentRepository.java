@@ -0,0 +1,33 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.CommentThreadRow;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Comment read models as reactive streams, backed by R2DBC with the {@code r2dbc} profile and by JPA otherwise.
+ */
+public interface ReactiveCommentRepository {
+
+    Mono<CommentDto> findDtoById(Long commentId);
+
+    Flux<CommentDto> findDtosByPostId(Long postId);
+
+    /**
+     * Streams the post's comments in id order, read as the subscriber requests them.
+     */
+    Flux<CommentDto> streamDtosByPostId(Long postId);
+
+    /**
+     * Loads a page of the post's top-level comments with their replies, up to {@code depth} levels, in a single query.
+     *
+     * @return The comments, parents before their replies.
+     */
+    Flux<CommentThreadRow> findPostThread(Long postId, Long after, int limit, int depth);
+
+    /**
+     * Like {@link #findPostThread}, for a page of the replies of the comment.
+     */
+    Flux<CommentThreadRow> findReplyThread(Long commentId, Long after, int limit, int depth);
+}
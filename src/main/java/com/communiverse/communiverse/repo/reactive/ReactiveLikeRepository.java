@@ -0,0 +1,25 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single-statement like writes, backed by R2DBC with the {@code r2dbc} profile and by JPA otherwise.
+ * Inserts skip an existing like, emitting 0 rows. They emit a DataIntegrityViolationException if the user/target is
+ * missing, or if a concurrent insert of the same like won the race past the existence check.
+ */
+public interface ReactiveLikeRepository {
+
+    Mono<Long> insertPostLike(Long postId, Long userId, LocalDateTime now);
+
+    Mono<Long> deletePostLike(Long postId, Long userId);
+
+    Mono<Boolean> existsPostLike(Long postId, Long userId);
+
+    Mono<Long> insertCommentLike(Long commentId, Long userId, LocalDateTime now);
+
+    Mono<Long> deleteCommentLike(Long commentId, Long userId);
+
+    Mono<Boolean> existsCommentLike(Long commentId, Long userId);
+}
@@ -0,0 +1,26 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.dto.PostDto;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Post read models as reactive streams, backed by R2DBC with the {@code r2dbc} profile and by JPA otherwise.
+ */
+public interface ReactivePostRepository {
+
+    Mono<PostDto> findDtoById(Long postId);
+
+    // keyset paging on (created, id), newest first
+    Flux<PostDto> findDtoFirstPage(Pageable pageable);
+
+    Flux<PostDto> findDtoPageAfter(LocalDateTime afterCreated, Long afterId, Pageable pageable);
+
+    /**
+     * Streams all the posts in id order, read as the subscriber requests them.
+     */
+    Flux<PostDto> streamDtos();
+}
@@ -0,0 +1,24 @@
+package com.communiverse.communiverse.repo.reactive;
+
+import com.communiverse.communiverse.dto.UserDto;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * User read models as reactive streams, backed by R2DBC with the {@code r2dbc} profile and by JPA otherwise.
+ */
+public interface ReactiveUserRepository {
+
+    Mono<UserDto> findDtoById(Long userId);
+
+    // keyset paging on id
+    Flux<UserDto> findDtoPageAfter(Long afterId, Pageable pageable);
+
+    Flux<UserDto> findFollowerDtos(Long userId);
+
+    /**
+     * Streams all the users in id order, read as the subscriber requests them.
+     */
+    Flux<UserDto> streamDtos();
+}
@@ -0,0 +1,337 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.BulkTransferDto;
+import com.communiverse.communiverse.utils.IdentityUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk export and import of the whole social graph, to seed an environment or move the data to another cluster.
+ * <p>
+ * An export writes a gzipped NDJSON file per table, one JSON object per row keyed by column name, and a manifest
+ * holding the export id and the row count of each table. All the tables are read in a single repeatable-read
+ * transaction, so the files are a consistent snapshot, and each table is streamed through one cursor.
+ * <p>
+ * An import loads the tables in foreign key order, keeping the exported ids, so it's meant for an empty DB or one
+ * holding disjoint ids. Rows are inserted in JDBC batches of {@code batchSize}, each batch committed together with
+ * the number of rows imported so far in {@code bulk_import_checkpoint}. Running an interrupted import again resumes
+ * it after its last committed batch, running a completed one again imports nothing.
+ * <p>
+ * On MySQL, add {@code rewriteBatchedStatements=true} to the JDBC url of the importing instance to send each batch
+ * as multi-row inserts, and {@code useCursorFetch=true} to the exporting one to stream rows instead of buffering
+ * each table.
+ */
+@Service
+@Slf4j
+public class BulkTransferService {
+
+    public static final String MANIFEST_FILE = "manifest.json";
+    public static final String TABLE_FILE_SUFFIX = ".ndjson.gz";
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[\\w-]+");
+
+    /**
+     * The transferred tables, in import order: a table comes after the tables it references.
+     */
+    public enum Table {
+        USER("user", "id"),
+        USER_FOLLOWERS("user_followers", "follower_id, followed_id"),
+        POST("post", "id"),
+        // a reply is created after its parent, so in id order parents are imported first
+        COMMENT("comment", "id"),
+        COMMENT_CLOSURE("comment_closure", "ancestor_id, descendant_id"),
+        LIKE_POST("like_post", "id"),
+        LIKE_COMMENT("like_comment", "id");
+
+        private final String tableName;
+        private final String orderBy;
+
+        Table(String tableName, String orderBy) {
+            this.tableName = tableName;
+            this.orderBy = orderBy;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        private String fileName() {
+            return tableName + TABLE_FILE_SUFFIX;
+        }
+
+        // the tables ordered by id generate it
+        private boolean hasIdentity() {
+            return "id".equals(orderBy);
+        }
+    }
+
+    private record Manifest(String exportId, Map<String, Long> rowCounts) {
+    }
+
+    private record Column(String name, int type) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportJdbcTemplate;
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate exportTransaction;
+    private final ObjectMapper objectMapper;
+    private final PersistenceScheduler persistenceScheduler;
+    private final FollowerGraphService followerGraphService;
+    private final FeedService feedService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Path bulkDir;
+    private final int batchSize;
+
+    @Autowired
+    public BulkTransferService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                               PersistenceScheduler persistenceScheduler, FollowerGraphService followerGraphService,
+                               FeedService feedService, EntityManagerFactory entityManagerFactory,
+                               @Value("${communiverse.bulk.dir:bulk}") String bulkDir,
+                               @Value("${communiverse.bulk.batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.exportJdbcTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        this.exportJdbcTemplate.setFetchSize(batchSize);
+        this.batchTransaction = new TransactionTemplate(Objects.requireNonNull(transactionTemplate.getTransactionManager()));
+        this.exportTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.exportTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.exportTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.persistenceScheduler = persistenceScheduler;
+        this.followerGraphService = followerGraphService;
+        this.feedService = feedService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.bulkDir = Path.of(bulkDir);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Exports all the tables to the directory of that name under {@code communiverse.bulk.dir}, replacing the files
+     * of a previous export of the same name.
+     */
+    public Mono<BulkTransferDto> exportGraph(String name) {
+        return persistenceScheduler.mono(() -> exportTo(resolve(name)));
+    }
+
+    /**
+     * Imports the export in the directory of that name under {@code communiverse.bulk.dir}.
+     */
+    public Mono<BulkTransferDto> importGraph(String name) {
+        return persistenceScheduler.mono(() -> importFrom(resolve(name)));
+    }
+
+    @VisibleForTesting
+    @NotNull BulkTransferDto exportTo(@NotNull Path dir) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(MANIFEST_FILE));
+        String exportId = UUID.randomUUID().toString();
+        Map<String, Long> rowCounts = new LinkedHashMap<>();
+        exportTransaction.executeWithoutResult(status -> {
+            for (Table table : Table.values()) {
+                rowCounts.put(table.tableName, exportTable(table, dir.resolve(table.fileName())));
+            }
+        });
+        // written last, a directory without a manifest holds an incomplete export
+        objectMapper.writeValue(dir.resolve(MANIFEST_FILE).toFile(), new Manifest(exportId, rowCounts));
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Export {} of {} rows written to {} in {} ms", exportId, rowCounts, dir, durationMs);
+        return new BulkTransferDto(exportId, rowCounts, durationMs);
+    }
+
+    @VisibleForTesting
+    @NotNull BulkTransferDto importFrom(@NotNull Path dir) throws IOException {
+        long start = System.nanoTime();
+        Path manifestPath = dir.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifestPath)) {
+            throw new RuntimeException("Export not found " + dir);
+        }
+        Manifest manifest = objectMapper.readValue(manifestPath.toFile(), Manifest.class);
+        Map<String, Long> rowCounts = new LinkedHashMap<>();
+        try {
+            for (Table table : Table.values()) {
+                long rows = importTable(manifest.exportId(), table, dir.resolve(table.fileName()));
+                long exportedRows = manifest.rowCounts().getOrDefault(table.tableName, 0L);
+                if (rows != exportedRows) {
+                    throw new RuntimeException("Export " + manifest.exportId() + " has " + rows + " rows of "
+                            + table.tableName + " instead of " + exportedRows);
+                }
+                rowCounts.put(table.tableName, rows);
+                if (table.hasIdentity()) {
+                    IdentityUtils.moveIdentityPastMaxId(jdbcTemplate, table.tableName);
+                }
+            }
+        } finally {
+            // the rows were written behind Hibernate and the in-memory views, even if only partly
+            entityManagerFactory.getCache().evictAll();
+            feedService.invalidateTimelines();
+            followerGraphService.load();
+        }
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Export {} of {} rows imported from {} in {} ms", manifest.exportId(), rowCounts, dir, durationMs);
+        return new BulkTransferDto(manifest.exportId(), rowCounts, durationMs);
+    }
+
+    private @NotNull Path resolve(String name) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new RuntimeException("Invalid export name " + name);
+        }
+        return bulkDir.resolve(name);
+    }
+
+    private long exportTable(@NotNull Table table, @NotNull Path file) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            Long rows = exportJdbcTemplate.query("SELECT * FROM " + table.tableName + " ORDER BY " + table.orderBy,
+                    (ResultSetExtractor<Long>) resultSet -> {
+                        List<Column> columns = columnsOf(resultSet.getMetaData());
+                        long count = 0;
+                        try {
+                            while (resultSet.next()) {
+                                generator.writeStartObject();
+                                for (int i = 0; i < columns.size(); i++) {
+                                    writeValue(generator, columns.get(i), resultSet, i + 1);
+                                }
+                                generator.writeEndObject();
+                                count++;
+                            }
+                            generator.writeRaw('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return count;
+                    });
+            return Objects.requireNonNull(rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + file, e);
+        }
+    }
+
+    private static void writeValue(@NotNull JsonGenerator generator, @NotNull Column column,
+                                   @NotNull ResultSet resultSet, int index) throws IOException, SQLException {
+        generator.writeFieldName(column.name());
+        switch (column.type()) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> {
+                long value = resultSet.getLong(index);
+                if (resultSet.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.TIMESTAMP -> {
+                LocalDateTime value = resultSet.getObject(index, LocalDateTime.class);
+                generator.writeString(value == null ? null : value.toString());
+            }
+            default -> generator.writeString(resultSet.getString(index));
+        }
+    }
+
+    private long importTable(@NotNull String exportId, @NotNull Table table, @NotNull Path file) throws IOException {
+        long checkpoint = readCheckpoint(exportId, table);
+        if (checkpoint > 0) {
+            log.info("Resuming import of {} after {} rows", table.tableName, checkpoint);
+        }
+        // the columns of the target table, columns missing from the file are imported as null
+        List<Column> columns = jdbcTemplate.query("SELECT * FROM " + table.tableName + " WHERE 1 = 0",
+                (ResultSetExtractor<List<Column>>) resultSet -> columnsOf(resultSet.getMetaData()));
+        String insertSql = "INSERT INTO " + table.tableName + " ("
+                + String.join(", ", Objects.requireNonNull(columns).stream().map(Column::name).toList())
+                + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+
+        long rows = 0;
+        List<Object[]> batchArgs = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || ++rows <= checkpoint) {
+                    continue;
+                }
+                batchArgs.add(toArgs(objectMapper.readTree(line), columns));
+                if (batchArgs.size() == batchSize) {
+                    writeBatch(exportId, table, insertSql, batchArgs, rows);
+                    batchArgs.clear();
+                }
+            }
+        }
+        if (!batchArgs.isEmpty()) {
+            writeBatch(exportId, table, insertSql, batchArgs, rows);
+        }
+        return rows;
+    }
+
+    private static Object @NotNull [] toArgs(@NotNull JsonNode row, @NotNull List<Column> columns) {
+        Object[] args = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            JsonNode value = row.get(columns.get(i).name());
+            if (value == null || value.isNull()) {
+                continue;
+            }
+            args[i] = switch (columns.get(i).type()) {
+                case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> value.asLong();
+                case Types.TIMESTAMP -> Timestamp.valueOf(LocalDateTime.parse(value.asText()));
+                default -> value.asText();
+            };
+        }
+        return args;
+    }
+
+    private void writeBatch(@NotNull String exportId, @NotNull Table table, @NotNull String insertSql,
+                            @NotNull List<Object[]> batchArgs, long importedRows) {
+        batchTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(insertSql, batchArgs);
+            int updated = jdbcTemplate.update("UPDATE bulk_import_checkpoint SET imported_rows = ? "
+                    + "WHERE export_id = ? AND table_name = ?", importedRows, exportId, table.tableName);
+            if (updated == 0) {
+                jdbcTemplate.update("INSERT INTO bulk_import_checkpoint (export_id, table_name, imported_rows) "
+                        + "VALUES (?, ?, ?)", exportId, table.tableName, importedRows);
+            }
+        });
+    }
+
+    private long readCheckpoint(@NotNull String exportId, @NotNull Table table) {
+        List<Long> importedRows = jdbcTemplate.queryForList("SELECT imported_rows FROM bulk_import_checkpoint "
+                + "WHERE export_id = ? AND table_name = ?", Long.class, exportId, table.tableName);
+        return importedRows.isEmpty() ? 0 : importedRows.get(0);
+    }
+
+    private static @NotNull List<Column> columnsOf(@NotNull ResultSetMetaData metaData) throws SQLException {
+        List<Column> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(new Column(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), metaData.getColumnType(i)));
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,57 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.SecondLevelCacheConfig;
+import com.communiverse.communiverse.dto.CacheRegionStatsDto;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import javax.cache.CacheManager;
+import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.JMX;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Per-region statistics of the second-level cache, read from the JCache statistics MXBean of each region.
+ */
+@Service
+public class CacheStatisticsService {
+
+    private final CacheManager secondLevelCacheManager;
+
+    @Autowired
+    public CacheStatisticsService(CacheManager secondLevelCacheManager) {
+        this.secondLevelCacheManager = secondLevelCacheManager;
+    }
+
+    public Flux<CacheRegionStatsDto> getRegionStatistics() {
+        return Flux.fromIterable(SecondLevelCacheConfig.REGIONS).map(this::getRegionStatistics);
+    }
+
+    public @NotNull CacheRegionStatsDto getRegionStatistics(@NotNull String region) {
+        CacheStatisticsMXBean statistics = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                statisticsObjectName(region), CacheStatisticsMXBean.class);
+        return CacheRegionStatsDto.builder()
+                .region(region)
+                .hits(statistics.getCacheHits())
+                .misses(statistics.getCacheMisses())
+                .puts(statistics.getCachePuts())
+                .evictions(statistics.getCacheEvictions())
+                .removals(statistics.getCacheRemovals())
+                .build();
+    }
+
+    // the name the JCache provider registers the MXBean under, with the characters reserved by JMX replaced
+    private @NotNull ObjectName statisticsObjectName(@NotNull String region) {
+        try {
+            return new ObjectName("javax.cache:type=CacheStatistics"
+                    + ",CacheManager=" + secondLevelCacheManager.getURI().toString().replaceAll("[,:=\n]", ".")
+                    + ",Cache=" + region.replaceAll("[,:=\n]", "."));
+        } catch (MalformedObjectNameException e) {
+            throw new RuntimeException("No statistics for cache region " + region, e);
+        }
+    }
+}
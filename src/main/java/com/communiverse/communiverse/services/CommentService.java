@@ -1,38 +1,65 @@
 package com.communiverse.communiverse.services;
 
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.CommentDetailsDto;
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.CommentThreadRow;
+import com.communiverse.communiverse.dto.CommentTreeNode;
+import com.communiverse.communiverse.dto.LikeDto;
+import com.communiverse.communiverse.dto.UserDto;
 import com.communiverse.communiverse.model.Comment;
 import com.communiverse.communiverse.model.Post;
 import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.model.like.LikeOnComment;
+import com.communiverse.communiverse.repo.Aggregates;
+import com.communiverse.communiverse.repo.CommentClosureRepository;
 import com.communiverse.communiverse.repo.CommentRepository;
+import com.communiverse.communiverse.repo.FetchPlanRepository;
+import com.communiverse.communiverse.repo.reactive.ReactiveCommentRepository;
+import com.communiverse.communiverse.services.EngagementCounterService.Counter;
+import com.communiverse.communiverse.utils.PagingUtils;
+import com.communiverse.communiverse.utils.ReadThroughCache;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 import java.time.LocalDateTime;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 public class CommentService {
 
     private static final Logger log = LoggerFactory.getLogger(CommentService.class);
+    private static final Set<String> EXPANDABLE =
+            Set.of(CommentDetailsDto.AUTHOR, CommentDetailsDto.REPLIES, CommentDetailsDto.LIKES);
     private final String DELETED_COMMENT = "Comment deleted";
 
     private final CommentRepository commentRepository;
-    private final UserService userService;
-    private final PostService postService;
+    private final CommentClosureRepository commentClosureRepository;
+    private final ReactiveCommentRepository reactiveCommentRepository;
+    private final FetchPlanRepository fetchPlanRepository;
+    private final EngagementCounterService counterService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final ReadThroughCache<CommentDto> commentCache;
 
     @Autowired
-    public CommentService(CommentRepository commentRepository, UserService userService, PostService postService) {
+    public CommentService(CommentRepository commentRepository, CommentClosureRepository commentClosureRepository,
+                          ReactiveCommentRepository reactiveCommentRepository, FetchPlanRepository fetchPlanRepository,
+                          EngagementCounterService counterService, PersistenceScheduler persistenceScheduler,
+                          ReadThroughCache<CommentDto> commentCache) {
         this.commentRepository = commentRepository;
-        this.userService = userService;
-        this.postService = postService;
+        this.commentClosureRepository = commentClosureRepository;
+        this.reactiveCommentRepository = reactiveCommentRepository;
+        this.fetchPlanRepository = fetchPlanRepository;
+        this.counterService = counterService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.commentCache = commentCache;
     }
 
     public Mono<Comment> getCommentById(Long id) {
@@ -48,57 +75,205 @@ public class CommentService {
     }
 
     public @NotNull Mono<Optional<Comment>> getOptionalCommentMonoById(Long userId) {
-        return Mono.fromCallable(() -> commentRepository.findById(userId));
+        return persistenceScheduler.transactional(() -> commentRepository.findById(userId).map(Aggregates::initialize));
+    }
+
+    public Mono<CommentDto> getCommentDtoById(Long commentId) {
+        return reactiveCommentRepository.findDtoById(commentId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Comment not found " + commentId)));
+    }
+
+    /**
+     * Returns a comment with the requested associations, fetching only those.
+     *
+     * @param expand Associations to include: author, replies and/or likes. None for the flat comment, read through the
+     *               hot-comment cache.
+     */
+    public Mono<CommentDetailsDto> getCommentDetails(Long commentId, Collection<String> expand) {
+        if (CollectionUtils.isEmpty(expand)) {
+            return commentCache.get(commentId)
+                    .switchIfEmpty(Mono.error(new RuntimeException("Comment not found " + commentId)))
+                    .map(comment -> CommentDetailsDto.builder().comment(comment).build());
+        }
+        return persistenceScheduler.transactional(() -> {
+            List<String> graphNames = FetchPlanRepository.graphNames(Comment.class, expand, EXPANDABLE);
+            return fetchPlanRepository.findById(Comment.class, commentId, graphNames)
+                    .map(comment -> toCommentDetails(comment, expand))
+                    .orElseThrow(() -> new RuntimeException("Comment not found " + commentId));
+        });
+    }
+
+    public Flux<CommentDto> getPostCommentDtos(Long postId) {
+        return reactiveCommentRepository.findDtosByPostId(postId);
+    }
+
+    /**
+     * Streams the post's comments in id order, read in chunks as the subscriber requests them.
+     */
+    public Flux<CommentDto> streamPostCommentDtos(Long postId) {
+        return reactiveCommentRepository.streamDtosByPostId(postId);
+    }
+
+    /**
+     * Returns a page of the post's top-level comments, each with its thread of replies, loaded with a single query.
+     *
+     * @param after Id of the last top-level comment of the previous page, or null for the first page.
+     * @param limit Max number of top-level comments in the page.
+     * @param depth Max number of reply levels under each top-level comment, or null for the whole thread.
+     */
+    public Flux<CommentTreeNode> getPostCommentTree(Long postId, Long after, int limit, Integer depth) {
+        return assembleTree(reactiveCommentRepository.findPostThread(postId, after == null ? 0L : after,
+                PagingUtils.firstPageOf(limit).getPageSize(), depth == null ? Integer.MAX_VALUE : Math.max(0, depth)));
+    }
+
+    /**
+     * Like {@link #getPostCommentTree}, for the replies of the comment, e.g. to follow a {@code moreRepliesCursor}.
+     */
+    public Flux<CommentTreeNode> getReplyTree(Long commentId, Long after, int limit, Integer depth) {
+        return assembleTree(reactiveCommentRepository.findReplyThread(commentId, after == null ? 0L : after,
+                PagingUtils.firstPageOf(limit).getPageSize(), depth == null ? Integer.MAX_VALUE : Math.max(0, depth)));
+    }
+
+    /**
+     * Returns all replies of the comment at any level, closest levels first.
+     */
+    public Flux<CommentDto> getDescendantDtos(Long commentId) {
+        return persistenceScheduler.flux(() -> commentRepository.findDescendantDtos(commentId));
+    }
+
+    /**
+     * Returns the comments the comment replies to, directly or not, starting from the top-level comment.
+     */
+    public Flux<CommentDto> getAncestorDtos(Long commentId) {
+        return persistenceScheduler.flux(() -> commentRepository.findAncestorDtos(commentId));
+    }
+
+    /**
+     * Returns the number of replies of the comment at any level.
+     */
+    public Mono<Long> getDescendantCount(Long commentId) {
+        return persistenceScheduler.mono(() -> commentClosureRepository.countDescendants(commentId));
+    }
+
+    public Flux<CommentDto> getUserCommentDtos(Long userId) {
+        return persistenceScheduler.flux(() -> commentRepository.findDtosByUserId(userId));
+    }
+
+    public Flux<CommentDto> getCommentDtosByPostIdAndUserId(Long postId, Long userId) {
+        return persistenceScheduler.flux(() -> commentRepository.findDtosByPostIdAndUserId(postId, userId));
     }
 
     public Flux<Comment> getPostComments(Long postId) {
-        return Mono.fromCallable(() -> commentRepository.findByPostId(postId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> commentRepository.findByPostId(postId));
     }
 
     public Flux<Comment> getUserComments(Long userId) {
-        return Mono.fromCallable(() -> commentRepository.findByUserId(userId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> commentRepository.findByUserId(userId));
     }
 
     public Flux<Comment> getCommentByPostIdAndUserId(Long postId, Long userId) {
-        return Mono.fromCallable(() -> commentRepository.findByPostIdAndUserId(postId, userId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> commentRepository.findByPostIdAndUserId(postId, userId));
+    }
+
+    public Mono<Long> getReplyCount(Long commentId) {
+        return counterService.getCount(Counter.COMMENT_REPLIES, commentId);
     }
 
     public Mono<Comment> createComment(Comment comment) {
-        return Mono.just(commentRepository.save(comment));
+        return persistenceScheduler.transactional(() -> {
+                    Comment savedComment = commentRepository.save(comment);
+                    commentClosureRepository.insertComment(savedComment.getId());
+                    return savedComment;
+                })
+                .doOnNext(savedComment -> {
+                    counterService.increment(Counter.POST_COMMENTS, savedComment.getPost().getId());
+                    if (savedComment.getParentComment() != null) {
+                        counterService.increment(Counter.COMMENT_REPLIES, savedComment.getParentComment().getId());
+                    }
+                });
     }
 
-    @Transactional
     public Mono<Comment> updateComment(Long id, Comment comment) {
+        return persistenceScheduler.transactional(() -> {
+            // Fetch the comment eagerly along with nested entities
+            Comment existingComment = commentRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("No such comment with id " + id));
 
-        // Fetch the comment eagerly along with nested entities
-        Comment existingComment = commentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("No such comment with id " + id));
-
-        if (existingComment.getContent().equalsIgnoreCase(DELETED_COMMENT)) {
-            log.warn("The comment with id {} marked as 'deleted' and cannot be updated", id);
-            return Mono.empty();
-        }
+            if (existingComment.getContent().equalsIgnoreCase(DELETED_COMMENT)) {
+                log.warn("The comment with id {} marked as 'deleted' and cannot be updated", id);
+                return null;
+            }
 
-        // Merge the changes
-        cloneComment(comment, existingComment);
+            // Merge the changes
+            cloneComment(comment, existingComment);
 
-        // Save the updated comment
-        return Mono.just(commentRepository.save(existingComment));
+            // Save the updated comment
+            return Aggregates.initialize(commentRepository.save(existingComment));
+        }).doOnNext(updatedComment -> commentCache.invalidate(id));
     }
 
-    @Transactional
     public Mono<Void> deleteComment(Long commentId) {
-        Optional<Comment> optionalComment = commentRepository.findById(commentId);
-        if (optionalComment.isPresent()) {
-            Comment comment = optionalComment.get();
-            Mono<User> userMono = userService.findUserById(comment.getUser().getId());
-            Mono<Post> postMono = postService.findPostById(comment.getPost().getId());
-            removeComment(comment, Objects.requireNonNull(userMono.block()), Objects.requireNonNull(postMono.block()));
+        return persistenceScheduler.transactional(() -> commentRepository.findById(commentId)
+                        .map(comment -> Tuples.of(comment, removeComment(comment))))
+                .flatMap(Mono::justOrEmpty)
+                // deleted or marked as deleted, either way the cached comment is stale
+                .doOnNext(removal -> {
+                    commentCache.invalidate(commentId);
+                    removal.getT2().forEach(commentCache::invalidate);
+                })
+                .filter(removal -> !removal.getT2().isEmpty())
+                // counted once committed
+                .doOnNext(removal -> {
+                    Comment comment = removal.getT1();
+                    counterService.add(Counter.POST_COMMENTS, comment.getPost().getId(), -removal.getT2().size());
+                    if (comment.getParentComment() != null) {
+                        counterService.decrement(Counter.COMMENT_REPLIES, comment.getParentComment().getId());
+                    }
+                })
+                .then();
+    }
+
+    private @NotNull Flux<CommentTreeNode> assembleTree(@NotNull Flux<CommentThreadRow> rows) {
+        return rows.collectList()
+                .flatMapMany(threadRows -> {
+                    List<CommentTreeNode> roots = new ArrayList<>();
+                    Map<Long, CommentTreeNode> nodesById = new HashMap<>();
+                    // parents come before their replies
+                    for (CommentThreadRow row : threadRows) {
+                        CommentTreeNode node = new CommentTreeNode(row.getComment());
+                        if (row.isMoreReplies()) {
+                            node.setMoreRepliesCursor(row.getComment().getId());
+                        }
+                        nodesById.put(row.getComment().getId(), node);
+                        if (row.getDepth() == 0) {
+                            roots.add(node);
+                        } else {
+                            nodesById.get(row.getComment().getParentCommentId()).getReplies().add(node);
+                        }
+                    }
+                    return Flux.fromIterable(roots);
+                });
+    }
+
+    // reads only the fetched associations, in the loading transaction
+    private static @NotNull CommentDetailsDto toCommentDetails(@NotNull Comment comment, @NotNull Collection<String> expand) {
+        CommentDetailsDto details = CommentDetailsDto.builder().comment(CommentDto.of(comment)).build();
+        if (expand.contains(CommentDetailsDto.AUTHOR)) {
+            details.setAuthor(UserDto.of(comment.getUser()));
+        }
+        if (expand.contains(CommentDetailsDto.REPLIES)) {
+            details.setReplies(comment.getReplies().stream()
+                    .sorted(Comparator.comparing(Comment::getId))
+                    .map(CommentDto::of)
+                    .toList());
         }
-        return Mono.empty();
+        if (expand.contains(CommentDetailsDto.LIKES)) {
+            details.setLikes(comment.getLikes().stream()
+                    .sorted(Comparator.comparing(LikeOnComment::getId))
+                    .map(LikeDto::of)
+                    .toList());
+        }
+        return details;
     }
 
     private void cloneComment(Comment source, Comment target) {
@@ -107,26 +282,26 @@ public class CommentService {
         target.setModified(LocalDateTime.now());
     }
 
-    private void removeComment(@NotNull Comment comment, @NotNull User user, @NotNull Post post) {
+    /**
+     * Deletes the comment along with its replies if they are all marked as deleted, in a single statement through the
+     * closure table. A comment having replies still shown is just marked as deleted.
+     *
+     * @return The ids of the comments deleted, none if the comment was marked as deleted.
+     */
+    private @NotNull List<Long> removeComment(@NotNull Comment comment) {
 
-        if (!CollectionUtils.isEmpty(comment.getReplies())) {
+        if (commentClosureRepository.countDescendantsWithContentOtherThan(comment.getId(), DELETED_COMMENT) > 0) {
             log.warn("Comment with id {} has replies, so just marking it as 'deleted'", comment.getId());
             comment.setContent(DELETED_COMMENT);
-            updateComment(comment.getId(), comment);
-            return;
-        }
-
-        Comment parentComment = comment.getParentComment();
-        if (parentComment != null) {
-            parentComment.getReplies().removeIf(c -> Objects.equals(c.getId(), comment.getId()));
+            comment.setModified(LocalDateTime.now());
+            return List.of();
         }
 
-        post.getComments().removeIf(c -> Objects.equals(c.getId(), comment.getId()));
-        user.getComments().removeIf(c -> Objects.equals(c.getId(), comment.getId()));
-        postService.updatePost(post.getId(), post);
-        userService.updateUser(user.getId(), user);
-        commentRepository.delete(comment); // Delete Comment in repository
-        return;
+        // read rather than counted, the deleted replies must be dropped from the cache too
+        List<Long> deletedIds = new ArrayList<>(commentClosureRepository.findDescendantIds(comment.getId()));
+        deletedIds.add(comment.getId());
+        commentRepository.deleteSubtreeLikes(comment.getId());
+        commentRepository.deleteSubtree(comment.getId());
+        return deletedIds;
     }
 }
-
@@ -0,0 +1,171 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Denormalized engagement counters (likes, comments, replies, followers) stored on the post, comment and user rows.
+ * <p>
+ * Increments are accumulated in striped in-memory adders and periodically flushed as batched
+ * {@code UPDATE ... SET count = count + ?} statements, so concurrent writers of a hot row never wait on its row lock.
+ * Reads return the persisted value plus the not yet flushed delta, waiting for a running flush to write its deltas.
+ * The flushed rows are evicted from the second-level cache, which the JDBC updates bypass.
+ * Like, comment and reply counts are not adjusted by cascading deletes of whole users or posts, follower counts are.
+ */
+@Service
+@Slf4j
+public class EngagementCounterService {
+
+    public enum Counter {
+        POST_LIKES(Post.class, "post", "like_count"),
+        POST_COMMENTS(Post.class, "post", "comment_count"),
+        COMMENT_LIKES(Comment.class, "comment", "like_count"),
+        COMMENT_REPLIES(Comment.class, "comment", "reply_count"),
+        USER_FOLLOWERS(User.class, "user", "follower_count"),
+        USER_FOLLOWING(User.class, "user", "following_count");
+
+        private final Class<?> entityType;
+        private final String entityName;
+        private final String updateSql;
+        private final String selectSql;
+
+        Counter(Class<?> entityType, String table, String column) {
+            this.entityType = entityType;
+            this.entityName = entityType.getSimpleName();
+            this.updateSql = "UPDATE " + table + " SET " + column + " = " + column + " + ? WHERE id = ?";
+            this.selectSql = "SELECT " + column + " FROM " + table + " WHERE id = ?";
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PersistenceScheduler persistenceScheduler;
+
+    private final Map<Counter, ConcurrentHashMap<Long, LongAdder>> pendingDeltas = new EnumMap<>(Counter.class);
+    // adders evicted on the previous flush, drained once more in case a writer still held a reference
+    private final Queue<RetiredAdder> retiredAdders = new ConcurrentLinkedQueue<>();
+    // a flush moves deltas from the adders to the rows, reads mustn't see them in both or in neither
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public EngagementCounterService(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+                                    PersistenceScheduler persistenceScheduler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.persistenceScheduler = persistenceScheduler;
+        for (Counter counter : Counter.values()) {
+            pendingDeltas.put(counter, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void increment(@NotNull Counter counter, @NotNull Long id) {
+        add(counter, id, 1);
+    }
+
+    public void decrement(@NotNull Counter counter, @NotNull Long id) {
+        add(counter, id, -1);
+    }
+
+    public void add(@NotNull Counter counter, @NotNull Long id, long delta) {
+        pendingDeltas.get(counter).computeIfAbsent(id, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Returns the current value of the counter, including the not yet flushed delta.
+     * Emits an error if the counted row does not exist.
+     */
+    public Mono<Long> getCount(@NotNull Counter counter, @NotNull Long id) {
+        return persistenceScheduler.mono(() -> {
+                    flushLock.readLock().lock();
+                    try {
+                        Long persisted = jdbcTemplate.query(counter.selectSql,
+                                resultSet -> resultSet.next() ? resultSet.getLong(1) : null, id);
+                        return persisted == null ? null : persisted + pendingDelta(counter, id);
+                    } finally {
+                        flushLock.readLock().unlock();
+                    }
+                })
+                .switchIfEmpty(Mono.error(new RuntimeException(counter.entityName + " not found " + id)));
+    }
+
+    /**
+     * Writes the accumulated deltas to the DB, one JDBC batch per counter.
+     */
+    @Scheduled(fixedDelayString = "${communiverse.counters.flush-interval-ms:1000}")
+    public synchronized void flush() {
+
+        Map<Counter, Map<Long, Long>> deltas = new EnumMap<>(Counter.class);
+        flushLock.writeLock().lock();
+        try {
+            drainRetiredAdders(deltas);
+
+            pendingDeltas.forEach((counter, adders) -> adders.forEach((id, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta != 0) {
+                    deltas.computeIfAbsent(counter, c -> new HashMap<>()).merge(id, delta, Long::sum);
+                } else if (adders.remove(id, adder)) {
+                    retiredAdders.add(new RetiredAdder(counter, id, adder));
+                }
+            }));
+
+            deltas.forEach(this::writeDeltas);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        flush();    // drains the adders retired by the first pass
+    }
+
+    private long pendingDelta(@NotNull Counter counter, @NotNull Long id) {
+        LongAdder adder = pendingDeltas.get(counter).get(id);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private void drainRetiredAdders(@NotNull Map<Counter, Map<Long, Long>> deltas) {
+        RetiredAdder retired;
+        while ((retired = retiredAdders.poll()) != null) {
+            long delta = retired.adder().sumThenReset();
+            if (delta != 0) {
+                deltas.computeIfAbsent(retired.counter(), c -> new HashMap<>()).merge(retired.id(), delta, Long::sum);
+            }
+        }
+    }
+
+    private void writeDeltas(@NotNull Counter counter, @NotNull Map<Long, Long> deltas) {
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> batchArgs.add(new Object[]{delta, id}));
+        try {
+            jdbcTemplate.batchUpdate(counter.updateSql, batchArgs);
+            deltas.keySet().forEach(id -> entityManagerFactory.getCache().evict(counter.entityType, id));
+        } catch (RuntimeException e) {
+            // keep the deltas for the next flush rather than losing them
+            log.error("Failed to flush {} {} counter deltas, will retry", deltas.size(), counter, e);
+            deltas.forEach((id, delta) -> add(counter, id, delta));
+        }
+    }
+
+    private record RetiredAdder(Counter counter, Long id, LongAdder adder) {
+    }
+}
@@ -0,0 +1,215 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.repo.PostRepository;
+import com.communiverse.communiverse.utils.PagingUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Home timeline of a user - the recent posts of everyone the user follows, newest first.
+ * <p>
+ * Uses hybrid fan-out: posts of regular authors are pushed into the in-memory timelines of their followers
+ * when created, while posts of authors having at least {@code fanOutThreshold} followers are pulled at read time
+ * and merged with the pushed ones. Timelines are materialized lazily on the first read and dropped whenever
+ * the user follows or unfollows somebody, so they are rebuilt from the DB on the next read. Timelines keep their
+ * {@code timelineCapacity} newest posts, older pages are queried from the DB.
+ */
+@Service
+@Slf4j
+public class FeedService {
+
+    private final PostRepository postRepository;
+    private final FollowerGraphService followerGraphService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final int fanOutThreshold;
+    private final int timelineCapacity;
+
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FeedService(PostRepository postRepository, FollowerGraphService followerGraphService,
+                       PersistenceScheduler persistenceScheduler,
+                       @Value("${communiverse.feed.fan-out-threshold:10000}") int fanOutThreshold,
+                       @Value("${communiverse.feed.timeline-capacity:800}") int timelineCapacity) {
+        this.postRepository = postRepository;
+        this.followerGraphService = followerGraphService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.fanOutThreshold = fanOutThreshold;
+        this.timelineCapacity = timelineCapacity;
+    }
+
+    /**
+     * Returns a page of the user's feed.
+     *
+     * @param userId The user whose feed is read.
+     * @param after  Id of the last post of the previous page, or null for the first page.
+     * @param limit  Max number of posts in the page.
+     * @return The posts, newest first.
+     */
+    public Flux<PostDto> getFeed(Long userId, Long after, int limit) {
+        int pageSize = PagingUtils.firstPageOf(limit).getPageSize();
+        return persistenceScheduler.flux(
+                () -> findPostsInOrder(getFeedPostIds(userId, after == null ? Long.MAX_VALUE : after, pageSize)));
+    }
+
+    /**
+     * Pushes a newly created post into the materialized timelines of the author's followers.
+     * Posts of high-follower authors are skipped, they are pulled at read time.
+     */
+    public void fanOutPost(@NotNull Post post) {
+        Long authorId = post.getUser().getId();
+        if (followerGraphService.getFollowerCount(authorId) >= fanOutThreshold) {
+            log.debug("Skipping fan-out of post {}, author {} is pulled on read", post.getId(), authorId);
+            return;
+        }
+        for (long followerId : followerGraphService.getFollowers(authorId)) {
+            Timeline timeline = timelines.get(followerId);
+            if (timeline != null) {
+                timeline.add(post.getId());
+            }
+        }
+    }
+
+    /**
+     * Drops the materialized timeline of the user, e.g. when the set of followed users has changed.
+     */
+    public void invalidateTimeline(Long userId) {
+        timelines.remove(userId);
+    }
+
+    /**
+     * Drops all the materialized timelines, e.g. after a bulk import.
+     */
+    public void invalidateTimelines() {
+        timelines.clear();
+    }
+
+    private @NotNull List<Long> getFeedPostIds(Long userId, long beforeId, int limit) {
+
+        long[] followedIds = followerGraphService.getFollowing(userId);
+        if (followedIds.length == 0) {
+            return List.of();
+        }
+
+        List<Long> pulledAuthorIds = new ArrayList<>();
+        List<Long> pushedAuthorIds = new ArrayList<>();
+        for (long followedId : followedIds) {
+            if (followerGraphService.getFollowerCount(followedId) >= fanOutThreshold) {
+                pulledAuthorIds.add(followedId);
+            } else {
+                pushedAuthorIds.add(followedId);
+            }
+        }
+
+        // newest first, duplicates are possible when an author crossed the threshold after being pushed
+        SortedSet<Long> postIds = new TreeSet<>(Comparator.reverseOrder());
+        if (!pushedAuthorIds.isEmpty()) {
+            List<Long> pushedPostIds = getTimeline(userId, pushedAuthorIds).before(beforeId, limit);
+            if (pushedPostIds == null) {
+                pushedPostIds = postRepository.findIdsByUserIdsBefore(pushedAuthorIds, beforeId, PageRequest.ofSize(limit));
+            }
+            postIds.addAll(pushedPostIds);
+        }
+        if (!pulledAuthorIds.isEmpty()) {
+            postIds.addAll(postRepository.findIdsByUserIdsBefore(pulledAuthorIds, beforeId, PageRequest.ofSize(limit)));
+        }
+
+        return postIds.stream()
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * The materialized timeline of the user, materializing it if needed. The empty timeline is published before being
+     * loaded, so the posts pushed meanwhile aren't lost, and the DB is queried outside of the map.
+     */
+    private @NotNull Timeline getTimeline(Long userId, @NotNull List<Long> authorIds) {
+        Timeline timeline = timelines.get(userId);
+        if (timeline != null) {
+            return timeline;
+        }
+        Timeline created = new Timeline(timelineCapacity);
+        timeline = timelines.putIfAbsent(userId, created);
+        if (timeline != null) {
+            return timeline;
+        }
+        try {
+            created.load(postRepository.findIdsByUserIdsBefore(authorIds, Long.MAX_VALUE, PageRequest.ofSize(timelineCapacity)));
+        } catch (RuntimeException e) {
+            timelines.remove(userId, created);
+            throw e;
+        }
+        return created;
+    }
+
+    private @NotNull List<PostDto> findPostsInOrder(@NotNull List<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return List.of();
+        }
+        // posts deleted since being pushed are just missing from the result
+        Map<Long, PostDto> postsById = postRepository.findDtosByIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostDto::getId, Function.identity()));
+        return postIds.stream()
+                .map(postsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Bounded set of post ids, newest first. When full, the oldest ids are evicted.
+     */
+    private static final class Timeline {
+
+        private final int capacity;
+        private final TreeSet<Long> postIds = new TreeSet<>(Comparator.reverseOrder());
+        private boolean loaded;
+        // ids older than the oldest kept one may be missing
+        private boolean truncated;
+
+        private Timeline(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void load(@NotNull List<Long> loadedPostIds) {
+            loadedPostIds.forEach(this::add);
+            truncated |= loadedPostIds.size() >= capacity;
+            loaded = true;
+        }
+
+        synchronized void add(Long postId) {
+            postIds.add(postId);
+            if (postIds.size() > capacity) {
+                postIds.pollLast();
+                truncated = true;
+            }
+        }
+
+        /**
+         * The page of ids before the given one, or null when the timeline can't serve it: it's still being loaded,
+         * or the page reaches past the oldest kept id of a truncated timeline.
+         */
+        synchronized @Nullable List<Long> before(long beforeId, int limit) {
+            if (!loaded) {
+                return null;
+            }
+            List<Long> page = postIds.tailSet(beforeId, false).stream()
+                    .limit(limit)
+                    .toList();
+            return truncated && page.size() < limit ? null : page;
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package com.communiverse.communiverse.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the follower graph stored in {@code user_followers}, answering follow checks, follower counts
+ * and mutual followers without touching the DB.
+ * <p>
+ * Both directions are indexed by user id: the sorted ids of the user's followers and of the users the user follows,
+ * kept as primitive {@code long[]} blocks. Blocks are never modified once published, updates replace them, so a
+ * reader holding a block is not affected by concurrent follows.
+ * <p>
+ * Built from the table on startup, or restored from the snapshot written on the previous shutdown when
+ * {@code communiverse.follower-graph.snapshot-path} is set and the snapshot still matches the table's rows.
+ * Kept up to date by UserService, follower changes made directly through the repositories are not seen.
+ */
+@Service
+@Slf4j
+public class FollowerGraphService {
+
+    private static final int SNAPSHOT_MAGIC = 0x46475331;  // "FGS1"
+    private static final long[] NO_USERS = new long[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String snapshotPath;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private AdjacencyIndex followers = new AdjacencyIndex();
+    private AdjacencyIndex following = new AdjacencyIndex();
+    private long edgeCount;
+
+    @Autowired
+    public FollowerGraphService(JdbcTemplate jdbcTemplate,
+                                @Value("${communiverse.follower-graph.snapshot-path:}") String snapshotPath) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotPath = snapshotPath;
+    }
+
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        if (!StringUtils.hasText(snapshotPath) || !restoreSnapshot(Path.of(snapshotPath))) {
+            loadFromDb();
+        }
+        log.info("Follower graph of {} users and {} follows loaded in {} ms",
+                followers.userCount(), edgeCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        if (StringUtils.hasText(snapshotPath)) {
+            writeSnapshot(Path.of(snapshotPath));
+        }
+    }
+
+    /**
+     * @return True if {@code followerId} follows {@code userId}.
+     */
+    public boolean isFollowing(long userId, long followerId) {
+        return Arrays.binarySearch(getFollowers(userId), followerId) >= 0;
+    }
+
+    public int getFollowerCount(long userId) {
+        return getFollowers(userId).length;
+    }
+
+    public int getFollowingCount(long userId) {
+        return getFollowing(userId).length;
+    }
+
+    /**
+     * @return The sorted ids of the user's followers. Must not be modified.
+     */
+    public long[] getFollowers(long userId) {
+        lock.readLock().lock();
+        try {
+            return followers.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The sorted ids of the users the user follows. Must not be modified.
+     */
+    public long[] getFollowing(long userId) {
+        lock.readLock().lock();
+        try {
+            return following.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The sorted ids of the users following both users.
+     */
+    public long[] getMutualFollowers(long userId, long otherUserId) {
+        long[] first = getFollowers(userId);
+        long[] second = getFollowers(otherUserId);
+        long[] mutual = new long[Math.min(first.length, second.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                mutual[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(mutual, count);
+    }
+
+    public void follow(long userId, long followerId) {
+        lock.writeLock().lock();
+        try {
+            if (followers.add(userId, followerId)) {
+                following.add(followerId, userId);
+                edgeCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void unfollow(long userId, long followerId) {
+        lock.writeLock().lock();
+        try {
+            if (followers.remove(userId, followerId)) {
+                following.remove(followerId, userId);
+                edgeCount--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the user's followers, e.g. after they were saved along with the user.
+     */
+    public void replaceFollowers(long userId, long @NotNull [] followerIds) {
+        long[] sortedIds = Arrays.stream(followerIds).sorted().distinct().toArray();
+        lock.writeLock().lock();
+        try {
+            for (long followerId : followers.get(userId)) {
+                if (Arrays.binarySearch(sortedIds, followerId) < 0) {
+                    following.remove(followerId, userId);
+                    edgeCount--;
+                }
+            }
+            for (long followerId : sortedIds) {
+                if (following.add(followerId, userId)) {
+                    edgeCount++;
+                }
+            }
+            followers.put(userId, sortedIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            for (long followerId : followers.get(userId)) {
+                following.remove(followerId, userId);
+                edgeCount--;
+            }
+            for (long followedId : following.get(userId)) {
+                followers.remove(followedId, userId);
+                edgeCount--;
+            }
+            followers.put(userId, NO_USERS);
+            following.put(userId, NO_USERS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadFromDb() {
+        AdjacencyIndex loadedFollowers = new AdjacencyIndex();
+        AdjacencyIndex loadedFollowing = new AdjacencyIndex();
+        // a row of user_followers means followed_id follows follower_id, duplicate rows are dropped by publish()
+        jdbcTemplate.query("SELECT follower_id, followed_id FROM user_followers", resultSet -> {
+            long userId = resultSet.getLong(1);
+            long followerId = resultSet.getLong(2);
+            loadedFollowers.append(userId, followerId);
+            loadedFollowing.append(followerId, userId);
+        });
+        publish(loadedFollowers, loadedFollowing);
+    }
+
+    /**
+     * Replaces the graph by the given follows, {@code followerIds[i]} following {@code userIds[i]}.
+     */
+    @VisibleForTesting
+    void loadEdges(long @NotNull [] userIds, long @NotNull [] followerIds) {
+        AdjacencyIndex loadedFollowers = new AdjacencyIndex();
+        AdjacencyIndex loadedFollowing = new AdjacencyIndex();
+        for (int i = 0; i < userIds.length; i++) {
+            loadedFollowers.append(userIds[i], followerIds[i]);
+            loadedFollowing.append(followerIds[i], userIds[i]);
+        }
+        publish(loadedFollowers, loadedFollowing);
+    }
+
+    private void publish(@NotNull AdjacencyIndex loadedFollowers, @NotNull AdjacencyIndex loadedFollowing) {
+        long loadedEdges = loadedFollowers.seal();
+        loadedFollowing.seal();
+        lock.writeLock().lock();
+        try {
+            followers = loadedFollowers;
+            following = loadedFollowing;
+            edgeCount = loadedEdges;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+        Snapshot layout: magic, number of follows, number of users, then per user its id, number of followers
+        and the sorted follower ids. The following direction is rebuilt from it on restore.
+     */
+    private void writeSnapshot(@NotNull Path path) {
+        lock.readLock().lock();
+        try {
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(edgeCount);
+                out.writeInt(followers.userCount());
+                followers.forEach((userId, followerIds) -> {
+                    out.writeLong(userId);
+                    out.writeInt(followerIds.length);
+                    for (long followerId : followerIds) {
+                        out.writeLong(followerId);
+                    }
+                });
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Follower graph snapshot of {} follows written to {}", edgeCount, path);
+        } catch (IOException e) {
+            log.error("Failed to write the follower graph snapshot to {}", path, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean restoreSnapshot(@NotNull Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                log.warn("Ignoring follower graph snapshot {}, unknown format", path);
+                return false;
+            }
+            long snapshotEdges = in.readLong();
+            Long tableEdges = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_followers", Long.class);
+            if (tableEdges == null || tableEdges != snapshotEdges) {
+                log.warn("Ignoring follower graph snapshot {} of {} follows, the table has {}", path, snapshotEdges, tableEdges);
+                return false;
+            }
+            AdjacencyIndex loadedFollowers = new AdjacencyIndex();
+            AdjacencyIndex loadedFollowing = new AdjacencyIndex();
+            Checksum snapshotChecksum = new Checksum();
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                long userId = in.readLong();
+                int followerCount = in.readInt();
+                for (int j = 0; j < followerCount; j++) {
+                    long followerId = in.readLong();
+                    loadedFollowers.append(userId, followerId);
+                    loadedFollowing.append(followerId, userId);
+                    snapshotChecksum.add(userId, followerId);
+                }
+            }
+            // the same number of follows may still be different follows, e.g. one unfollow and one follow
+            Checksum tableChecksum = tableChecksum();
+            if (!snapshotChecksum.equals(tableChecksum)) {
+                log.warn("Ignoring follower graph snapshot {}, its checksum {} differs from the table's {}",
+                        path, snapshotChecksum, tableChecksum);
+                return false;
+            }
+            publish(loadedFollowers, loadedFollowing);
+            log.info("Follower graph restored from snapshot {}", path);
+            return true;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable follower graph snapshot {}", path, e);
+            return false;
+        }
+    }
+
+    // the same sums as Checksum, each wrapped to 64 bits as the DB returns them as decimals
+    private Checksum tableChecksum() {
+        return jdbcTemplate.queryForObject("SELECT SUM(follower_id), SUM(followed_id), " +
+                "SUM(CAST(follower_id AS DECIMAL(38, 0)) * followed_id) FROM user_followers", (resultSet, rowNum) -> {
+            Checksum checksum = new Checksum();
+            checksum.userIdSum = wrap(resultSet.getBigDecimal(1));
+            checksum.followerIdSum = wrap(resultSet.getBigDecimal(2));
+            checksum.productSum = wrap(resultSet.getBigDecimal(3));
+            return checksum;
+        });
+    }
+
+    private static long wrap(BigDecimal sum) {
+        // the low-order 64 bits, matching the overflowing long sums
+        return sum == null ? 0 : sum.longValue();
+    }
+
+    /**
+     * Order-independent checksum of a set of follows, the sums of the user ids, of the follower ids and of their
+     * products. The product ties each follower to the user followed, so moving a follow changes it.
+     */
+    private static final class Checksum {
+
+        private long userIdSum;
+        private long followerIdSum;
+        private long productSum;
+
+        void add(long userId, long followerId) {
+            userIdSum += userId;
+            followerIdSum += followerId;
+            productSum += userId * followerId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Checksum checksum && userIdSum == checksum.userIdSum
+                    && followerIdSum == checksum.followerIdSum && productSum == checksum.productSum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(userIdSum ^ followerIdSum ^ productSum);
+        }
+
+        @Override
+        public String toString() {
+            return userIdSum + "/" + followerIdSum + "/" + productSum;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlockConsumer {
+        void accept(long userId, long[] userIds) throws IOException;
+    }
+
+    /**
+     * Open-addressing hash map of user id to the sorted block of related user ids, without boxing.
+     * Not thread-safe, guarded by the service's lock. Keys are never removed, a removed user keeps an empty block.
+     */
+    private static final class AdjacencyIndex {
+
+        private long[] keys = new long[16];
+        private long[][] blocks = new long[16][];
+        // used block lengths while appending, null once sealed
+        private int[] lengths = new int[16];
+        private int size;
+
+        long[] get(long key) {
+            int slot = findSlot(key);
+            return blocks[slot] == null ? NO_USERS : blocks[slot];
+        }
+
+        void put(long key, long @NotNull [] block) {
+            int slot = slotFor(key);
+            blocks[slot] = block;
+        }
+
+        boolean add(long key, long value) {
+            long[] block = get(key);
+            int index = Arrays.binarySearch(block, value);
+            if (index >= 0) {
+                return false;
+            }
+            int insertAt = -index - 1;
+            long[] updated = new long[block.length + 1];
+            System.arraycopy(block, 0, updated, 0, insertAt);
+            updated[insertAt] = value;
+            System.arraycopy(block, insertAt, updated, insertAt + 1, block.length - insertAt);
+            put(key, updated);
+            return true;
+        }
+
+        boolean remove(long key, long value) {
+            long[] block = get(key);
+            int index = Arrays.binarySearch(block, value);
+            if (index < 0) {
+                return false;
+            }
+            long[] updated = new long[block.length - 1];
+            System.arraycopy(block, 0, updated, 0, index);
+            System.arraycopy(block, index + 1, updated, index, block.length - index - 1);
+            put(key, updated);
+            return true;
+        }
+
+        /**
+         * Bulk loading, values are appended unsorted until {@link #seal()}.
+         */
+        void append(long key, long value) {
+            int slot = slotFor(key);
+            long[] block = blocks[slot];
+            int length = lengths[slot];
+            if (block == null || length == block.length) {
+                block = Arrays.copyOf(block == null ? NO_USERS : block, Math.max(4, length * 2));
+                blocks[slot] = block;
+            }
+            block[length] = value;
+            lengths[slot] = length + 1;
+        }
+
+        /**
+         * Sorts the appended values, dropping the duplicates.
+         *
+         * @return The number of values kept.
+         */
+        long seal() {
+            long values = 0;
+            for (int slot = 0; slot < blocks.length; slot++) {
+                if (blocks[slot] != null) {
+                    long[] block = Arrays.copyOf(blocks[slot], lengths[slot]);
+                    Arrays.sort(block);
+                    int length = 0;
+                    for (int i = 0; i < block.length; i++) {
+                        if (i == 0 || block[i] != block[i - 1]) {
+                            block[length++] = block[i];
+                        }
+                    }
+                    blocks[slot] = length == block.length ? block : Arrays.copyOf(block, length);
+                    values += length;
+                }
+            }
+            lengths = null;
+            return values;
+        }
+
+        int userCount() {
+            return size;
+        }
+
+        void forEach(@NotNull BlockConsumer consumer) throws IOException {
+            for (int slot = 0; slot < blocks.length; slot++) {
+                if (blocks[slot] != null) {
+                    consumer.accept(keys[slot], blocks[slot]);
+                }
+            }
+        }
+
+        // the slot holding the key, or the empty slot where it would be inserted
+        private int findSlot(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (blocks[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int slotFor(long key) {
+            int slot = findSlot(key);
+            if (blocks[slot] == null) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize();
+                    slot = findSlot(key);
+                }
+                keys[slot] = key;
+                blocks[slot] = NO_USERS;
+                size++;
+            }
+            return slot;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[][] oldBlocks = blocks;
+            int[] oldLengths = lengths;
+            keys = new long[oldKeys.length * 2];
+            blocks = new long[oldKeys.length * 2][];
+            lengths = oldLengths == null ? null : new int[oldKeys.length * 2];
+            for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+                if (oldBlocks[oldSlot] != null) {
+                    int slot = findSlot(oldKeys[oldSlot]);
+                    keys[slot] = oldKeys[oldSlot];
+                    blocks[slot] = oldBlocks[oldSlot];
+                    if (lengths != null) {
+                        lengths[slot] = oldLengths[oldSlot];
+                    }
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.services.EngagementCounterService.Counter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind ingestion of like/unlike commands, enabled by {@code communiverse.likes.write-behind.enabled}.
+ * <p>
+ * Commands are buffered in a bounded in-memory queue keyed by (target, user), so only the latest command per key is
+ * kept: a like followed by an unlike of the same target collapses into a single delete. The queue is flushed with
+ * JDBC batch inserts/deletes on a schedule, or as soon as it reaches {@code batchSize} commands. When the queue is
+ * full, submitters wait up to {@code offerTimeoutMs} for a flush to make room and fail afterward.
+ * <p>
+ * Users and targets are not loaded on submit, so likes of missing rows are only detected, logged and dropped
+ * when flushed.
+ */
+@Service
+@Slf4j
+public class LikeIngestionService {
+
+    public enum Target {
+        POST("like_post", "post_id", Counter.POST_LIKES),
+        COMMENT("like_comment", "comment_id", Counter.COMMENT_LIKES);
+
+        private final String table;
+        private final String targetColumn;
+        private final String insertSql;
+        private final String deleteSql;
+        private final Counter counter;
+
+        Target(String table, String targetColumn, Counter counter) {
+            this.table = table;
+            this.targetColumn = targetColumn;
+            // skips the insert if the user already likes the target
+            this.insertSql = "INSERT INTO " + table + " (" + targetColumn + ", user_id, created, modified)"
+                    + " SELECT ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS"
+                    + " (SELECT 1 FROM " + table + " WHERE " + targetColumn + " = ? AND user_id = ?)";
+            this.deleteSql = "DELETE FROM " + table + " WHERE " + targetColumn + " = ? AND user_id = ?";
+            this.counter = counter;
+        }
+    }
+
+    private record LikeKey(Target target, Long targetId, Long userId) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EngagementCounterService counterService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+
+    // latest command per key, true for like and false for unlike, in submission order
+    private final Map<LikeKey, Boolean> pendingCommands = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "like-ingestion-flush"));
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean shutdown;
+
+    @Autowired
+    public LikeIngestionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                EngagementCounterService counterService, PersistenceScheduler persistenceScheduler,
+                                @Value("${communiverse.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${communiverse.likes.write-behind.capacity:10000}") int capacity,
+                                @Value("${communiverse.likes.write-behind.batch-size:500}") int batchSize,
+                                @Value("${communiverse.likes.write-behind.offer-timeout-ms:1000}") long offerTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.counterService = counterService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<Void> submitLike(@NotNull Target target, Long targetId, Long userId) {
+        return submit(new LikeKey(target, targetId, userId), true);
+    }
+
+    public Mono<Void> submitUnlike(@NotNull Target target, Long targetId, Long userId) {
+        return submit(new LikeKey(target, targetId, userId), false);
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pendingCommands.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending commands to the DB, in chunks of at most {@code batchSize}.
+     */
+    @Scheduled(fixedDelayString = "${communiverse.likes.write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        flushRequested.set(false);
+        List<Map.Entry<LikeKey, Boolean>> commands;
+        while (!(commands = takeBatch()).isEmpty()) {
+            writeBatch(commands);
+        }
+    }
+
+    @PreDestroy
+    public void drainOnShutdown() throws InterruptedException {
+        shutdown = true;
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(offerTimeoutMs, TimeUnit.MILLISECONDS);
+        flush();
+        log.info("Like ingestion queue drained");
+    }
+
+    // may wait for room in a full queue, so runs on the persistence scheduler rather than the subscribing thread
+    private Mono<Void> submit(@NotNull LikeKey key, boolean like) {
+        return persistenceScheduler.run(() -> {
+            if (shutdown) {
+                throw new RuntimeException("Like ingestion is shut down");
+            }
+            int pending = enqueue(key, like);
+            if (pending >= batchSize && flushRequested.compareAndSet(false, true)) {
+                flushExecutor.execute(this::flush);
+            }
+        });
+    }
+
+    private int enqueue(@NotNull LikeKey key, boolean like) {
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+            while (pendingCommands.size() >= capacity && !pendingCommands.containsKey(key)) {
+                if (flushRequested.compareAndSet(false, true)) {
+                    flushExecutor.execute(this::flush);
+                }
+                if (remainingNanos <= 0) {
+                    throw new RuntimeException("Like queue is full");
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+            // re-inserted so the key moves to the tail, after the commands submitted before it
+            pendingCommands.remove(key);
+            pendingCommands.put(key, like);
+            return pendingCommands.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the like queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private @NotNull List<Map.Entry<LikeKey, Boolean>> takeBatch() {
+        lock.lock();
+        try {
+            List<Map.Entry<LikeKey, Boolean>> batch = new ArrayList<>(Math.min(batchSize, pendingCommands.size()));
+            Iterator<Map.Entry<LikeKey, Boolean>> iterator = pendingCommands.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<LikeKey, Boolean> command = iterator.next();
+                batch.add(Map.entry(command.getKey(), command.getValue()));
+                iterator.remove();
+            }
+            if (!batch.isEmpty()) {
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeBatch(@NotNull List<Map.Entry<LikeKey, Boolean>> commands) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.UTC));
+        for (Target target : Target.values()) {
+            List<Object[]> inserts = new ArrayList<>();
+            List<Object[]> deletes = new ArrayList<>();
+            for (Map.Entry<LikeKey, Boolean> command : commands) {
+                LikeKey key = command.getKey();
+                if (key.target() != target) {
+                    continue;
+                }
+                if (command.getValue()) {
+                    inserts.add(new Object[]{key.targetId(), key.userId(), now, now, key.targetId(), key.userId()});
+                } else {
+                    deletes.add(new Object[]{key.targetId(), key.userId()});
+                }
+            }
+            // a key appears once per batch, so the order of inserts and deletes doesn't matter
+            writeStatements(target, target.insertSql, inserts, 1);
+            writeStatements(target, target.deleteSql, deletes, -1);
+        }
+    }
+
+    /**
+     * Writes the batch in a single transaction, so a batch failing part-way leaves no rows behind and can be retried
+     * one by one. The counters are adjusted by the rows actually written. A driver rewriting the batch may report
+     * {@link Statement#SUCCESS_NO_INFO} instead of row counts, the rows liked before the batch are read first to
+     * resolve those. The flush is the only writer of the like tables when write-behind is enabled.
+     */
+    private void writeStatements(@NotNull Target target, @NotNull String sql, @NotNull List<Object[]> batchArgs, int delta) {
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+        int[] rowCounts;
+        try {
+            rowCounts = transactionTemplate.execute(status -> {
+                Set<List<Long>> likedBefore = findLiked(target, batchArgs);
+                int[] counts = jdbcTemplate.batchUpdate(sql, batchArgs);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                        boolean liked = likedBefore.contains(List.of((Long) batchArgs.get(i)[0], (Long) batchArgs.get(i)[1]));
+                        counts[i] = liked == (delta < 0) ? 1 : 0;
+                    }
+                }
+                return counts;
+            });
+        } catch (DataAccessException e) {
+            // e.g. a missing user or target fails the whole batch, retry one by one to drop just the failing commands
+            log.warn("Batch of {} {} like commands failed, retrying one by one", batchArgs.size(), target, e);
+            rowCounts = new int[batchArgs.size()];
+            for (int i = 0; i < batchArgs.size(); i++) {
+                try {
+                    rowCounts[i] = jdbcTemplate.update(sql, batchArgs.get(i));
+                } catch (DataAccessException ex) {
+                    log.warn("Dropping {} like command {}: {}", target, Arrays.toString(batchArgs.get(i)), ex.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < Objects.requireNonNull(rowCounts).length; i++) {
+            if (rowCounts[i] > 0) {
+                counterService.add(target.counter, (Long) batchArgs.get(i)[0], delta);
+            }
+        }
+    }
+
+    // the (target id, user id) pairs of the commands already liked, a superset of the pairs is read in a single query
+    private @NotNull Set<List<Long>> findLiked(@NotNull Target target, @NotNull List<Object[]> batchArgs) {
+        Set<Long> targetIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        batchArgs.forEach(args -> {
+            targetIds.add((Long) args[0]);
+            userIds.add((Long) args[1]);
+        });
+        String sql = "SELECT " + target.targetColumn + ", user_id FROM " + target.table +
+                " WHERE " + target.targetColumn + " IN (" + String.join(",", Collections.nCopies(targetIds.size(), "?")) + ")" +
+                " AND user_id IN (" + String.join(",", Collections.nCopies(userIds.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(targetIds);
+        args.addAll(userIds);
+        return new HashSet<>(jdbcTemplate.query(sql, (row, rowNum) -> List.of(row.getLong(1), row.getLong(2)), args.toArray()));
+    }
+}
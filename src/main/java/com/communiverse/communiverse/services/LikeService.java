@@ -1,25 +1,25 @@
 package com.communiverse.communiverse.services;
 
-import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.LikeDto;
 import com.communiverse.communiverse.model.like.Like;
-import com.communiverse.communiverse.model.Post;
-import com.communiverse.communiverse.model.User;
 import com.communiverse.communiverse.model.like.LikeOnComment;
 import com.communiverse.communiverse.model.like.LikeOnPost;
 import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.repo.reactive.ReactiveLikeRepository;
+import com.communiverse.communiverse.services.EngagementCounterService.Counter;
+import com.communiverse.communiverse.services.LikeIngestionService.Target;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
-import reactor.util.function.Tuples;
 
-import java.util.Objects;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 @Service
 @Slf4j
@@ -27,142 +27,152 @@ public class LikeService {
 
     private final LikeOnCommentRepository likeOnCommentRepository;
     private final LikeOnPostRepository likeOnPostRepository;
-    private final UserService userService;
-    private final PostService postService;
-    private final CommentService commentService;
+    private final ReactiveLikeRepository reactiveLikeRepository;
+    private final EngagementCounterService counterService;
+    private final LikeIngestionService likeIngestionService;
+    private final PersistenceScheduler persistenceScheduler;
 
     @Autowired
     public LikeService(LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
-            UserService userService, PostService postService, CommentService commentService) {
+            ReactiveLikeRepository reactiveLikeRepository, EngagementCounterService counterService, LikeIngestionService likeIngestionService,
+            PersistenceScheduler persistenceScheduler) {
         this.likeOnCommentRepository = likeOnCommentRepository;
         this.likeOnPostRepository = likeOnPostRepository;
-        this.userService = userService;
-        this.postService = postService;
-        this.commentService = commentService;
-    }
-
-    public Mono<Like> likePost(Long userId, Long postId) {
-                // find the Post and User by their IDs
-                // and combine (zip) the emissions of these two Monos into a single tuple.
-        return Mono.zip(
-                        userService.findUserById(userId),
-                        postService.findPostById(postId)
-                )
-                // Once both Post and User are found, create a Like
-                .flatMap(this::createPostLike);
-    }
-
-    public Mono<Like> likeComment(Long userId, Long commentId) {
-        // find the Comment and User by their IDs
-        // and combine (zip) the emissions of these two Monos into a single tuple.
-        return Mono.zip(
-                        userService.findUserById(userId),
-                        commentService.findCommentById(commentId)
-                )
-                // Once both Comment and User are found, create a Like
-                .flatMap(this::createCommentLike);
-    }
-
-    // todo: need to implement this method in reactive approach
-    //  currently reactive approach doesn't delete like from the DB for unclear reason
-    @Transactional
+        this.reactiveLikeRepository = reactiveLikeRepository;
+        this.counterService = counterService;
+        this.likeIngestionService = likeIngestionService;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    /**
+     * Likes the post. Idempotent - liking an already liked post is a no-op.
+     * Neither the user nor the post is loaded, the like is written with a single insert.
+     */
+    public Mono<Void> likePost(Long userId, Long postId) {
+        if (likeIngestionService.isEnabled()) {
+            // queued and written later
+            return likeIngestionService.submitLike(Target.POST, postId, userId);
+        }
+        return insertLike(reactiveLikeRepository.insertPostLike(postId, userId, LocalDateTime.now(ZoneOffset.UTC)),
+                reactiveLikeRepository.existsPostLike(postId, userId),
+                "User " + userId + " or post " + postId + " not found")
+                .doOnNext(inserted -> {
+                    if (inserted) {
+                        counterService.increment(Counter.POST_LIKES, postId);
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Likes the comment. Idempotent - liking an already liked comment is a no-op.
+     * Neither the user nor the comment is loaded, the like is written with a single insert.
+     */
+    public Mono<Void> likeComment(Long userId, Long commentId) {
+        if (likeIngestionService.isEnabled()) {
+            return likeIngestionService.submitLike(Target.COMMENT, commentId, userId);
+        }
+        return insertLike(reactiveLikeRepository.insertCommentLike(commentId, userId, LocalDateTime.now(ZoneOffset.UTC)),
+                reactiveLikeRepository.existsCommentLike(commentId, userId),
+                "User " + userId + " or comment " + commentId + " not found")
+                .doOnNext(inserted -> {
+                    if (inserted) {
+                        counterService.increment(Counter.COMMENT_LIKES, commentId);
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Removes the like with a single delete. Idempotent - unliking a post that isn't liked is a no-op.
+     */
     public Mono<Void> unlikePost(Long userId, Long postId) {
-        Optional<LikeOnPost> optionalLike = likeOnPostRepository.findByPostIdAndUserId(postId, userId);
-        if (optionalLike.isPresent()) {
-            Mono<User> userMono = userService.findUserById(userId);
-            Mono<Post> postMono = postService.findPostById(postId);
-            deletePostLike(optionalLike.get(), Objects.requireNonNull(userMono.block()), Objects.requireNonNull(postMono.block()));
+        if (likeIngestionService.isEnabled()) {
+            return likeIngestionService.submitUnlike(Target.POST, postId, userId);
         }
-        return Mono.empty();
-    }
-
-    // todo: need to implement this method in reactive approach
-    //  currently reactive approach doesn't delete like from the DB for unclear reason
-    @Transactional
+        return reactiveLikeRepository.deletePostLike(postId, userId)
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        counterService.decrement(Counter.POST_LIKES, postId);
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Removes the like with a single delete. Idempotent - unliking a comment that isn't liked is a no-op.
+     */
     public Mono<Void> unlikeComment(Long userId, Long commentId) {
-        Optional<LikeOnComment> optionalLike = likeOnCommentRepository.findByCommentIdAndUserId(commentId, userId);
-        if (optionalLike.isPresent()) {
-            Mono<User> userMono = userService.findUserById(userId);
-            Mono<Comment> commentMono = commentService.findCommentById(commentId);
-            deleteCommentLike(optionalLike.get(), Objects.requireNonNull(userMono.block()), Objects.requireNonNull(commentMono.block()));
+        if (likeIngestionService.isEnabled()) {
+            return likeIngestionService.submitUnlike(Target.COMMENT, commentId, userId);
         }
-        return Mono.empty();
+        return reactiveLikeRepository.deleteCommentLike(commentId, userId)
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        counterService.decrement(Counter.COMMENT_LIKES, commentId);
+                    }
+                })
+                .then();
     }
 
     public Flux<Like> getUserPostLikes(Long userId) {
-        return Mono.fromCallable(() -> likeOnPostRepository.findPostLikesByUserId(userId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> likeOnPostRepository.findPostLikesByUserId(userId));
     }
 
     public Flux<Like> getPostLikes(Long postId) {
-        return Mono.fromCallable(() -> likeOnPostRepository.findLikesByPostId(postId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> likeOnPostRepository.findLikesByPostId(postId));
     }
 
     public Flux<Like> getCommentLikes(Long commentId) {
-        return Mono.fromCallable(() -> likeOnCommentRepository.findLikesByCommentId(commentId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> likeOnCommentRepository.findLikesByCommentId(commentId));
     }
 
     public Flux<Like> getUserCommentLikes(Long userId) {
-        return Mono.fromCallable(() -> likeOnCommentRepository.findCommentLikesByUserId(userId))
-                .flatMapMany(Flux::fromIterable);
+        return persistenceScheduler.flux(() -> likeOnCommentRepository.findCommentLikesByUserId(userId));
     }
 
-    @VisibleForTesting
-    Mono<LikeOnPost> createPostLike(@NotNull User user, @NotNull Post post) {
-        Tuple2<User, Post> tuple = Tuples.of(user, post);
-        return createPostLike(tuple);
+    public Mono<Long> getPostLikeCount(Long postId) {
+        return counterService.getCount(Counter.POST_LIKES, postId);
     }
 
-    @VisibleForTesting
-    Mono<LikeOnComment> createCommentLike(@NotNull User user, @NotNull Comment comment) {
-        Tuple2<User, Comment> tuple = Tuples.of(user, comment);
-        return createCommentLike(tuple);
+    public Mono<Long> getCommentLikeCount(Long commentId) {
+        return counterService.getCount(Counter.COMMENT_LIKES, commentId);
     }
 
-    @VisibleForTesting
-    Mono<LikeOnPost> createPostLike(@NotNull LikeOnPost like) {
-        return Mono.just(likeOnPostRepository.save(like));
+    public Flux<LikeDto> getUserPostLikeDtos(Long userId) {
+        return persistenceScheduler.flux(() -> likeOnPostRepository.findPostLikeDtosByUserId(userId));
     }
 
-    @VisibleForTesting
-    Mono<LikeOnComment> createCommentLike(@NotNull LikeOnComment like) {
-        return Mono.just(likeOnCommentRepository.save(like));
+    public Flux<LikeDto> getUserCommentLikeDtos(Long userId) {
+        return persistenceScheduler.flux(() -> likeOnCommentRepository.findCommentLikeDtosByUserId(userId));
     }
 
-    private @NotNull Mono<LikeOnPost> createPostLike(@NotNull Tuple2<User, Post> tuple) {
-        User user = tuple.getT1(); // Get User from tuple
-        Post post = tuple.getT2(); // Get Post from tuple
-        LikeOnPost like = new LikeOnPost();    // Create new Like
-        like.setPost(post);        // Set Post in Like
-        like.setUser(user);        // Set User in Like
-        return Mono.just(likeOnPostRepository.save(like)); // Save Like to repository
-    }
-
-    private void deletePostLike(@NotNull LikeOnPost like, @NotNull User user, @NotNull Post post) {
-        post.getLikes().removeIf(l -> Objects.equals(l.getId(), like.getId()));
-        user.getLikeOnPosts().removeIf(l -> Objects.equals(l.getId(), like.getId()));
-        postService.updatePost(post.getId(), post);
-        userService.updateUser(user.getId(), user);
-        likeOnPostRepository.delete(like); // Delete Like in repository
-    }
-
-    private @NotNull Mono<LikeOnComment> createCommentLike(@NotNull Tuple2<User, Comment> tuple) {
-        User user = tuple.getT1(); // Get User from tuple
-        Comment comment = tuple.getT2(); // Get Comment from tuple
-        LikeOnComment like = new LikeOnComment();    // Create new Like
-        like.setComment(comment);        // Set Comment in Like
-        like.setUser(user);        // Set User in Like
-        return Mono.just(likeOnCommentRepository.save(like)); // Save Like to repository
+    @VisibleForTesting
+    Mono<LikeOnPost> createPostLike(@NotNull LikeOnPost like) {
+        return persistenceScheduler.mono(() -> likeOnPostRepository.save(like))
+                .doOnNext(savedLike -> counterService.increment(Counter.POST_LIKES, savedLike.getPost().getId()));
     }
 
-    private void deleteCommentLike(@NotNull LikeOnComment like, @NotNull User user, @NotNull Comment comment) {
-        comment.getLikes().removeIf(l -> Objects.equals(l.getId(), like.getId()));
-        user.getLikeOnComments().removeIf(l -> Objects.equals(l.getId(), like.getId()));
-        commentService.updateComment(comment.getId(), comment);
-        userService.updateUser(user.getId(), user);
-        likeOnCommentRepository.delete(like); // Delete Like in repository
+    @VisibleForTesting
+    Mono<LikeOnComment> createCommentLike(@NotNull LikeOnComment like) {
+        return persistenceScheduler.mono(() -> likeOnCommentRepository.save(like))
+                .doOnNext(savedLike -> counterService.increment(Counter.COMMENT_LIKES, savedLike.getComment().getId()));
+    }
+
+    /**
+     * Runs the insert of a like, which inserts nothing if it already exists. Its violation of the unique (target, user)
+     * index, by a concurrent like of the same user, is treated as already liked too.
+     *
+     * @return Emits true if the like was inserted, false if it already existed.
+     */
+    private @NotNull Mono<Boolean> insertLike(@NotNull Mono<Long> insert, @NotNull Mono<Boolean> exists,
+                                              @NotNull String notFoundMessage) {
+        return insert
+                .map(rowsInserted -> rowsInserted > 0)
+                // a concurrent like of the same user won the race, otherwise it's a missing user or target
+                .onErrorResume(DataIntegrityViolationException.class, e -> exists
+                        .flatMap(alreadyLiked -> alreadyLiked
+                                ? Mono.just(false)
+                                : Mono.error(new RuntimeException(notFoundMessage, e))));
     }
 }
-
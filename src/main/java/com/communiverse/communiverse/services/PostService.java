@@ -1,27 +1,62 @@
 package com.communiverse.communiverse.services;
 
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.*;
+import com.communiverse.communiverse.model.Comment;
 import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.like.LikeOnPost;
+import com.communiverse.communiverse.repo.Aggregates;
+import com.communiverse.communiverse.repo.FetchPlanRepository;
 import com.communiverse.communiverse.repo.PostRepository;
+import com.communiverse.communiverse.repo.reactive.ReactivePostRepository;
+import com.communiverse.communiverse.services.EngagementCounterService.Counter;
+import com.communiverse.communiverse.utils.PagingUtils;
+import com.communiverse.communiverse.utils.ReadThroughCache;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Slf4j
 public class PostService {
 
+    private static final Set<String> EXPANDABLE = Set.of(PostDetailsDto.AUTHOR, PostDetailsDto.COMMENTS, PostDetailsDto.LIKES);
+
     private final PostRepository postRepository;
+    private final ReactivePostRepository reactivePostRepository;
+    private final FetchPlanRepository fetchPlanRepository;
+    private final FeedService feedService;
+    private final EngagementCounterService counterService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final ReadThroughCache<PostDto> postCache;
+    private final ReadThroughCache<CommentDto> commentCache;
 
     @Autowired
-    public PostService(PostRepository postRepository) {
+    public PostService(PostRepository postRepository, ReactivePostRepository reactivePostRepository,
+                       FetchPlanRepository fetchPlanRepository,
+                       FeedService feedService, EngagementCounterService counterService,
+                       PersistenceScheduler persistenceScheduler,
+                       ReadThroughCache<PostDto> postCache, ReadThroughCache<CommentDto> commentCache) {
         this.postRepository = postRepository;
+        this.reactivePostRepository = reactivePostRepository;
+        this.fetchPlanRepository = fetchPlanRepository;
+        this.feedService = feedService;
+        this.counterService = counterService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.postCache = postCache;
+        this.commentCache = commentCache;
     }
 
     public Mono<Post> findPostById(Long postId) {
@@ -32,48 +67,121 @@ public class PostService {
                         .switchIfEmpty(Mono.error(new RuntimeException("Post not found " + postId))));  // Throw error if Post not found
     }
 
+    public Mono<PostDto> getPostDtoById(Long postId) {
+        return reactivePostRepository.findDtoById(postId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Post not found " + postId)));
+    }
+
+    /**
+     * Returns a post with the requested associations, fetching only those.
+     *
+     * @param expand Associations to include: author, comments and/or likes. None for the flat post, read through the
+     *               hot-post cache.
+     */
+    public Mono<PostDetailsDto> getPostDetails(Long postId, Collection<String> expand) {
+        if (CollectionUtils.isEmpty(expand)) {
+            return postCache.get(postId)
+                    .switchIfEmpty(Mono.error(new RuntimeException("Post not found " + postId)))
+                    .map(post -> PostDetailsDto.builder().post(post).build());
+        }
+        return persistenceScheduler.transactional(() -> {
+            List<String> graphNames = FetchPlanRepository.graphNames(Post.class, expand, EXPANDABLE);
+            return fetchPlanRepository.findById(Post.class, postId, graphNames)
+                    .map(post -> toPostDetails(post, expand))
+                    .orElseThrow(() -> new RuntimeException("Post not found " + postId));
+        });
+    }
+
     public Flux<Post> getPostsByUserId(Long userId) {
-        return Flux.fromIterable(postRepository.findByUserId(userId));
+        return persistenceScheduler.flux(() -> postRepository.findByUserId(userId));
     }
 
     public Flux<Post> getAllPosts() {
-        return Flux.fromIterable(postRepository.findAll());
+        return persistenceScheduler.flux(postRepository::findAll);
+    }
+
+    /**
+     * Returns a page of posts, newest first.
+     *
+     * @param after Cursor of the last post of the previous page, or null for the first page.
+     * @param limit Max number of posts in the page.
+     */
+    public Flux<PostDto> getPostsPage(PagingUtils.Cursor after, int limit) {
+        PageRequest page = PagingUtils.firstPageOf(limit);
+        return after == null
+                ? reactivePostRepository.findDtoFirstPage(page)
+                : reactivePostRepository.findDtoPageAfter(after.created(), after.id(), page);
+    }
+
+    /**
+     * Streams all the posts in id order, read in chunks as the subscriber requests them.
+     */
+    public Flux<PostDto> streamAllPosts() {
+        return reactivePostRepository.streamDtos();
+    }
+
+    public Mono<Long> getCommentCount(Long postId) {
+        return counterService.getCount(Counter.POST_COMMENTS, postId);
     }
 
     public Mono<Post> createPost(Post post) {
-        // Save the post and return it wrapped in a Mono
-        return Mono.just(postRepository.save(post));
+        // Save the post, push it into the followers' timelines and return it wrapped in a Mono
+        return persistenceScheduler.mono(() -> {
+            Post savedPost = postRepository.save(post);
+            feedService.fanOutPost(savedPost);
+            return savedPost;
+        });
     }
 
-    @Transactional
     public Mono<Post> updatePost(Long id, Post post) {
-        // Create a Mono that asynchronously fetches the Optional<Post> from the repository
-        Mono<Optional<Post>> optionalPostMono = Mono.fromCallable(() -> postRepository.findById(id));
-
-        // Process the optional post inside the flatMap
-        return optionalPostMono.flatMap(optionalPost -> {
-            if (optionalPost.isPresent()) {
-                // If the Optional<Post> contains a post, update it and save
-                Post existingPost = optionalPost.get();
-                clonePost(post, existingPost);
-                return Mono.just(postRepository.save(existingPost));
-            } else {
-                // If the Optional<Post> is empty, log a warning and throw an exception
-                throw new RuntimeException("No such post with id " + id);
-            }
-        });
+        return persistenceScheduler.transactional(() -> {
+            // If the post exists, update it and save, otherwise throw an exception
+            Post existingPost = postRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("No such post with id " + id));
+            clonePost(post, existingPost);
+            return Aggregates.initialize(postRepository.save(existingPost));
+        }).doOnNext(updatedPost -> postCache.invalidate(id));
     }
 
     public Mono<Void> deletePost(Long id) {
-        /*
-            use Mono.fromRunnable to create a Mono that completes once the deleteById operation is executed.
-            This way, we ensure that the deletePost method returns a Mono<Void>, as expected
-         */
-        return Mono.fromRunnable(() -> postRepository.deleteById(id));
+        // the comments are deleted along with the post, their ids are read from the loaded post to drop them from the cache
+        return persistenceScheduler.transactional(() -> postRepository.findById(id)
+                        .map(post -> {
+                            List<Long> commentIds = post.getComments().stream().map(Comment::getId).toList();
+                            postRepository.delete(post);
+                            return commentIds;
+                        })
+                        .orElse(List.of()))
+                .doOnNext(commentIds -> {
+                    postCache.invalidate(id);
+                    commentIds.forEach(commentCache::invalidate);
+                })
+                .then();
     }
 
     private @NotNull Mono<Optional<Post>> getOptionalPostMonoById(Long postId) {
-        return Mono.fromCallable(() -> postRepository.findById(postId));
+        return persistenceScheduler.transactional(() -> postRepository.findById(postId).map(Aggregates::initialize));
+    }
+
+    // reads only the fetched associations, in the loading transaction
+    private static @NotNull PostDetailsDto toPostDetails(@NotNull Post post, @NotNull Collection<String> expand) {
+        PostDetailsDto details = PostDetailsDto.builder().post(PostDto.of(post)).build();
+        if (expand.contains(PostDetailsDto.AUTHOR)) {
+            details.setAuthor(UserDto.of(post.getUser()));
+        }
+        if (expand.contains(PostDetailsDto.COMMENTS)) {
+            details.setComments(post.getComments().stream()
+                    .sorted(Comparator.comparing(Comment::getId))
+                    .map(CommentDto::of)
+                    .toList());
+        }
+        if (expand.contains(PostDetailsDto.LIKES)) {
+            details.setLikes(post.getLikes().stream()
+                    .sorted(Comparator.comparing(LikeOnPost::getId))
+                    .map(LikeDto::of)
+                    .toList());
+        }
+        return details;
     }
 
     private void clonePost(Post source, Post target) {
@@ -0,0 +1,279 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.RecommendationDto;
+import com.communiverse.communiverse.dto.UserDto;
+import com.communiverse.communiverse.repo.UserRepository;
+import com.communiverse.communiverse.utils.LongIntHashMap;
+import com.communiverse.communiverse.utils.PagingUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * "Who to follow" recommendations: users followed by the users the user follows (friends of friends),
+ * ranked by the number of such mutual connections. Users already followed are excluded.
+ * <p>
+ * Counted over the in-memory follower graph by a fork-join computation splitting the followed users,
+ * stopped when {@code timeBudgetMs} is exceeded - the ranking is then computed from the users counted so far
+ * and not cached. Complete rankings are cached per user for {@code cacheTtlMs}, and dropped when the user
+ * follows or unfollows somebody.
+ */
+@Service
+@Slf4j
+public class RecommendationService {
+
+    // followed users counted by a single task without splitting
+    private static final int SPLIT_THRESHOLD = 32;
+
+    private final FollowerGraphService followerGraphService;
+    private final UserRepository userRepository;
+    private final PersistenceScheduler persistenceScheduler;
+    private final int maxResults;
+    private final long cacheTtlMs;
+    private final int cacheMaxUsers;
+    private final long timeBudgetNanos;
+
+    private final ForkJoinPool pool;
+    private final Map<Long, Ranking> rankings = new ConcurrentHashMap<>();
+
+    /**
+     * Recommended user ids and their mutual connection counts, best first.
+     */
+    record Ranking(long[] userIds, int[] mutualConnections, long computedAtMs, boolean complete) {
+    }
+
+    @Autowired
+    public RecommendationService(FollowerGraphService followerGraphService, UserRepository userRepository,
+                                 PersistenceScheduler persistenceScheduler,
+                                 @Value("${communiverse.recommendations.max-results:100}") int maxResults,
+                                 @Value("${communiverse.recommendations.cache-ttl-ms:300000}") long cacheTtlMs,
+                                 @Value("${communiverse.recommendations.cache-max-users:10000}") int cacheMaxUsers,
+                                 @Value("${communiverse.recommendations.time-budget-ms:200}") long timeBudgetMs,
+                                 @Value("${communiverse.recommendations.parallelism:0}") int parallelism) {
+        this.followerGraphService = followerGraphService;
+        this.userRepository = userRepository;
+        this.persistenceScheduler = persistenceScheduler;
+        this.maxResults = maxResults;
+        this.cacheTtlMs = cacheTtlMs;
+        this.cacheMaxUsers = cacheMaxUsers;
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        // 0 for one thread per core
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Returns the users recommended to the user to follow, best first.
+     *
+     * @param limit Max number of recommendations.
+     */
+    public Flux<RecommendationDto> getRecommendations(Long userId, int limit) {
+        int count = Math.min(PagingUtils.firstPageOf(limit).getPageSize(), maxResults);
+        return Mono.fromFuture(() -> CompletableFuture.supplyAsync(() -> getRanking(userId), pool))
+                .flatMapMany(ranking -> {
+                    int resultCount = Math.min(count, ranking.userIds().length);
+                    if (resultCount == 0) {
+                        return Flux.empty();
+                    }
+                    List<Long> userIds = Arrays.stream(ranking.userIds(), 0, resultCount).boxed().toList();
+                    return persistenceScheduler.mono(() -> userRepository.findDtosByIdIn(userIds))
+                            .flatMapMany(users -> {
+                                Map<Long, UserDto> usersById = users.stream()
+                                        .collect(Collectors.toMap(UserDto::getId, Function.identity()));
+                                List<RecommendationDto> recommendations = new ArrayList<>(resultCount);
+                                for (int i = 0; i < resultCount; i++) {
+                                    // users deleted since the graph was loaded are skipped
+                                    UserDto user = usersById.get(ranking.userIds()[i]);
+                                    if (user != null) {
+                                        recommendations.add(new RecommendationDto(user, ranking.mutualConnections()[i]));
+                                    }
+                                }
+                                return Flux.fromIterable(recommendations);
+                            });
+                });
+    }
+
+    /**
+     * Drops the cached recommendations of the user, e.g. when the set of followed users has changed.
+     */
+    public void invalidate(Long userId) {
+        rankings.remove(userId);
+    }
+
+    private @NotNull Ranking getRanking(long userId) {
+        Ranking cached = rankings.get(userId);
+        if (cached != null && System.currentTimeMillis() - cached.computedAtMs() < cacheTtlMs) {
+            return cached;
+        }
+        Ranking ranking = rank(userId);
+        if (ranking.complete()) {
+            if (rankings.size() >= cacheMaxUsers) {
+                // not LRU, just keeps the cache bounded
+                Iterator<Long> iterator = rankings.keySet().iterator();
+                if (iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+            rankings.put(userId, ranking);
+        } else {
+            log.warn("Recommendations of user {} exceeded the time budget, ranked partially", userId);
+        }
+        return ranking;
+    }
+
+    @VisibleForTesting
+    @NotNull Ranking rank(long userId) {
+        long[] followedIds = followerGraphService.getFollowing(userId);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CountTask countTask = new CountTask(followedIds, 0, followedIds.length, System.nanoTime() + timeBudgetNanos, timedOut);
+        LongIntHashMap counts = pool.invoke(countTask);
+        return topRanked(userId, followedIds, counts, System.currentTimeMillis(), !timedOut.get());
+    }
+
+    // the maxResults users having the most mutual connections, ties broken by the lower id
+    private @NotNull Ranking topRanked(long userId, long[] followedIds, @NotNull LongIntHashMap counts,
+                                       long computedAtMs, boolean complete) {
+        // min-heap on (count, -id), its root is the worst of the best maxResults
+        long[] heapIds = new long[maxResults];
+        int[] heapCounts = new int[maxResults];
+        int[] heapSize = new int[1];
+        counts.forEach((candidateId, count) -> {
+            if (candidateId == userId || Arrays.binarySearch(followedIds, candidateId) >= 0) {
+                return;
+            }
+            if (heapSize[0] < maxResults) {
+                heapIds[heapSize[0]] = candidateId;
+                heapCounts[heapSize[0]] = count;
+                siftUp(heapIds, heapCounts, heapSize[0]++);
+            } else if (isBetter(count, candidateId, heapCounts[0], heapIds[0])) {
+                heapIds[0] = candidateId;
+                heapCounts[0] = count;
+                siftDown(heapIds, heapCounts, heapSize[0]);
+            }
+        });
+        int size = heapSize[0];
+        long[] userIds = new long[size];
+        int[] mutualConnections = new int[size];
+        // pops the worst first
+        for (int i = size - 1; i >= 0; i--) {
+            userIds[i] = heapIds[0];
+            mutualConnections[i] = heapCounts[0];
+            heapIds[0] = heapIds[i];
+            heapCounts[0] = heapCounts[i];
+            siftDown(heapIds, heapCounts, i);
+        }
+        return new Ranking(userIds, mutualConnections, computedAtMs, complete);
+    }
+
+    private static boolean isBetter(int count, long userId, int otherCount, long otherUserId) {
+        return count > otherCount || (count == otherCount && userId < otherUserId);
+    }
+
+    private static void siftUp(long[] ids, int[] counts, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBetter(counts[parent], ids[parent], counts[index], ids[index])) {
+                return;
+            }
+            swap(ids, counts, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] ids, int[] counts, int size) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (isBetter(counts[worst], ids[worst], counts[child], ids[child])) {
+                    worst = child;
+                }
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(ids, counts, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(long[] ids, int[] counts, int i, int j) {
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        int count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+    }
+
+    /**
+     * Counts the users followed by a range of the followed users, splitting the range until it's small enough.
+     */
+    private final class CountTask extends RecursiveTask<LongIntHashMap> {
+
+        private final long[] followedIds;
+        private final int from;
+        private final int to;
+        private final long deadlineNanos;
+        private final AtomicBoolean timedOut;
+
+        private CountTask(long[] followedIds, int from, int to, long deadlineNanos, AtomicBoolean timedOut) {
+            this.followedIds = followedIds;
+            this.from = from;
+            this.to = to;
+            this.deadlineNanos = deadlineNanos;
+            this.timedOut = timedOut;
+        }
+
+        @Override
+        protected LongIntHashMap compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                CountTask left = new CountTask(followedIds, from, middle, deadlineNanos, timedOut);
+                left.fork();
+                LongIntHashMap rightCounts = new CountTask(followedIds, middle, to, deadlineNanos, timedOut).compute();
+                LongIntHashMap leftCounts = left.join();
+                // merges the smaller map into the larger one
+                if (leftCounts.size() < rightCounts.size()) {
+                    rightCounts.addAll(leftCounts);
+                    return rightCounts;
+                }
+                leftCounts.addAll(rightCounts);
+                return leftCounts;
+            }
+            LongIntHashMap counts = new LongIntHashMap(SPLIT_THRESHOLD * 16);
+            for (int i = from; i < to; i++) {
+                if (timedOut.get() || System.nanoTime() > deadlineNanos) {
+                    timedOut.set(true);
+                    break;
+                }
+                for (long candidateId : followerGraphService.getFollowing(followedIds[i])) {
+                    counts.add(candidateId, 1);
+                }
+            }
+            return counts;
+        }
+    }
+}
@@ -1,32 +1,86 @@
 package com.communiverse.communiverse.services;
 
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.dto.UserDto;
 import com.communiverse.communiverse.model.User;
 import com.communiverse.communiverse.repo.UserRepository;
+import com.communiverse.communiverse.repo.reactive.ReactiveUserRepository;
+import com.communiverse.communiverse.services.EngagementCounterService.Counter;
+import com.communiverse.communiverse.utils.PagingUtils;
+import com.communiverse.communiverse.utils.ReadThroughCache;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.sql.Statement;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Slf4j
 public class UserService {
 
+    // followerId follows userId unless it already does or userId doesn't exist
+    private static final String FOLLOW_IF_EXISTS_SQL = "INSERT INTO user_followers (follower_id, followed_id) " +
+            "SELECT u.id, ? FROM user u WHERE u.id = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM user_followers f WHERE f.follower_id = u.id AND f.followed_id = ?)";
+
     private final UserRepository userRepository;
+    private final ReactiveUserRepository reactiveUserRepository;
+    private final FeedService feedService;
+    private final FollowerGraphService followerGraphService;
+    private final RecommendationService recommendationService;
+    private final EngagementCounterService counterService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadThroughCache<PostDto> postCache;
+    private final ReadThroughCache<CommentDto> commentCache;
+    private final int followBatchSize;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, ReactiveUserRepository reactiveUserRepository,
+                       FeedService feedService, FollowerGraphService followerGraphService,
+                       RecommendationService recommendationService, EngagementCounterService counterService,
+                       PersistenceScheduler persistenceScheduler, JdbcTemplate jdbcTemplate,
+                       ReadThroughCache<PostDto> postCache, ReadThroughCache<CommentDto> commentCache,
+                       @Value("${communiverse.follows.batch-size:500}") int followBatchSize) {
         this.userRepository = userRepository;
+        this.reactiveUserRepository = reactiveUserRepository;
+        this.feedService = feedService;
+        this.followerGraphService = followerGraphService;
+        this.recommendationService = recommendationService;
+        this.counterService = counterService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.jdbcTemplate = jdbcTemplate;
+        this.postCache = postCache;
+        this.commentCache = commentCache;
+        this.followBatchSize = followBatchSize;
     }
 
     public Mono<User> getUserById(Long id) {
-         return Mono.justOrEmpty(userRepository.findById(id));
+         return persistenceScheduler.mono(() -> userRepository.findById(id))
+                 .flatMap(Mono::justOrEmpty);
+    }
+
+    public Mono<UserDto> getUserDtoById(Long id) {
+        return reactiveUserRepository.findDtoById(id);
     }
 
     Mono<User> findUserById(Long userId) {
@@ -39,71 +93,277 @@ public class UserService {
     }
 
     public @NotNull Mono<Optional<User>> getOptionalUserMonoById(Long userId) {
-        return Mono.fromCallable(() -> userRepository.findByIdWithAllRelatedData(userId));
+        return persistenceScheduler.mono(() -> userRepository.findByIdWithAllRelatedData(userId));
     }
 
     public Flux<User> getAllUsers() {
-        return Flux.fromIterable(userRepository.findAll());
+        return persistenceScheduler.flux(userRepository::findAll);
+    }
+
+    /**
+     * Returns a page of users ordered by id.
+     *
+     * @param after Id of the last user of the previous page, or null for the first page.
+     * @param limit Max number of users in the page.
+     */
+    public Flux<UserDto> getUsersPage(Long after, int limit) {
+        return reactiveUserRepository.findDtoPageAfter(after == null ? 0L : after, PagingUtils.firstPageOf(limit));
+    }
+
+    /**
+     * Streams all the users in id order, read in chunks as the subscriber requests them.
+     */
+    public Flux<UserDto> streamAllUsers() {
+        return reactiveUserRepository.streamDtos();
     }
 
     public Mono<User> createUser(User user) {
-        return Mono.just(userRepository.save(user));
+        return persistenceScheduler.mono(() -> userRepository.save(user))
+                .doOnNext(createdUser -> indexFollowers(createdUser, Set.of()));
     }
 
-    @Transactional(readOnly = true)
     public Mono<User> getUserEagerlyById(Long id) {
         return getOptionalUserMonoById(id)
                 .flatMap(optionalUser -> optionalUser.map(Mono::just).orElse(Mono.empty()));
     }
 
-    @Transactional
     public Mono<User> updateUser(Long id, User updatedUser) {
-        // Fetch the user eagerly along with nested entities
-        User updatableUser = userRepository.findByIdWithAllRelatedData(id)
-                .orElseThrow(() -> new RuntimeException("No such user with id " + id));
+        return persistenceScheduler.transactional(() -> {
+            // Fetch the user eagerly along with nested entities
+            User updatableUser = userRepository.findByIdWithAllRelatedData(id)
+                    .orElseThrow(() -> new RuntimeException("No such user with id " + id));
+
+            Set<Long> followerIdsBefore = followerIds(updatableUser);
 
-        // Merge the changes from updatedUser into updatableUser
-        alterUserData(updatedUser, updatableUser);
+            // Merge the changes from updatedUser into updatableUser
+            alterUserData(updatedUser, updatableUser);
 
-        // Save the updated user
-        return Mono.just(userRepository.save(updatableUser));
+            // Save the updated user
+            return new SavedUser(userRepository.save(updatableUser), followerIdsBefore);
+        }).doOnNext(savedUser -> indexFollowers(savedUser.user(), savedUser.followerIdsBefore()))
+                .map(SavedUser::user);
     }
 
     public Mono<Void> deleteUser(Long id) {
-        return Mono.fromRunnable(() -> userRepository.deleteById(id));
+        return persistenceScheduler.transactional(() -> {
+                    Follows follows = new Follows(userRepository.findFollowerIds(id), userRepository.findFollowedIds(id));
+                    userRepository.deleteFollows(id);
+                    userRepository.deleteById(id);
+                    return follows;
+                })
+                .doOnNext(follows -> {
+                    followerGraphService.removeUser(id);
+                    // the deleted user's posts drop out of its followers' timelines
+                    for (Long followerId : follows.followerIds()) {
+                        counterService.decrement(Counter.USER_FOLLOWING, followerId);
+                        feedService.invalidateTimeline(followerId);
+                        recommendationService.invalidate(followerId);
+                    }
+                    for (Long followedId : follows.followedIds()) {
+                        counterService.decrement(Counter.USER_FOLLOWERS, followedId);
+                        recommendationService.invalidate(followedId);
+                    }
+                    // the user's posts and comments are deleted along with it, and the comments others made on them
+                    postCache.invalidateAll();
+                    commentCache.invalidateAll();
+                })
+                .then();
     }
 
-    @Transactional(readOnly = true)
     public Flux<User> getUserFollowers(Long userId) {
-        Mono<Optional<User>> optionalUserMono = getOptionalUserMonoById(userId);
-        return optionalUserMono.flatMapMany(optionalUser -> {
-            if (optionalUser.isPresent()) {
-                User followedUser = optionalUser.get();
-                return Flux.fromIterable(followedUser.getFollowers());
-            } else {
-                return Flux.empty();
-            }
-        });
+        // followers are lazy, copied out while the user is attached
+        return persistenceScheduler.transactional(() -> userRepository.findById(userId)
+                        .<List<User>>map(followedUser -> new ArrayList<>(followedUser.getFollowers()))
+                        .orElse(List.of()))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    public Flux<UserDto> getUserFollowerDtos(Long userId) {
+        return reactiveUserRepository.findFollowerDtos(userId);
+    }
+
+    /**
+     * Checks whether {@code followerId} follows {@code userId}, in memory.
+     */
+    public Mono<Boolean> isFollowing(Long userId, Long followerId) {
+        return Mono.fromSupplier(() -> followerGraphService.isFollowing(userId, followerId));
+    }
+
+    /**
+     * Returns the ids of the users following both users, in memory.
+     */
+    public Flux<Long> getMutualFollowerIds(Long userId, Long otherUserId) {
+        return Mono.fromSupplier(() -> followerGraphService.getMutualFollowers(userId, otherUserId))
+                .flatMapMany(ids -> Flux.fromStream(Arrays.stream(ids).boxed()));
+    }
+
+    public Mono<Long> getFollowerCount(Long userId) {
+        return counterService.getCount(Counter.USER_FOLLOWERS, userId);
+    }
+
+    public Mono<Long> getFollowingCount(Long userId) {
+        return counterService.getCount(Counter.USER_FOLLOWING, userId);
     }
 
-    @Transactional
     public Mono<Void> followUser(Long userId, Long followerId) {
-        User followedUser = userRepository.findByIdWithAllRelatedData(userId)
-                .orElseThrow(() -> new RuntimeException("No such user with id " + userId));
-        User followingUser = userRepository.findByIdWithAllRelatedData(followerId)
-                .orElseThrow(() -> new RuntimeException("No such follower with id " + followerId));
-        followedUser.getFollowers().add(followingUser);
-        return Mono.just(userRepository.save(followedUser)).then();
+        if (Objects.equals(userId, followerId)) {
+            return Mono.error(new RuntimeException("User " + userId + " can't follow itself"));
+        }
+        // the users are looked up by primary key, then the follow is a single user_followers row
+        return persistenceScheduler.mono(() -> {
+                    requireUsers(userId, followerId);
+                    try {
+                        return userRepository.insertFollower(userId, followerId) > 0;
+                    } catch (DataIntegrityViolationException e) {
+                        // a concurrent follow of the same users won the race past the NOT EXISTS guard
+                        if (userRepository.countFollower(userId, followerId) > 0) {
+                            return false;
+                        }
+                        throw e;
+                    }
+                })
+                // counted once committed
+                .doOnNext(followed -> {
+                    if (followed) {
+                        followerGraphService.follow(userId, followerId);
+                        counterService.increment(Counter.USER_FOLLOWERS, userId);
+                        counterService.increment(Counter.USER_FOLLOWING, followerId);
+                    }
+                    feedService.invalidateTimeline(followerId);
+                    recommendationService.invalidate(followerId);
+                })
+                .then();
     }
 
-    @Transactional
     public Mono<Void> unfollowUser(Long userId, Long followerId) {
-        User followedUser = userRepository.findByIdWithAllRelatedData(userId)
-                .orElseThrow(() -> new RuntimeException("No such user with id " + userId));
-        User followingUser = userRepository.findByIdWithAllRelatedData(followerId)
-                .orElseThrow(() -> new RuntimeException("No such follower with id " + followerId));
-        followedUser.getFollowers().removeIf(u -> u.getId().equals(followingUser.getId()));
-        return Mono.just(userRepository.save(followedUser)).then();
+        return persistenceScheduler.mono(() -> {
+                    requireUsers(userId, followerId);
+                    return userRepository.deleteFollower(userId, followerId) > 0;
+                })
+                .doOnNext(unfollowed -> {
+                    if (unfollowed) {
+                        followerGraphService.unfollow(userId, followerId);
+                        counterService.decrement(Counter.USER_FOLLOWERS, userId);
+                        counterService.decrement(Counter.USER_FOLLOWING, followerId);
+                    }
+                    feedService.invalidateTimeline(followerId);
+                    recommendationService.invalidate(followerId);
+                })
+                .then();
+    }
+
+    /**
+     * Makes the follower follow all the given users in JDBC batches, e.g. when importing a contact list.
+     * Unknown users, users already followed and the follower itself are skipped.
+     * <p>
+     * A driver rewriting the batch (e.g. MySQL with rewriteBatchedStatements) reports
+     * {@link Statement#SUCCESS_NO_INFO} instead of row counts, the users followed are then read back in a single
+     * query, which only finds the new follows as the users followed before are left out of the batch.
+     *
+     * @return Number of users newly followed.
+     */
+    public Mono<Integer> followUsers(Long followerId, @NotNull Collection<Long> userIds) {
+        List<Long> distinctIds = userIds.stream()
+                .filter(Objects::nonNull)
+                .filter(userId -> !userId.equals(followerId))
+                .distinct()
+                .toList();
+        return persistenceScheduler.transactional(() -> {
+                    if (userRepository.findById(followerId).isEmpty()) {
+                        throw new RuntimeException("No such follower with id " + followerId);
+                    }
+                    Set<Long> followedBefore = findFollowedUserIds(followerId, distinctIds);
+                    List<Long> unfollowedIds = distinctIds.stream()
+                            .filter(userId -> !followedBefore.contains(userId))
+                            .toList();
+                    int[][] rowCounts = jdbcTemplate.batchUpdate(FOLLOW_IF_EXISTS_SQL, unfollowedIds, followBatchSize,
+                            (statement, userId) -> {
+                                statement.setLong(1, followerId);
+                                statement.setLong(2, userId);
+                                statement.setLong(3, followerId);
+                            });
+                    List<Long> followedIds = new ArrayList<>();
+                    int index = 0;
+                    for (int[] batchRowCounts : rowCounts) {
+                        for (int rowCount : batchRowCounts) {
+                            if (rowCount == Statement.SUCCESS_NO_INFO) {
+                                return List.copyOf(findFollowedUserIds(followerId, unfollowedIds));
+                            }
+                            if (rowCount > 0) {
+                                followedIds.add(unfollowedIds.get(index));
+                            }
+                            index++;
+                        }
+                    }
+                    return followedIds;
+                })
+                .doOnNext(followedIds -> {
+                    for (Long userId : followedIds) {
+                        followerGraphService.follow(userId, followerId);
+                        counterService.increment(Counter.USER_FOLLOWERS, userId);
+                    }
+                    counterService.add(Counter.USER_FOLLOWING, followerId, followedIds.size());
+                    feedService.invalidateTimeline(followerId);
+                    recommendationService.invalidate(followerId);
+                })
+                .map(List::size);
+    }
+
+    // the ids among the given users followed by the follower
+    private @NotNull Set<Long> findFollowedUserIds(Long followerId, @NotNull List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        String sql = "SELECT follower_id FROM user_followers WHERE followed_id = ? AND follower_id IN (" +
+                String.join(",", Collections.nCopies(userIds.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>();
+        args.add(followerId);
+        args.addAll(userIds);
+        return new LinkedHashSet<>(jdbcTemplate.queryForList(sql, Long.class, args.toArray()));
+    }
+
+    // lookups by primary key are served by the second-level cache, unlike existsById queries
+    private void requireUsers(Long userId, Long followerId) {
+        if (userRepository.findById(userId).isEmpty()) {
+            throw new RuntimeException("No such user with id " + userId);
+        }
+        if (userRepository.findById(followerId).isEmpty()) {
+            throw new RuntimeException("No such follower with id " + followerId);
+        }
+    }
+
+    // followers saved along with the user, counted once committed like those of followUser and unfollowUser
+    private void indexFollowers(@NotNull User user, @NotNull Set<Long> followerIdsBefore) {
+        if (user.getFollowers() == null) {
+            return;
+        }
+        Set<Long> followerIds = followerIds(user);
+        followerGraphService.replaceFollowers(user.getId(), followerIds.stream().mapToLong(Long::longValue).toArray());
+        for (Long followerId : followerIds) {
+            if (!followerIdsBefore.contains(followerId)) {
+                counterService.increment(Counter.USER_FOLLOWERS, user.getId());
+                counterService.increment(Counter.USER_FOLLOWING, followerId);
+                feedService.invalidateTimeline(followerId);
+                recommendationService.invalidate(followerId);
+            }
+        }
+        for (Long followerId : followerIdsBefore) {
+            if (!followerIds.contains(followerId)) {
+                counterService.decrement(Counter.USER_FOLLOWERS, user.getId());
+                counterService.decrement(Counter.USER_FOLLOWING, followerId);
+                feedService.invalidateTimeline(followerId);
+                recommendationService.invalidate(followerId);
+            }
+        }
+    }
+
+    private static @NotNull Set<Long> followerIds(@NotNull User user) {
+        if (user.getFollowers() == null) {
+            return Set.of();
+        }
+        Set<Long> followerIds = new LinkedHashSet<>();
+        user.getFollowers().forEach(follower -> followerIds.add(follower.getId()));
+        return followerIds;
     }
 
     @VisibleForTesting
@@ -160,5 +420,12 @@ public class UserService {
             target.setModified(LocalDateTime.now());
         }
     }
+
+    private record SavedUser(User user, Set<Long> followerIdsBefore) {
+    }
+
+    // the users following the user, and the users it follows
+    private record Follows(List<Long> followerIds, List<Long> followedIds) {
+    }
 }
 
@@ -0,0 +1,334 @@
+package com.communiverse.communiverse.utils;
+
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.dto.UserDto;
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Compact JSON serializer of the user, post and comment DTOs and entities, and of the error payloads.
+ * <p>
+ * Each supported type has a hand-written codec appending its fields, so nothing is introspected per call. The JSON
+ * is built in a per-thread buffer reused across calls, dates are written in the format of the formatter
+ * LocalDateTimeAdapter reads them with. Entities are written like their DTOs, referencing their author, post and
+ * parent by id, so their lazy collections are never touched. Other types fall back to {@link JsonUtils#toJson}.
+ */
+public class CompactJson {
+
+    // buffers grown past that size aren't kept for the next call
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    @FunctionalInterface
+    public interface Codec<T> {
+        void write(@NotNull T value, @NotNull JsonBuffer out);
+    }
+
+    private static final Map<Class<?>, Codec<?>> CODECS = Map.of(
+            UserDto.class, (Codec<UserDto>) CompactJson::writeUserDto,
+            PostDto.class, (Codec<PostDto>) CompactJson::writePostDto,
+            CommentDto.class, (Codec<CommentDto>) CompactJson::writeCommentDto,
+            User.class, (Codec<User>) CompactJson::writeUser,
+            Post.class, (Codec<Post>) CompactJson::writePost,
+            Comment.class, (Codec<Comment>) CompactJson::writeComment);
+
+    // resolved once per class, entity proxies get the codec of the entity they extend
+    private static final ClassValue<Codec<?>> CODEC_BY_CLASS = new ClassValue<>() {
+        @Override
+        protected Codec<?> computeValue(@NotNull Class<?> type) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                Codec<?> codec = CODECS.get(current);
+                if (codec != null) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+    };
+
+    private static final ThreadLocal<JsonBuffer> BUFFERS = ThreadLocal.withInitial(JsonBuffer::new);
+
+    public static boolean supports(@NotNull Class<?> type) {
+        return CODEC_BY_CLASS.get(type) != null;
+    }
+
+    /**
+     * Converts a supported object, a string (e.g. an error message) or a collection of those to compact JSON.
+     */
+    public static String toJson(@Nullable Object src) {
+        if (src != null && !(src instanceof String) && !(src instanceof Collection<?>) && !supports(src.getClass())) {
+            return JsonUtils.toJson(src);
+        }
+        JsonBuffer out = BUFFERS.get();
+        try {
+            out.value(src);
+            return out.toString();
+        } finally {
+            out.reset();
+        }
+    }
+
+    /**
+     * Appends the JSON of values to a StringBuilder, flat objects only: a field may hold a scalar but no object.
+     * Null fields are left out, like Gson does.
+     */
+    public static class JsonBuffer {
+
+        private final StringBuilder buffer = new StringBuilder(512);
+        private boolean firstField;
+
+        public JsonBuffer beginObject() {
+            buffer.append('{');
+            firstField = true;
+            return this;
+        }
+
+        public JsonBuffer endObject() {
+            buffer.append('}');
+            return this;
+        }
+
+        public JsonBuffer field(@NotNull String name, long value) {
+            name(name);
+            buffer.append(value);
+            return this;
+        }
+
+        public JsonBuffer field(@NotNull String name, @Nullable Long value) {
+            if (value != null) {
+                name(name);
+                buffer.append(value.longValue());
+            }
+            return this;
+        }
+
+        public JsonBuffer field(@NotNull String name, @Nullable String value) {
+            if (value != null) {
+                name(name);
+                string(value);
+            }
+            return this;
+        }
+
+        public JsonBuffer field(@NotNull String name, @Nullable LocalDateTime value) {
+            if (value != null) {
+                name(name);
+                buffer.append('"');
+                dateTime(value);
+                buffer.append('"');
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void value(@Nullable Object value) {
+            if (value == null) {
+                buffer.append("null");
+            } else if (value instanceof String string) {
+                string(string);
+            } else if (value instanceof Collection<?> values) {
+                buffer.append('[');
+                boolean first = true;
+                for (Object element : values) {
+                    if (!first) {
+                        buffer.append(',');
+                    }
+                    first = false;
+                    value(element);
+                }
+                buffer.append(']');
+            } else {
+                Codec<Object> codec = (Codec<Object>) CODEC_BY_CLASS.get(value.getClass());
+                if (codec == null) {
+                    throw new IllegalArgumentException("No JSON codec for " + value.getClass().getName());
+                }
+                codec.write(value, this);
+            }
+        }
+
+        private void name(@NotNull String name) {
+            if (!firstField) {
+                buffer.append(',');
+            }
+            firstField = false;
+            // field names are constants without characters to escape
+            buffer.append('"').append(name).append("\":");
+        }
+
+        private void string(@Nullable String value) {
+            if (value == null) {
+                buffer.append("null");
+                return;
+            }
+            buffer.append('"');
+            // runs of characters needing no escape are copied at once
+            int runStart = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                    continue;
+                }
+                buffer.append(value, runStart, i);
+                runStart = i + 1;
+                switch (c) {
+                    case '"' -> buffer.append("\\\"");
+                    case '\\' -> buffer.append("\\\\");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    case '\t' -> buffer.append("\\t");
+                    // other control characters, and the line separators JavaScript doesn't accept in strings
+                    default -> buffer.append("\\u")
+                            .append(HEX_DIGITS[c >> 12 & 0xF]).append(HEX_DIGITS[c >> 8 & 0xF])
+                            .append(HEX_DIGITS[c >> 4 & 0xF]).append(HEX_DIGITS[c & 0xF]);
+                }
+            }
+            buffer.append(value, runStart, value.length());
+            buffer.append('"');
+        }
+
+        // the ISO_LOCAL_DATE_TIME format of LocalDateTimeAdapter.FORMATTER, written digit by digit
+        private void dateTime(@NotNull LocalDateTime value) {
+            if (value.getYear() < 0 || value.getYear() > 9999) {
+                LocalDateTimeAdapter.FORMATTER.formatTo(value, buffer);
+                return;
+            }
+            digits(value.getYear(), 4).append('-');
+            digits(value.getMonthValue(), 2).append('-');
+            digits(value.getDayOfMonth(), 2).append('T');
+            digits(value.getHour(), 2).append(':');
+            digits(value.getMinute(), 2).append(':');
+            digits(value.getSecond(), 2);
+            int nanos = value.getNano();
+            if (nanos > 0) {
+                // as few fraction digits as needed
+                int digitCount = 9;
+                while (nanos % 10 == 0) {
+                    nanos /= 10;
+                    digitCount--;
+                }
+                buffer.append('.');
+                digits(nanos, digitCount);
+            }
+        }
+
+        private StringBuilder digits(int value, int width) {
+            int start = buffer.length();
+            buffer.setLength(start + width);
+            for (int i = start + width - 1; i >= start; i--) {
+                buffer.setCharAt(i, (char) ('0' + value % 10));
+                value /= 10;
+            }
+            return buffer;
+        }
+
+        private void reset() {
+            if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                BUFFERS.remove();
+            } else {
+                buffer.setLength(0);
+            }
+        }
+    }
+
+    private static void writeUserDto(@NotNull UserDto user, @NotNull JsonBuffer out) {
+        out.beginObject()
+                .field("id", user.getId())
+                .field("userName", user.getUserName())
+                .field("email", user.getEmail())
+                .field("profilePicture", user.getProfilePicture())
+                .field("lastLogin", user.getLastLogin())
+                .field("followerCount", user.getFollowerCount())
+                .field("followingCount", user.getFollowingCount())
+                .field("created", user.getCreated())
+                .field("modified", user.getModified())
+                .endObject();
+    }
+
+    private static void writePostDto(@NotNull PostDto post, @NotNull JsonBuffer out) {
+        out.beginObject()
+                .field("id", post.getId())
+                .field("title", post.getTitle())
+                .field("content", post.getContent())
+                .field("image", post.getImage())
+                .field("userId", post.getUserId())
+                .field("userName", post.getUserName())
+                .field("likeCount", post.getLikeCount())
+                .field("commentCount", post.getCommentCount())
+                .field("created", post.getCreated())
+                .field("modified", post.getModified())
+                .endObject();
+    }
+
+    private static void writeCommentDto(@NotNull CommentDto comment, @NotNull JsonBuffer out) {
+        out.beginObject()
+                .field("id", comment.getId())
+                .field("content", comment.getContent())
+                .field("userId", comment.getUserId())
+                .field("userName", comment.getUserName())
+                .field("postId", comment.getPostId())
+                .field("parentCommentId", comment.getParentCommentId())
+                .field("likeCount", comment.getLikeCount())
+                .field("replyCount", comment.getReplyCount())
+                .field("created", comment.getCreated())
+                .field("modified", comment.getModified())
+                .endObject();
+    }
+
+    // without the password, like UserDto
+    private static void writeUser(@NotNull User user, @NotNull JsonBuffer out) {
+        out.beginObject()
+                .field("id", user.getId())
+                .field("userName", user.getUserName())
+                .field("email", user.getEmail())
+                .field("profilePicture", user.getProfilePicture())
+                .field("lastLogin", user.getLastLogin())
+                .field("followerCount", user.getFollowerCount())
+                .field("followingCount", user.getFollowingCount())
+                .field("created", user.getCreated())
+                .field("modified", user.getModified())
+                .endObject();
+    }
+
+    private static void writePost(@NotNull Post post, @NotNull JsonBuffer out) {
+        out.beginObject()
+                .field("id", post.getId())
+                .field("title", post.getTitle())
+                .field("content", post.getContent())
+                .field("image", post.getImage())
+                .field("userId", post.getUser() == null ? null : post.getUser().getId())
+                .field("userName", post.getUser() == null ? null : post.getUser().getUserName())
+                .field("likeCount", post.getLikeCount())
+                .field("commentCount", post.getCommentCount())
+                .field("created", post.getCreated())
+                .field("modified", post.getModified())
+                .endObject();
+    }
+
+    private static void writeComment(@NotNull Comment comment, @NotNull JsonBuffer out) {
+        out.beginObject()
+                .field("id", comment.getId())
+                .field("content", comment.getContent())
+                .field("userId", comment.getUser() == null ? null : comment.getUser().getId())
+                .field("userName", comment.getUser() == null ? null : comment.getUser().getUserName())
+                .field("postId", comment.getPost() == null ? null : comment.getPost().getId())
+                .field("parentCommentId", comment.getParentComment() == null ? null : comment.getParentComment().getId())
+                .field("likeCount", comment.getLikeCount())
+                .field("replyCount", comment.getReplyCount())
+                .field("created", comment.getCreated())
+                .field("modified", comment.getModified())
+                .endObject();
+    }
+}
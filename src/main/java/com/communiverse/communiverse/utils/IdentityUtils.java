@@ -0,0 +1,28 @@
+package com.communiverse.communiverse.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Utility class for the generated ids of the tables written with explicit ids, behind Hibernate.
+ */
+public class IdentityUtils {
+
+    /**
+     * Moves the identity generating the ids of the table past its highest id, after rows were inserted with explicit
+     * ids, e.g. by a bulk import. MySQL moves its AUTO_INCREMENT by itself, H2 doesn't and would generate the ids of
+     * the inserted rows again.
+     */
+    public static void moveIdentityPastMaxId(@NotNull JdbcTemplate jdbcTemplate, @NotNull String tableName) {
+        String databaseName = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"H2".equals(databaseName)) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + tableName, Long.class);
+        if (maxId != null) {
+            jdbcTemplate.execute("ALTER TABLE " + tableName + " ALTER COLUMN id RESTART WITH " + (maxId + 1));
+        }
+    }
+}
@@ -10,32 +10,27 @@ import java.lang.reflect.Type;
 import java.time.LocalDateTime;
 
 /**
- * Utility class for working with JSON data and Gson library.
+ * Utility class for working with JSON data and Gson library, writing compact JSON.
+ * For the DTOs, entities and error payloads, {@link CompactJson} is faster.
  */
 public class JsonUtils {
 
-    private static GsonBuilder gsonBuilder = new GsonBuilder()
+    // skips the fields and classes annotated with @JsonIgnore, like Jackson
+    private static final ExclusionStrategy JSON_IGNORE_STRATEGY = new ExclusionStrategy() {
+        @Override
+        public boolean shouldSkipField(FieldAttributes f) {
+            return f.getAnnotation(JsonIgnore.class) != null;
+        }
+        @Override
+        public boolean shouldSkipClass(Class<?> clazz) {
+            return clazz.isAnnotationPresent(JsonIgnore.class);
+        }};
+
+    private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-            .addDeserializationExclusionStrategy(new ExclusionStrategy() {
-                @Override
-                public boolean shouldSkipField(FieldAttributes f) {
-                    return f.getAnnotation(JsonIgnore.class) != null;
-                }
-                @Override
-                public boolean shouldSkipClass(Class<?> clazz) {
-                    return clazz.isAnnotationPresent(JsonIgnore.class);
-                }})
-            .addSerializationExclusionStrategy(new ExclusionStrategy() {
-                @Override
-                public boolean shouldSkipField(FieldAttributes f) {
-                    return f.getAnnotation(JsonIgnore.class) != null;
-                }
-                @Override
-                public boolean shouldSkipClass(Class<?> clazz) {
-                    return clazz.isAnnotationPresent(JsonIgnore.class);
-                }});
-
-    private static final Gson gson = gsonBuilder.setPrettyPrinting().create();
+            .addDeserializationExclusionStrategy(JSON_IGNORE_STRATEGY)
+            .addSerializationExclusionStrategy(JSON_IGNORE_STRATEGY)
+            .create();
 
     public static Gson getGson() {
         return gson;
@@ -0,0 +1,76 @@
+package com.communiverse.communiverse.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Utility class for keyset (cursor) paging of the listing endpoints, and keyset chunking of the streaming ones.
+ */
+public class PagingUtils {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    // rows per query of the streaming endpoints, also the JDBC fetch size of those queries so a chunk is one round trip
+    public static final int STREAM_CHUNK_SIZE = 500;
+    public static final String STREAM_FETCH_SIZE = "" + STREAM_CHUNK_SIZE;
+
+    /**
+     * Cursor of the listings paged on (created, id), the values of the last row of the previous page.
+     * Compared against directly, so the page is found even if that row was deleted meanwhile.
+     * Written as {@code <created>_<id>}, e.g. {@code 2024-03-01T10:15:30.5_42}.
+     */
+    public record Cursor(@NotNull LocalDateTime created, long id) {
+
+        public static @NotNull Cursor parse(@NotNull String cursor) {
+            int separator = cursor.lastIndexOf('_');
+            try {
+                return new Cursor(LocalDateTime.parse(cursor.substring(0, Math.max(0, separator))),
+                        Long.parseLong(cursor.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return created + "_" + id;
+        }
+    }
+
+    /**
+     * Builds the page request of the first page, bounded to {@link #MAX_PAGE_SIZE}.
+     * Deeper pages are selected by the cursor in the query, never by an offset.
+     *
+     * @param limit The requested page size.
+     * @return The page request.
+     */
+    public static PageRequest firstPageOf(int limit) {
+        return PageRequest.ofSize(Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * Streams all the rows, reading them in keyset chunks of {@link #STREAM_CHUNK_SIZE}, each by its own query.
+     * A chunk is read only once the previous one is requested downstream, so at most a couple of chunks are held
+     * in memory whatever the number of rows, and no connection is held while waiting for a slow subscriber.
+     *
+     * @param chunkAfter Reads the rows following the given id, in id order. The first chunk follows id 0.
+     * @param idOf       The id of a row, the cursor of the next chunk.
+     */
+    public static <T> Flux<T> streamChunks(@NotNull BiFunction<Long, Pageable, Flux<T>> chunkAfter,
+                                           @NotNull Function<T, Long> idOf) {
+        PageRequest chunk = PageRequest.ofSize(STREAM_CHUNK_SIZE);
+        return chunkAfter.apply(0L, chunk).collectList()
+                .expand(rows -> rows.size() < STREAM_CHUNK_SIZE
+                        ? Flux.empty()
+                        : chunkAfter.apply(idOf.apply(rows.get(rows.size() - 1)), chunk).collectList())
+                .concatMapIterable(Function.<List<T>>identity(), 1);
+    }
+}
@@ -0,0 +1,63 @@
+package com.communiverse.communiverse.utils;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * In-memory read-through cache of values by id, in front of a reactive loader.
+ * <p>
+ * Concurrent misses for the same id are coalesced into a single load (single-flight): the first reader starts it,
+ * the others wait for the same result. An entry read once {@code refreshAfterWrite} has passed since it was loaded
+ * is reloaded in the background while its current value keeps being served (refresh-ahead), so hot ids are never
+ * missed. An entry expires {@code expireAfterWrite} after its last load, only the ids read meanwhile are refreshed.
+ * Failed and empty loads aren't cached. The cached values are shared by all readers and must not be modified.
+ */
+public class ReadThroughCache<V> {
+
+    private final AsyncLoadingCache<Long, V> cache;
+
+    /**
+     * @param name   Name of the cache in the {@code cache.*} meters.
+     * @param loader Loads the value of an id, empty if there's none.
+     */
+    public ReadThroughCache(@NotNull String name, @NotNull Function<Long, Mono<V>> loader, long maxSize,
+                            @NotNull Duration refreshAfterWrite, @NotNull Duration expireAfterWrite,
+                            @NotNull MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refreshAfterWrite)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync((id, executor) -> loader.apply(id).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * Returns the cached value of the id, loading it on a miss. Empty if the loader finds nothing.
+     */
+    public Mono<V> get(@NotNull Long id) {
+        // a reader cancelling doesn't cancel the load shared with the other readers
+        return Mono.fromFuture(() -> cache.get(id), true);
+    }
+
+    /**
+     * Drops the cached value, a load in flight for the id is discarded once done.
+     */
+    public void invalidate(@Nullable Long id) {
+        if (id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+}
@@ -0,0 +1,91 @@
+package com.communiverse.communiverse.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the JDBC statements executed within a scope, e.g. an HTTP request or a test.
+ * <p>
+ * A scope is active on the threads it was activated on, and on the threads running the tasks they schedule
+ * on Reactor schedulers (see {@link #propagate(Runnable)}), so the blocking calls deferred to the persistence
+ * scheduler are counted in the scope of the request they serve. Statements are counted in the active scope and
+ * in the scopes enclosing it.
+ */
+public class SqlStatementCounter {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    public interface Activation extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public static class Scope {
+
+        private final Scope parent;
+        private final AtomicLong statements = new AtomicLong();
+
+        private Scope(@Nullable Scope parent) {
+            this.parent = parent;
+        }
+
+        public long getStatements() {
+            return statements.get();
+        }
+
+        /**
+         * Makes this scope the active one of the current thread, until the returned activation is closed.
+         */
+        public @NotNull Activation activate() {
+            Scope previous = CURRENT.get();
+            CURRENT.set(this);
+            return () -> restore(previous);
+        }
+    }
+
+    /**
+     * A new scope, enclosed in the one active on the current thread if any. It counts nothing until activated.
+     */
+    public static @NotNull Scope newScope() {
+        return new Scope(CURRENT.get());
+    }
+
+    public static @Nullable Scope current() {
+        return CURRENT.get();
+    }
+
+    public static void countStatement() {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.statements.incrementAndGet();
+        }
+    }
+
+    /**
+     * Makes the scope active on the scheduling thread active on the thread running the task too.
+     * Registered as a Reactor schedule hook.
+     */
+    public static @NotNull Runnable propagate(@NotNull Runnable task) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            Activation activation = scope.activate();
+            try {
+                task.run();
+            } finally {
+                activation.close();
+            }
+        };
+    }
+
+    private static void restore(@Nullable Scope previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.communiverse.communiverse.controller;
+
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.services.CommentService;
+import com.communiverse.communiverse.services.LikeService;
+import com.communiverse.communiverse.services.PostService;
+import com.communiverse.communiverse.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LikeControllerTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final CommentService commentService;
+    private final LikeService likeService;
+    private final MockMvc mockMvc;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    LikeControllerTest(UserService userService, PostService postService, CommentService commentService,
+                       LikeService likeService, MockMvc mockMvc, UserRepository userRepository,
+                       PostRepository postRepository, CommentRepository commentRepository,
+                       LikeOnPostRepository likeOnPostRepository, LikeOnCommentRepository likeOnCommentRepository) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.likeService = likeService;
+        this.mockMvc = mockMvc;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testPostAndCommentLikeRoutes() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post post = createPost(user);
+        postService.createPost(post).block();
+        Comment comment = createComment(user, post);
+        commentService.createComment(comment).block();
+
+        // the comment routes live under /comment, they used to map to the same paths as the post routes
+        performAsync(post("/api/likes/{postId}/{userId}/like", post.getId(), user.getId()), status().isCreated());
+        performAsync(post("/api/likes/comment/{commentId}/{userId}/like", comment.getId(), user.getId()),
+                status().isCreated());
+        assertEquals(1, likeService.getPostLikeCount(post.getId()).block());
+        assertEquals(1, likeService.getCommentLikeCount(comment.getId()).block());
+
+        performAsync(delete("/api/likes/comment/{commentId}/{userId}/unlike", comment.getId(), user.getId()),
+                status().isNoContent());
+        assertEquals(1, likeService.getPostLikeCount(post.getId()).block());
+        assertEquals(0, likeService.getCommentLikeCount(comment.getId()).block());
+    }
+
+    private void performAsync(RequestBuilder requestBuilder, ResultMatcher status) {
+        try {
+            MvcResult result = mockMvc.perform(requestBuilder)
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
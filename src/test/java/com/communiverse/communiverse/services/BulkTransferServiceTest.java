@@ -0,0 +1,167 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.dto.BulkTransferDto;
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.services.BulkTransferService.Table;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class BulkTransferServiceTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final CommentService commentService;
+    private final LikeService likeService;
+    private final EngagementCounterService counterService;
+    private final FollowerGraphService followerGraphService;
+    private final BulkTransferService bulkTransferService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    BulkTransferServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                            LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                            PostRepository postRepository, PostService postService, CommentService commentService,
+                            LikeService likeService, EngagementCounterService counterService,
+                            FollowerGraphService followerGraphService, BulkTransferService bulkTransferService,
+                            JdbcTemplate jdbcTemplate) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.likeService = likeService;
+        this.counterService = counterService;
+        this.followerGraphService = followerGraphService;
+        this.bulkTransferService = bulkTransferService;
+        this.jdbcTemplate = jdbcTemplate;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testExportImport(@TempDir Path exportDir) throws Exception {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User follower = createUser();
+        userService.createUser(follower).block();
+        userService.followUser(author.getId(), follower.getId()).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        Comment comment = createComment(follower, post);
+        commentService.createComment(comment).block();
+        Comment reply = createCommentReply(author, comment);
+        commentService.createComment(reply).block();
+        likeService.likePost(follower.getId(), post.getId()).block();
+        likeService.likeComment(author.getId(), comment.getId()).block();
+        counterService.flush();
+
+        BulkTransferDto export = bulkTransferService.exportTo(exportDir);
+        assertEquals(Map.of("user", 2L, "user_followers", 1L, "post", 1L, "comment", 2L, "comment_closure", 3L,
+                "like_post", 1L, "like_comment", 1L), export.getRowCounts());
+        assertTrue(Files.exists(exportDir.resolve(BulkTransferService.MANIFEST_FILE)));
+        Map<Table, List<Map<String, Object>>> exportedRows = readTables();
+
+        clearTestData();
+        assertEquals(0, userRepository.count());
+        // like on an empty DB, the ids to import haven't been generated yet
+        for (Table table : List.of(Table.USER, Table.POST, Table.COMMENT, Table.LIKE_POST, Table.LIKE_COMMENT)) {
+            jdbcTemplate.execute("ALTER TABLE " + table.getTableName() + " ALTER COLUMN id RESTART WITH 1");
+        }
+
+        BulkTransferDto imported = bulkTransferService.importFrom(exportDir);
+        assertEquals(export.getExportId(), imported.getExportId());
+        assertEquals(export.getRowCounts(), imported.getRowCounts());
+        assertEquals(exportedRows, readTables());
+        assertTrue(followerGraphService.isFollowing(author.getId(), follower.getId()));
+        assertEquals(1, postService.findPostById(post.getId()).block().getLikeCount());
+
+        // an interrupted import resumes after the last committed batch, the completed tables are skipped
+        jdbcTemplate.update("DELETE FROM like_comment");
+        jdbcTemplate.update("DELETE FROM bulk_import_checkpoint WHERE table_name = 'like_comment'");
+        bulkTransferService.importFrom(exportDir);
+        assertEquals(exportedRows, readTables());
+
+        // new rows don't collide with the imported ids
+        User newUser = createUser();
+        userService.createUser(newUser).block();
+        assertTrue(newUser.getId() > follower.getId());
+        Comment newComment = createComment(newUser, post);
+        commentService.createComment(newComment).block();
+        assertTrue(newComment.getId() > reply.getId());
+    }
+
+    @Test
+    public void testImportMissingExport(@TempDir Path exportDir) {
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> bulkTransferService.importFrom(exportDir));
+        assertEquals("Export not found " + exportDir, e.getMessage());
+        assertThrows(RuntimeException.class, () -> bulkTransferService.exportGraph("../outside").block());
+    }
+
+    private Map<Table, List<Map<String, Object>>> readTables() {
+        Map<Table, List<Map<String, Object>>> rows = new LinkedHashMap<>();
+        for (Table table : Table.values()) {
+            // text columns are read as strings, to compare their content
+            rows.put(table, jdbcTemplate.query("SELECT * FROM " + table.getTableName() + " ORDER BY 1, 2",
+                    new ColumnMapRowMapper() {
+                        @Override
+                        protected Object getColumnValue(@NotNull ResultSet rs, int index) throws SQLException {
+                            Object value = super.getColumnValue(rs, index);
+                            return value instanceof Clob ? rs.getString(index) : value;
+                        }
+                    }));
+        }
+        return rows;
+    }
+
+    private void clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM bulk_import_checkpoint");
+    }
+}
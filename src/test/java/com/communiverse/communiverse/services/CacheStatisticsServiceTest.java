@@ -0,0 +1,165 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.SecondLevelCacheConfig;
+import com.communiverse.communiverse.dto.CacheRegionStatsDto;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.createPost;
+import static com.communiverse.communiverse.utils.CreateDataUtils.createUser;
+import static com.communiverse.communiverse.utils.QueryStatisticsUtils.countSelects;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class CacheStatisticsServiceTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final LikeService likeService;
+    private final EngagementCounterService counterService;
+    private final CacheStatisticsService cacheStatisticsService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    CacheStatisticsServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                               LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                               PostRepository postRepository, PostService postService, LikeService likeService,
+                               EngagementCounterService counterService, CacheStatisticsService cacheStatisticsService,
+                               JdbcTemplate jdbcTemplate) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.likeService = likeService;
+        this.counterService = counterService;
+        this.cacheStatisticsService = cacheStatisticsService;
+        this.jdbcTemplate = jdbcTemplate;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testUsersAndPostsServedFromCache() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User follower = createUser();
+        userService.createUser(follower).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        // the follow checks and the native follower insert leave the users cached, the counter flush evicts them
+        userService.followUser(author.getId(), follower.getId()).block();
+        counterService.flush();
+        userService.getUserById(author.getId()).block();
+        postService.findPostById(post.getId()).block();
+        CacheRegionStatsDto usersBefore = cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.USER_REGION);
+        CacheRegionStatsDto postsBefore = cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.POST_REGION);
+
+        assertEquals(0, countSelects(jdbcTemplate, () -> userService.getUserById(author.getId()).block()).statements());
+        // the post and its author from the cache, only its comments and likes are queried
+        assertEquals(2, countSelects(jdbcTemplate, () -> postService.findPostById(post.getId()).block()).statements());
+
+        CacheRegionStatsDto usersAfter = cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.USER_REGION);
+        CacheRegionStatsDto postsAfter = cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.POST_REGION);
+        assertTrue(usersAfter.getHits() >= usersBefore.getHits() + 2);
+        assertEquals(usersBefore.getMisses(), usersAfter.getMisses());
+        assertEquals(postsBefore.getHits() + 1, postsAfter.getHits());
+
+        // the results hold the posts along with their authors
+        postService.getPostsByUserId(author.getId()).collectList().block();
+        long queryHitsBefore = cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.QUERY_RESULTS_REGION).getHits();
+        assertEquals(0, countSelects(jdbcTemplate, () -> {
+            List<Post> posts = postService.getPostsByUserId(author.getId()).collectList().block();
+            assertEquals(List.of(post.getId()), posts.stream().map(Post::getId).toList());
+        }).statements());
+        assertEquals(queryHitsBefore + 1,
+                cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.QUERY_RESULTS_REGION).getHits());
+
+        StepVerifier.create(cacheStatisticsService.getRegionStatistics().map(CacheRegionStatsDto::getRegion))
+                .expectNextSequence(SecondLevelCacheConfig.REGIONS)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCachedEntriesEvictedOnWrites() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        userService.getUserById(author.getId()).block();
+        postService.findPostById(post.getId()).block();
+
+        // scalar fields only, null collections are not copied onto the author, who keeps the post
+        User updatedUser = new User();
+        updatedUser.setEmail("updated@communiverse.com");
+        updatedUser.setPosts(null);
+        updatedUser.setComments(null);
+        updatedUser.setLikeOnPosts(null);
+        updatedUser.setLikeOnComments(null);
+        updatedUser.setFollowers(null);
+        userService.updateUser(author.getId(), updatedUser).block();
+        StepVerifier.create(userService.getUserById(author.getId()))
+                .expectNextMatches(user -> user.getEmail().equals("updated@communiverse.com"))
+                .verifyComplete();
+
+        post.setTitle("updated title");
+        postService.updatePost(post.getId(), post).block();
+        StepVerifier.create(postService.findPostById(post.getId()))
+                .expectNextMatches(updatedPost -> updatedPost.getTitle().equals("updated title"))
+                .verifyComplete();
+
+        // the counters are written by JDBC, the flush evicts the post
+        long removalsBefore = cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.POST_REGION).getRemovals();
+        likeService.likePost(author.getId(), post.getId()).block();
+        counterService.flush();
+        assertTrue(cacheStatisticsService.getRegionStatistics(SecondLevelCacheConfig.POST_REGION).getRemovals() > removalsBefore);
+        StepVerifier.create(postService.findPostById(post.getId()))
+                .expectNextMatches(likedPost -> likedPost.getLikeCount() == 1)
+                .verifyComplete();
+
+        postService.deletePost(post.getId()).block();
+        StepVerifier.create(postService.findPostById(post.getId()))
+                .expectErrorMatches(e -> e.getMessage().equals("Post not found " + post.getId()))
+                .verify();
+        userService.deleteUser(author.getId()).block();
+        StepVerifier.create(userService.getUserById(author.getId()))
+                .verifyComplete();
+    }
+
+    private void  clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
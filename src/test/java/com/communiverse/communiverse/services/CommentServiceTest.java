@@ -3,11 +3,16 @@ package com.communiverse.communiverse.services;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import com.communiverse.communiverse.dto.CommentDetailsDto;
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.CommentTreeNode;
 import com.communiverse.communiverse.model.Comment;
 import com.communiverse.communiverse.model.Post;
 import com.communiverse.communiverse.model.User;
 import com.communiverse.communiverse.model.like.Like;
 import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.utils.QueryStatisticsUtils.QueryStatistics;
+import com.communiverse.communiverse.utils.ReadThroughCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,23 +20,35 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static com.communiverse.communiverse.utils.CreateDataUtils.*;
 import static com.communiverse.communiverse.utils.CreateDataUtils.createCommentReply;
+import static com.communiverse.communiverse.utils.QueryStatisticsUtils.countSelects;
+import static com.communiverse.communiverse.utils.SqlStatementCountUtils.assertStatementCount;
 import static com.communiverse.communiverse.utils.VerificationResultsUtils.verifyCommentFields;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ActiveProfiles("test")
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
 public class CommentServiceTest {
 
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(CommentServiceTest.class);
+
     private final UserService userService;
     private final PostService postService;
     private final LikeService likeService;
@@ -42,6 +59,8 @@ public class CommentServiceTest {
     private final CommentRepository commentRepository;
     private final LikeOnPostRepository likeOnPostRepository;
     private final LikeOnCommentRepository likeOnCommentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadThroughCache<CommentDto> commentCache;
 
     private ListAppender<ILoggingEvent> listAppender;
     private Logger logger;
@@ -49,7 +68,8 @@ public class CommentServiceTest {
     @Autowired
     CommentServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository, CommentService commentService,
                        LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
-                       PostRepository postRepository, PostService postService, LikeService likeService) {
+                       PostRepository postRepository, PostService postService, LikeService likeService,
+                       JdbcTemplate jdbcTemplate, ReadThroughCache<CommentDto> commentCache) {
 
         this.userService = userService;
         this.postService = postService;
@@ -61,6 +81,8 @@ public class CommentServiceTest {
         this.commentRepository = commentRepository;
         this.likeOnCommentRepository = likeOnCommentRepository;
         this.likeOnPostRepository = likeOnPostRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.commentCache = commentCache;
     }
 
     @BeforeEach
@@ -77,13 +99,13 @@ public class CommentServiceTest {
     public void testCreateUpdateDeleteComment() {
 
         User user1 = createUser();
-        userService.createUser(user1);
+        userService.createUser(user1).block();
         User user2 = createUser();
-        userService.createUser(user2);
+        userService.createUser(user2).block();
         User user3 = createUser();
-        userService.createUser(user3);
+        userService.createUser(user3).block();
         User user4 = createUser();
-        userService.createUser(user4);
+        userService.createUser(user4).block();
 
         user1 = userService.getUserEagerlyById(user1.getId()).block();
         assert user1 != null;
@@ -95,12 +117,12 @@ public class CommentServiceTest {
         assert user4 != null;
 
         Post testedPost = createPost(user1);
-        postService.createPost(testedPost);
+        postService.createPost(testedPost).block();
         testedPost = postService.findPostById(testedPost.getId()).block();
         assert testedPost != null;
 
         Comment testedComment = createComment(user2, testedPost);
-        commentService.createComment(testedComment);
+        commentService.createComment(testedComment).block();
         Mono<Comment> commentMono = commentService.getCommentById(testedComment.getId());
         StepVerifier.create(commentMono)
                 .expectNextCount(1)
@@ -109,7 +131,7 @@ public class CommentServiceTest {
         testedComment = commentMono.block();
 
         Comment unrepliedComment = createComment(user4, testedPost);
-        commentService.createComment(unrepliedComment);
+        commentService.createComment(unrepliedComment).block();
         Mono<Comment> unrepliedCommentMono = commentService.getCommentById(unrepliedComment.getId());
         StepVerifier.create(commentMono)
                 .expectNextCount(1)
@@ -118,7 +140,7 @@ public class CommentServiceTest {
         unrepliedComment = unrepliedCommentMono.block();
 
         Comment testedReply1 = createCommentReply(user3, testedComment);
-        commentService.createComment(testedReply1);
+        commentService.createComment(testedReply1).block();
         Mono<Comment> commentReply1Mono = commentService.getCommentById(testedReply1.getId());
         StepVerifier.create(commentReply1Mono)
                 .expectNextCount(1)
@@ -127,7 +149,7 @@ public class CommentServiceTest {
         testedReply1 = commentReply1Mono.block();
 
         Comment testedReply2 = createCommentReply(user2, testedComment);
-        commentService.createComment(testedReply2);
+        commentService.createComment(testedReply2).block();
         Mono<Comment> commentReply2Mono = commentService.getCommentById(testedReply2.getId());
         StepVerifier.create(commentReply2Mono)
                 .expectNextCount(1)
@@ -136,7 +158,7 @@ public class CommentServiceTest {
         testedReply2 = commentReply2Mono.block();
 
         Comment testedReply3 = createCommentReply(user1, testedReply2);
-        commentService.createComment(testedReply3);
+        commentService.createComment(testedReply3).block();
         Mono<Comment> commentReply3Mono = commentService.getCommentById(testedReply3.getId());
         StepVerifier.create(commentReply3Mono)
                 .expectNextCount(1)
@@ -182,10 +204,10 @@ public class CommentServiceTest {
         testedReply3 = commentReply3Mono.block();
 
         // test delete comment
-        commentService.deleteComment(unrepliedComment.getId());
-        commentService.deleteComment(testedReply3.getId());
-        commentService.deleteComment(testedReply1.getId());
-        commentService.deleteComment(testedComment.getId());    // this comment just marked as 'deleted' without physical deletion as it has replies.
+        commentService.deleteComment(unrepliedComment.getId()).block();
+        commentService.deleteComment(testedReply3.getId()).block();
+        commentService.deleteComment(testedReply1.getId()).block();
+        commentService.deleteComment(testedComment.getId()).block();    // this comment just marked as 'deleted' without physical deletion as it has replies.
 
         postCommentsMono = commentService.getPostComments(testedPost.getId());
         StepVerifier.create(postCommentsMono)
@@ -193,6 +215,289 @@ public class CommentServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testGetCommentDtos() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User replier = createUser();
+        userService.createUser(replier).block();
+
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        Comment comment = createComment(author, post);
+        commentService.createComment(comment).block();
+        Comment reply = createCommentReply(replier, comment);
+        commentService.createComment(reply).block();
+
+        StepVerifier.create(commentService.getCommentDtoById(reply.getId()))
+                .assertNext(dto -> {
+                    assertEquals(reply.getContent(), dto.getContent());
+                    assertEquals(replier.getId(), dto.getUserId());
+                    assertEquals(replier.getUserName(), dto.getUserName());
+                    assertEquals(post.getId(), dto.getPostId());
+                    assertEquals(comment.getId(), dto.getParentCommentId());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getPostCommentDtos(post.getId()))
+                .assertNext(dto -> assertNull(dto.getParentCommentId()))
+                .assertNext(dto -> assertEquals(comment.getId(), dto.getParentCommentId()))
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getCommentDtosByPostIdAndUserId(post.getId(), replier.getId()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getCommentDtoById(Long.MAX_VALUE))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+
+    @Test
+    public void testGetPostCommentTree() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User replier = createUser();
+        userService.createUser(replier).block();
+
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        Comment comment1 = createComment(author, post);
+        commentService.createComment(comment1).block();
+        Comment comment2 = createComment(replier, post);
+        commentService.createComment(comment2).block();
+        Comment comment3 = createComment(author, post);
+        commentService.createComment(comment3).block();
+        Comment reply = createCommentReply(replier, comment1);
+        commentService.createComment(reply).block();
+        Comment nestedReply = createCommentReply(author, reply);
+        commentService.createComment(nestedReply).block();
+
+        // whole thread, first page of top-level comments
+        StepVerifier.create(commentService.getPostCommentTree(post.getId(), null, 2, null))
+                .assertNext(node -> {
+                    assertEquals(comment1.getId(), node.getComment().getId());
+                    assertNull(node.getMoreRepliesCursor());
+                    assertEquals(1, node.getReplies().size());
+                    CommentTreeNode replyNode = node.getReplies().get(0);
+                    assertEquals(reply.getId(), replyNode.getComment().getId());
+                    assertEquals(replier.getUserName(), replyNode.getComment().getUserName());
+                    assertEquals(nestedReply.getId(), replyNode.getReplies().get(0).getComment().getId());
+                    assertTrue(replyNode.getReplies().get(0).getReplies().isEmpty());
+                })
+                .assertNext(node -> assertEquals(comment2.getId(), node.getComment().getId()))
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getPostCommentTree(post.getId(), comment2.getId(), 2, null))
+                .assertNext(node -> assertEquals(comment3.getId(), node.getComment().getId()))
+                .verifyComplete();
+
+        // depth-bounded, the replies below the bound are pointed to by the cursor
+        StepVerifier.create(commentService.getPostCommentTree(post.getId(), null, 1, 1))
+                .assertNext(node -> {
+                    assertNull(node.getMoreRepliesCursor());
+                    CommentTreeNode replyNode = node.getReplies().get(0);
+                    assertTrue(replyNode.getReplies().isEmpty());
+                    assertEquals(reply.getId(), replyNode.getMoreRepliesCursor());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getPostCommentTree(post.getId(), null, 1, 0))
+                .assertNext(node -> {
+                    assertTrue(node.getReplies().isEmpty());
+                    assertEquals(comment1.getId(), node.getMoreRepliesCursor());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getReplyTree(reply.getId(), null, 10, null))
+                .assertNext(node -> assertEquals(nestedReply.getId(), node.getComment().getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFetchPlans() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        Comment comment = createComment(author, post);
+        commentService.createComment(comment).block();
+        for (int i = 0; i < 3; i++) {
+            User replier = createUser();
+            userService.createUser(replier).block();
+            commentService.createComment(createCommentReply(replier, comment)).block();
+            likeService.likeComment(replier.getId(), comment.getId()).block();
+        }
+
+        // statements per plan, constant whatever the number of replies and likes
+        Map<Set<String>, Long> expectedStatements = new LinkedHashMap<>();
+        expectedStatements.put(Set.of(), 1L);
+        expectedStatements.put(Set.of(CommentDetailsDto.AUTHOR), 1L);
+        expectedStatements.put(Set.of(CommentDetailsDto.REPLIES), 2L);
+        expectedStatements.put(Set.of(CommentDetailsDto.LIKES), 2L);
+        expectedStatements.put(Set.of(CommentDetailsDto.REPLIES, CommentDetailsDto.LIKES), 3L);
+        expectedStatements.put(Set.of(CommentDetailsDto.AUTHOR, CommentDetailsDto.REPLIES, CommentDetailsDto.LIKES), 3L);
+
+        expectedStatements.forEach((expand, statements) -> {
+            AtomicReference<CommentDetailsDto> details = new AtomicReference<>();
+            QueryStatistics statistics = countSelects(jdbcTemplate,
+                    () -> details.set(commentService.getCommentDetails(comment.getId(), expand).block()));
+
+            assertEquals(statements, statistics.statements(), "Statements for " + expand);
+            assertEquals(comment.getId(), details.get().getComment().getId());
+            assertEquals(expand.contains(CommentDetailsDto.AUTHOR), details.get().getAuthor() != null);
+            assertEquals(expand.contains(CommentDetailsDto.REPLIES) ? 3 : -1,
+                    details.get().getReplies() == null ? -1 : details.get().getReplies().size());
+            assertEquals(expand.contains(CommentDetailsDto.LIKES) ? 3 : -1,
+                    details.get().getLikes() == null ? -1 : details.get().getLikes().size());
+        });
+
+        // again per request scope, ignoring the statements other threads run meanwhile
+        expectedStatements.forEach((expand, statements) -> {
+            commentCache.invalidateAll();
+            assertStatementCount(statements, () -> commentService.getCommentDetails(comment.getId(), expand).block());
+        });
+    }
+
+    @Test
+    public void testCommentClosure() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        Comment root = createComment(author, post);
+        commentService.createComment(root).block();
+        Comment reply1 = createCommentReply(author, root);
+        commentService.createComment(reply1).block();
+        Comment reply2 = createCommentReply(author, root);
+        commentService.createComment(reply2).block();
+        Comment nestedReply = createCommentReply(author, reply1);
+        commentService.createComment(nestedReply).block();
+
+        StepVerifier.create(commentService.getDescendantDtos(root.getId()).map(CommentDto::getId))
+                .expectNext(reply1.getId(), reply2.getId(), nestedReply.getId())
+                .verifyComplete();
+        StepVerifier.create(commentService.getDescendantCount(root.getId()))
+                .expectNext(3L)
+                .verifyComplete();
+        StepVerifier.create(commentService.getAncestorDtos(nestedReply.getId()).map(CommentDto::getId))
+                .expectNext(root.getId(), reply1.getId())
+                .verifyComplete();
+
+        // the deleted comment's closure rows go with it
+        commentService.deleteComment(nestedReply.getId()).block();
+        StepVerifier.create(commentService.getDescendantCount(root.getId()))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(commentService.getAncestorDtos(root.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testDeleteThreadMarkedAsDeleted() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        Comment root = createComment(author, post);
+        commentService.createComment(root).block();
+        Comment reply = createCommentReply(author, root);
+        commentService.createComment(reply).block();
+        Comment nestedReply = createCommentReply(author, reply);
+        commentService.createComment(nestedReply).block();
+        likeService.likeComment(author.getId(), reply.getId()).block();
+
+        // both still have a reply shown, so just marked as 'deleted'
+        commentService.deleteComment(reply.getId()).block();
+        commentService.deleteComment(root.getId()).block();
+        assertEquals(3, commentRepository.count());
+
+        commentService.deleteComment(nestedReply.getId()).block();
+        StepVerifier.create(postService.getCommentCount(post.getId()))
+                .expectNext(2L)
+                .verifyComplete();
+
+        // the thread left holds no reply shown, deleted along with the like of the reply
+        commentService.getCommentDetails(reply.getId(), Set.of()).block();
+        commentService.deleteComment(root.getId()).block();
+        assertEquals(0, commentRepository.count());
+        StepVerifier.create(commentService.getCommentDetails(reply.getId(), Set.of()))
+                .expectErrorMatches(e -> e.getMessage().equals("Comment not found " + reply.getId()))
+                .verify();
+        assertEquals(0, likeOnCommentRepository.count());
+        StepVerifier.create(postService.getCommentCount(post.getId()))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    /**
+     * Not a pass/fail benchmark, logs the time of subtree queries answered by the closure table
+     * compared to the recursive thread query, on a thread 50 levels deep and a comment with 10k replies.
+     */
+    @Test
+    public void testSubtreeQueriesOnDeepAndWideThreads() {
+
+        final int DEPTH = 50;
+        final int WIDTH = 10_000;
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        Comment deepRoot = createComment(author, post);
+        commentService.createComment(deepRoot).block();
+        Comment deepest = deepRoot;
+        for (int i = 0; i < DEPTH; i++) {
+            Comment reply = createCommentReply(author, deepest);
+            commentService.createComment(reply).block();
+            deepest = reply;
+        }
+
+        Comment wideRoot = createComment(author, post);
+        commentService.createComment(wideRoot).block();
+        Flux.range(0, WIDTH)
+                .flatMap(i -> commentService.createComment(createCommentReply(author, wideRoot)), 16)
+                .blockLast();
+
+        Long deepRootId = deepRoot.getId();
+        Long deepestId = deepest.getId();
+        Long wideRootId = wideRoot.getId();
+
+        assertEquals(DEPTH, timed("closure descendant count, deep",
+                () -> commentService.getDescendantCount(deepRootId).block()));
+        assertEquals(DEPTH, timed("recursive descendant count, deep",
+                () -> countThread(commentService.getReplyTree(deepRootId, null, 1, null).blockFirst())));
+        assertEquals(DEPTH, timed("closure ancestors, deep",
+                () -> commentService.getAncestorDtos(deepestId).count().block()));
+        assertEquals(WIDTH, timed("closure descendant count, wide",
+                () -> commentService.getDescendantCount(wideRootId).block()));
+        assertEquals(WIDTH, timed("closure descendants, wide",
+                () -> commentService.getDescendantDtos(wideRootId).count().block()));
+    }
+
+    private long timed(String name, Supplier<Long> query) {
+        query.get();    // warm-up
+        long start = System.nanoTime();
+        Long result = query.get();
+        log.info("{}: {} comments in {} ms", name, result, (System.nanoTime() - start) / 1_000_000.0);
+        return result;
+    }
+
+    // the node and its replies at any level
+    private long countThread(CommentTreeNode node) {
+        return node.getReplies().stream().mapToLong(this::countThread).sum() + 1;
+    }
+
     private void setupLogger() {
         logger = (Logger) LoggerFactory.getLogger(CommentService.class);
         listAppender = new ListAppender<>();
@@ -0,0 +1,127 @@
+package com.communiverse.communiverse.services;
+
+import liquibase.Scope;
+import liquibase.command.CommandScope;
+import liquibase.command.core.UpdateCommandStep;
+import liquibase.command.core.UpdateCountCommandStep;
+import liquibase.command.core.helpers.DbUrlConnectionCommandStep;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the changelog on a database holding the data of an older schema, duplicates the later changesets must clean up.
+ */
+public class DatabaseMigrationTest {
+
+    private static final String CHANGELOG = "db/changelog/db.changelog-master.yaml";
+    // up to 0007-create-post-created-index, before the counters are backfilled and the unique indexes created
+    private static final int CHANGESETS_BEFORE_COUNTERS = 7;
+
+    private Connection connection;
+    private JdbcTemplate jdbcTemplate;
+    private Database database;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migration-" + UUID.randomUUID() +
+                ";NON_KEYWORDS=user,like,post,comment", "sa", "");
+        jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void testDuplicateLikesAreRemovedAndUncounted() throws Exception {
+
+        update(CHANGESETS_BEFORE_COUNTERS);
+        long userId = insertUser("liker");
+        long postId = insertPost(userId);
+        long commentId = insertComment(userId, postId);
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO like_post (user_id, post_id) VALUES (?, ?)", userId, postId);
+            jdbcTemplate.update("INSERT INTO like_comment (user_id, comment_id) VALUES (?, ?)", userId, commentId);
+        }
+
+        update();
+
+        assertEquals(1, count("SELECT COUNT(*) FROM like_post WHERE post_id = ?", postId));
+        assertEquals(1, count("SELECT COUNT(*) FROM like_comment WHERE comment_id = ?", commentId));
+        assertEquals(1, count("SELECT like_count FROM post WHERE id = ?", postId));
+        assertEquals(1, count("SELECT like_count FROM comment WHERE id = ?", commentId));
+    }
+
+    @Test
+    public void testDuplicateFollowsAreRemovedAndUncounted() throws Exception {
+
+        update(CHANGESETS_BEFORE_COUNTERS);
+        long userId = insertUser("followed");
+        long followerId = insertUser("follower");
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO user_followers (follower_id, followed_id) VALUES (?, ?)", userId, followerId);
+        }
+        jdbcTemplate.update("INSERT INTO user_followers (follower_id, followed_id) VALUES (?, ?)", followerId, userId);
+
+        update();
+
+        assertEquals(2, count("SELECT COUNT(*) FROM user_followers"));
+        assertEquals(1, count("SELECT follower_count FROM user WHERE id = ?", userId));
+        assertEquals(1, count("SELECT following_count FROM user WHERE id = ?", userId));
+        assertEquals(1, count("SELECT follower_count FROM user WHERE id = ?", followerId));
+        assertEquals(1, count("SELECT following_count FROM user WHERE id = ?", followerId));
+    }
+
+    private void update() throws Exception {
+        execute(new CommandScope(UpdateCommandStep.COMMAND_NAME)
+                .addArgumentValue(UpdateCommandStep.CHANGELOG_FILE_ARG, CHANGELOG));
+    }
+
+    private void update(int count) throws Exception {
+        execute(new CommandScope(UpdateCountCommandStep.COMMAND_NAME)
+                .addArgumentValue(UpdateCountCommandStep.CHANGELOG_FILE_ARG, CHANGELOG)
+                .addArgumentValue(UpdateCountCommandStep.COUNT_ARG, count));
+    }
+
+    // the changelog is read from the classpath, the database passed in is left open
+    private void execute(CommandScope commandScope) throws Exception {
+        Scope.child(Scope.Attr.resourceAccessor.name(), new ClassLoaderResourceAccessor(), () ->
+                commandScope.addArgumentValue(DbUrlConnectionCommandStep.DATABASE_ARG, database).execute());
+    }
+
+    private long insertUser(String userName) {
+        jdbcTemplate.update("INSERT INTO user (username, email, password) VALUES (?, ?, ?)",
+                userName, userName + "@communiverse.com", "password");
+        return count("SELECT MAX(id) FROM user");
+    }
+
+    private long insertPost(long userId) {
+        jdbcTemplate.update("INSERT INTO post (title, content, user_id) VALUES (?, ?, ?)", "title", "content", userId);
+        return count("SELECT MAX(id) FROM post");
+    }
+
+    private long insertComment(long userId, long postId) {
+        jdbcTemplate.update("INSERT INTO comment (content, user_id, post_id) VALUES (?, ?, ?)", "content", userId, postId);
+        return count("SELECT MAX(id) FROM comment");
+    }
+
+    private long count(String sql, Object... args) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return count == null ? 0 : count;
+    }
+}
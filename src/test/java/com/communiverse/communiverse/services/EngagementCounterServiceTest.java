@@ -0,0 +1,184 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "communiverse.counters.flush-interval-ms=3600000")
+public class EngagementCounterServiceTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final LikeService likeService;
+    private final EngagementCounterService counterService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    EngagementCounterServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                                 LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                                 PostRepository postRepository, PostService postService, LikeService likeService,
+                                 EngagementCounterService counterService, JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.likeService = likeService;
+        this.counterService = counterService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testPostLikeCount() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User liker1 = createUser();
+        userService.createUser(liker1).block();
+        User liker2 = createUser();
+        userService.createUser(liker2).block();
+
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        likeService.likePost(author.getId(), post.getId()).block();
+        likeService.likePost(liker1.getId(), post.getId()).block();
+        likeService.likePost(liker2.getId(), post.getId()).block();
+        likeService.unlikePost(author.getId(), post.getId()).block();
+
+        // not flushed yet, served from the pending delta
+        StepVerifier.create(likeService.getPostLikeCount(post.getId()))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(postService.getPostDtoById(post.getId()))
+                .expectNextMatches(dto -> dto.getLikeCount() == 0)
+                .verifyComplete();
+
+        counterService.flush();
+
+        StepVerifier.create(likeService.getPostLikeCount(post.getId()))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(postService.getPostDtoById(post.getId()))
+                .expectNextMatches(dto -> dto.getLikeCount() == 2)
+                .verifyComplete();
+
+        StepVerifier.create(likeService.getPostLikeCount(-1L))
+                .expectErrorMessage("Post not found -1")
+                .verify();
+    }
+
+    @Test
+    public void testFollowCounts() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User follower1 = createUser();
+        userService.createUser(follower1).block();
+        User follower2 = createUser();
+        userService.createUser(follower2).block();
+
+        userService.followUser(user.getId(), follower1.getId()).block();
+        userService.followUser(user.getId(), follower2.getId()).block();
+        userService.followUser(user.getId(), follower2.getId()).block();   // already following, not counted twice
+        userService.followUser(follower1.getId(), follower2.getId()).block();
+        counterService.flush();
+        userService.unfollowUser(user.getId(), follower1.getId()).block();
+
+        StepVerifier.create(userService.getFollowerCount(user.getId()))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(userService.getFollowingCount(follower2.getId()))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(userService.getFollowingCount(follower1.getId()))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testCountReadDuringFlush() throws Exception {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        likeService.likePost(author.getId(), post.getId()).block();
+
+        // the flush takes the pending like, then its update waits for the lock of the post row
+        CountDownLatch rowLocked = new CountDownLatch(1);
+        CountDownLatch releaseRow = new CountDownLatch(1);
+        CompletableFuture<Void> lockingTransaction = CompletableFuture.runAsync(() ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update("UPDATE post SET title = title WHERE id = ?", post.getId());
+                    rowLocked.countDown();
+                    awaitQuietly(releaseRow);
+                }));
+        assertTrue(rowLocked.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(counterService::flush);
+        Thread.sleep(200);
+
+        // neither pending nor persisted while the update waits, the read waits for the flush
+        CompletableFuture<Long> count = likeService.getPostLikeCount(post.getId()).toFuture();
+        Thread.sleep(200);
+        releaseRow.countDown();
+        lockingTransaction.get(10, TimeUnit.SECONDS);
+        flush.get(10, TimeUnit.SECONDS);
+        assertEquals(1L, count.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void  clearTestData() {
+        counterService.flush();
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
@@ -0,0 +1,180 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"communiverse.feed.fan-out-threshold=2", "communiverse.feed.timeline-capacity=3"})
+public class FeedServiceTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final FeedService feedService;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    FeedServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                    LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                    PostRepository postRepository, PostService postService, FeedService feedService) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.feedService = feedService;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testFeedMergesPushedAndPulledPosts() {
+
+        User reader = createUser();
+        userService.createUser(reader).block();
+        User otherReader = createUser();
+        userService.createUser(otherReader).block();
+        User regularAuthor = createUser();   // single follower, posts are pushed
+        userService.createUser(regularAuthor).block();
+        User popularAuthor = createUser();   // two followers, posts are pulled on read
+        userService.createUser(popularAuthor).block();
+        User strangerAuthor = createUser();  // not followed by the reader
+        userService.createUser(strangerAuthor).block();
+
+        userService.followUser(regularAuthor.getId(), reader.getId()).block();
+        userService.followUser(popularAuthor.getId(), reader.getId()).block();
+        userService.followUser(popularAuthor.getId(), otherReader.getId()).block();
+
+        Post post1 = createPost(regularAuthor);
+        postService.createPost(post1).block();
+        Post post2 = createPost(popularAuthor);
+        postService.createPost(post2).block();
+        Post post3 = createPost(strangerAuthor);
+        postService.createPost(post3).block();
+
+        // materializes the reader's timeline
+        StepVerifier.create(feedService.getFeed(reader.getId(), null, 10))
+                .expectNextMatches(post -> post.getId().equals(post2.getId()))
+                .expectNextMatches(post -> post.getId().equals(post1.getId()))
+                .verifyComplete();
+
+        // pushed into the already materialized timeline
+        Post post4 = createPost(regularAuthor);
+        postService.createPost(post4).block();
+        Post post5 = createPost(popularAuthor);
+        postService.createPost(post5).block();
+
+        Flux<PostDto> firstPage = feedService.getFeed(reader.getId(), null, 2);
+        StepVerifier.create(firstPage)
+                .expectNextMatches(post -> post.getId().equals(post5.getId()))
+                .expectNextMatches(post -> post.getId().equals(post4.getId()))
+                .verifyComplete();
+
+        Flux<PostDto> secondPage = feedService.getFeed(reader.getId(), post4.getId(), 2);
+        StepVerifier.create(secondPage)
+                .expectNextMatches(post -> post.getId().equals(post2.getId()))
+                .expectNextMatches(post -> post.getId().equals(post1.getId()))
+                .verifyComplete();
+
+        StepVerifier.create(feedService.getFeed(otherReader.getId(), null, 10))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        StepVerifier.create(feedService.getFeed(strangerAuthor.getId(), null, 10))
+                .expectNextCount(0)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFeedIsRebuiltAfterUnfollow() {
+
+        User reader = createUser();
+        userService.createUser(reader).block();
+        User author = createUser();
+        userService.createUser(author).block();
+
+        userService.followUser(author.getId(), reader.getId()).block();
+        postService.createPost(createPost(author)).block();
+
+        StepVerifier.create(feedService.getFeed(reader.getId(), null, 10))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        userService.unfollowUser(author.getId(), reader.getId()).block();
+
+        StepVerifier.create(feedService.getFeed(reader.getId(), null, 10))
+                .expectNextCount(0)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFeedPagesPastTheTimelineCapacity() {
+
+        User reader = createUser();
+        userService.createUser(reader).block();
+        User author = createUser();
+        userService.createUser(author).block();
+        userService.followUser(author.getId(), reader.getId()).block();
+
+        List<Long> postIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Post post = createPost(author);
+            postService.createPost(post).block();
+            postIds.add(0, post.getId());
+        }
+        // materialized with the 3 newest posts, the next one pushed evicts the oldest kept
+        feedService.getFeed(reader.getId(), null, 1).blockLast();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        postIds.add(0, post.getId());
+
+        List<Long> readPostIds = new ArrayList<>();
+        Long after = null;
+        List<PostDto> page;
+        do {
+            page = feedService.getFeed(reader.getId(), after, 2).collectList().block();
+            assertNotNull(page);
+            page.forEach(readPost -> readPostIds.add(readPost.getId()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (!page.isEmpty());
+        assertEquals(postIds, readPostIds);
+    }
+
+    private void  clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
@@ -0,0 +1,180 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.createUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class FollowerGraphServiceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FollowerGraphServiceTest.class);
+
+    private final UserService userService;
+    private final FollowerGraphService followerGraphService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    FollowerGraphServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                             LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                             PostRepository postRepository, FollowerGraphService followerGraphService,
+                             JdbcTemplate jdbcTemplate) {
+
+        this.userService = userService;
+        this.followerGraphService = followerGraphService;
+        this.jdbcTemplate = jdbcTemplate;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testFollowQueries() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User otherUser = createUser();
+        userService.createUser(otherUser).block();
+        User follower1 = createUser();
+        userService.createUser(follower1).block();
+        User follower2 = createUser();
+        userService.createUser(follower2).block();
+
+        userService.followUser(user.getId(), follower1.getId()).block();
+        userService.followUser(user.getId(), follower2.getId()).block();
+        userService.followUser(otherUser.getId(), follower2.getId()).block();
+
+        StepVerifier.create(userService.isFollowing(user.getId(), follower1.getId()))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(userService.isFollowing(follower1.getId(), user.getId()))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(userService.getMutualFollowerIds(user.getId(), otherUser.getId()))
+                .expectNext(follower2.getId())
+                .verifyComplete();
+        assertEquals(2, followerGraphService.getFollowerCount(user.getId()));
+        assertEquals(2, followerGraphService.getFollowingCount(follower2.getId()));
+
+        userService.unfollowUser(user.getId(), follower2.getId()).block();
+
+        assertFalse(followerGraphService.isFollowing(user.getId(), follower2.getId()));
+        assertEquals(1, followerGraphService.getFollowerCount(user.getId()));
+        assertEquals(1, followerGraphService.getFollowingCount(follower2.getId()));
+        assertEquals(0, followerGraphService.getMutualFollowers(user.getId(), otherUser.getId()).length);
+
+        // not a pass/fail benchmark
+        int checks = 1_000_000;
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < checks; i++) {
+            if (followerGraphService.isFollowing(user.getId(), follower1.getId())) {
+                found++;
+            }
+        }
+        assertEquals(checks, found);
+        log.info("Follow check took {} ns on average", (System.nanoTime() - start) / checks);
+    }
+
+    @Test
+    public void testSnapshotRestore(@TempDir Path snapshotDir) throws Exception {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User follower = createUser();
+        userService.createUser(follower).block();
+        userService.followUser(user.getId(), follower.getId()).block();
+
+        Path snapshotPath = snapshotDir.resolve("follower-graph.bin");
+        FollowerGraphService savedGraph = new FollowerGraphService(jdbcTemplate, snapshotPath.toString());
+        savedGraph.load();
+        savedGraph.saveOnShutdown();
+        assertTrue(Files.exists(snapshotPath));
+
+        FollowerGraphService restoredGraph = new FollowerGraphService(jdbcTemplate, snapshotPath.toString());
+        restoredGraph.load();
+        assertTrue(restoredGraph.isFollowing(user.getId(), follower.getId()));
+        assertArrayEquals(savedGraph.getFollowing(follower.getId()), restoredGraph.getFollowing(follower.getId()));
+
+        // the table changed since the snapshot, so it's rebuilt from the table
+        userService.unfollowUser(user.getId(), follower.getId()).block();
+        FollowerGraphService rebuiltGraph = new FollowerGraphService(jdbcTemplate, snapshotPath.toString());
+        rebuiltGraph.load();
+        assertFalse(rebuiltGraph.isFollowing(user.getId(), follower.getId()));
+    }
+
+    @Test
+    public void testSnapshotOfAsManyOtherFollowsIsIgnored(@TempDir Path snapshotDir) {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User otherUser = createUser();
+        userService.createUser(otherUser).block();
+        User follower = createUser();
+        userService.createUser(follower).block();
+        userService.followUser(user.getId(), follower.getId()).block();
+
+        Path snapshotPath = snapshotDir.resolve("follower-graph.bin");
+        FollowerGraphService savedGraph = new FollowerGraphService(jdbcTemplate, snapshotPath.toString());
+        savedGraph.load();
+        savedGraph.saveOnShutdown();
+
+        // the table still has a single follow, but not the one in the snapshot
+        userService.unfollowUser(user.getId(), follower.getId()).block();
+        userService.followUser(otherUser.getId(), follower.getId()).block();
+        FollowerGraphService rebuiltGraph = new FollowerGraphService(jdbcTemplate, snapshotPath.toString());
+        rebuiltGraph.load();
+        assertFalse(rebuiltGraph.isFollowing(user.getId(), follower.getId()));
+        assertTrue(rebuiltGraph.isFollowing(otherUser.getId(), follower.getId()));
+    }
+
+    @Test
+    public void testDuplicateFollowsAreLoadedOnce() {
+
+        FollowerGraphService graph = new FollowerGraphService(jdbcTemplate, "");
+        graph.loadEdges(new long[]{1, 1, 2}, new long[]{3, 3, 3});
+
+        assertEquals(1, graph.getFollowerCount(1));
+        assertArrayEquals(new long[]{1, 2}, graph.getFollowing(3));
+    }
+
+    private void  clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
@@ -0,0 +1,155 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "communiverse.likes.write-behind.enabled=true",
+        "communiverse.likes.write-behind.capacity=3",
+        "communiverse.likes.write-behind.batch-size=100",
+        "communiverse.likes.write-behind.flush-interval-ms=3600000",
+        "communiverse.likes.write-behind.offer-timeout-ms=5000"
+})
+public class LikeIngestionServiceTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final LikeService likeService;
+    private final LikeIngestionService likeIngestionService;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    LikeIngestionServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                             LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                             PostRepository postRepository, PostService postService, LikeService likeService,
+                             LikeIngestionService likeIngestionService) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.likeService = likeService;
+        this.likeIngestionService = likeIngestionService;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testLikeUnlikePairsAreCollapsed() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User liker = createUser();
+        userService.createUser(liker).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+
+        StepVerifier.create(likeService.likePost(author.getId(), post.getId())).verifyComplete();
+        StepVerifier.create(likeService.likePost(liker.getId(), post.getId())).verifyComplete();
+        StepVerifier.create(likeService.unlikePost(author.getId(), post.getId())).verifyComplete();
+        StepVerifier.create(likeService.likePost(liker.getId(), post.getId())).verifyComplete();
+
+        assertEquals(2, likeIngestionService.getPendingCount(), "One pending command per (user, post)");
+        assertEquals(0, likeOnPostRepository.findLikesByPostId(post.getId()).size(), "Nothing written before the flush");
+
+        likeIngestionService.flush();
+
+        assertEquals(0, likeIngestionService.getPendingCount());
+        StepVerifier.create(likeService.getPostLikes(post.getId()))
+                .expectNextMatches(like -> like.getUser().getId().equals(liker.getId()))
+                .verifyComplete();
+        StepVerifier.create(likeService.getPostLikeCount(post.getId()))
+                .expectNext(1L)
+                .verifyComplete();
+
+        // liking again is a no-op
+        StepVerifier.create(likeService.likePost(liker.getId(), post.getId())).verifyComplete();
+        likeIngestionService.flush();
+        StepVerifier.create(likeService.getPostLikeCount(post.getId()))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFullQueueIsFlushedToMakeRoom() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Post post = createPost(author);
+            postService.createPost(post).block();
+            posts.add(post);
+        }
+
+        for (Post post : posts) {
+            StepVerifier.create(likeService.likePost(author.getId(), post.getId())).verifyComplete();
+            assertTrue(likeIngestionService.getPendingCount() <= 3, "Queue capacity exceeded");
+        }
+        likeIngestionService.flush();
+
+        StepVerifier.create(likeService.getUserPostLikes(author.getId()))
+                .expectNextCount(posts.size())
+                .verifyComplete();
+    }
+
+    @Test
+    public void testLikesOfMissingPostsAreDropped() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post post = createPost(user);
+        postService.createPost(post).block();
+
+        StepVerifier.create(likeService.likePost(user.getId(), -1L)).verifyComplete();
+        StepVerifier.create(likeService.likePost(user.getId(), post.getId())).verifyComplete();
+        likeIngestionService.flush();
+
+        StepVerifier.create(likeService.getUserPostLikes(user.getId()))
+                .expectNextCount(1)
+                .verifyComplete();
+        // the failed batch is rolled back, so the like written again one by one is counted
+        StepVerifier.create(likeService.getPostLikeCount(post.getId()))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    private void  clearTestData() {
+        likeIngestionService.flush();
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
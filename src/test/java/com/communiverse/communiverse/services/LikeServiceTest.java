@@ -21,7 +21,14 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
 import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static com.communiverse.communiverse.utils.SqlStatementCountUtils.assertStatementCount;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ActiveProfiles("test")
 @ExtendWith(SpringExtension.class)
@@ -63,31 +70,31 @@ public class LikeServiceTest {
     public void testLikeUnlikePost() {
 
         User user1 = createUser();
-        userService.createUser(user1);
+        userService.createUser(user1).block();
         User user2 = createUser();
-        userService.createUser(user2);
+        userService.createUser(user2).block();
         User user3 = createUser();
-        userService.createUser(user3);
+        userService.createUser(user3).block();
 
         user1 = userService.getUserEagerlyById(user1.getId()).block();
         assert user1 != null;
 
         Post testedPost = createPost(user1);
-        postService.createPost(testedPost);
+        postService.createPost(testedPost).block();
 
-        Mono<Like> likeMono1 = likeService.likePost(user1.getId(), testedPost.getId());
+        Mono<Void> likeMono1 = likeService.likePost(user1.getId(), testedPost.getId());
         StepVerifier.create(likeMono1)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
-        Mono<Like> likeMono2 = likeService.likePost(user2.getId(), testedPost.getId());
+        Mono<Void> likeMono2 = likeService.likePost(user2.getId(), testedPost.getId());
         StepVerifier.create(likeMono2)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
-        Mono<Like> likeMono3 = likeService.likePost(user3.getId(), testedPost.getId());
+        Mono<Void> likeMono3 = likeService.likePost(user3.getId(), testedPost.getId());
         StepVerifier.create(likeMono3)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
         Mono<Post> postMono = postService.findPostById(testedPost.getId());
@@ -130,11 +137,11 @@ public class LikeServiceTest {
     public void testLikeUnlikeComment() {
 
         User user1 = createUser();
-        userService.createUser(user1);
+        userService.createUser(user1).block();
         User user2 = createUser();
-        userService.createUser(user2);
+        userService.createUser(user2).block();
         User user3 = createUser();
-        userService.createUser(user3);
+        userService.createUser(user3).block();
 
         user1 = userService.getUserEagerlyById(user1.getId()).block();
         assert user1 != null;
@@ -144,43 +151,43 @@ public class LikeServiceTest {
         assert user3 != null;
 
         Post testedPost = createPost(user1);
-        postService.createPost(testedPost);
+        postService.createPost(testedPost).block();
         testedPost = postService.findPostById(testedPost.getId()).block();
         assert testedPost != null;
 
         Comment testedComment = createComment(user2, testedPost);
-        commentService.createComment(testedComment);
+        commentService.createComment(testedComment).block();
         testedComment = commentService.getCommentById(testedComment.getId()).block();
         assert testedComment != null;
 
         Comment testedReply = createCommentReply(user3, testedComment);
-        commentService.createComment(testedReply);
+        commentService.createComment(testedReply).block();
         testedReply = commentService.getCommentById(testedReply.getId()).block();
         assert testedReply != null;
 
-        Mono<Like> likeMono1 = likeService.likeComment(user1.getId(), testedComment.getId());
+        Mono<Void> likeMono1 = likeService.likeComment(user1.getId(), testedComment.getId());
         StepVerifier.create(likeMono1)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
-        Mono<Like> likeMono2 = likeService.likeComment(user2.getId(), testedReply.getId());
+        Mono<Void> likeMono2 = likeService.likeComment(user2.getId(), testedReply.getId());
         StepVerifier.create(likeMono2)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
-        Mono<Like> likeMono3 = likeService.likeComment(user3.getId(), testedComment.getId());
+        Mono<Void> likeMono3 = likeService.likeComment(user3.getId(), testedComment.getId());
         StepVerifier.create(likeMono3)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
-        Mono<Like> likeMono4 = likeService.likeComment(user3.getId(), testedReply.getId());
+        Mono<Void> likeMono4 = likeService.likeComment(user3.getId(), testedReply.getId());
         StepVerifier.create(likeMono4)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
-        Mono<Like> likeMono5 = likeService.likeComment(user1.getId(), testedReply.getId());
+        Mono<Void> likeMono5 = likeService.likeComment(user1.getId(), testedReply.getId());
         StepVerifier.create(likeMono5)
-                .expectNextCount(1)
+                .expectNextCount(0) // No data emission expected for the Void
                 .verifyComplete();
 
         Mono<Comment> commentMono = commentService.getCommentById(testedComment.getId());
@@ -234,6 +241,102 @@ public class LikeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testLikeUnlikeIsIdempotent() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post testedPost = createPost(user);
+        postService.createPost(testedPost).block();
+
+        likeService.likePost(user.getId(), testedPost.getId()).block();
+        likeService.likePost(user.getId(), testedPost.getId()).block();
+
+        StepVerifier.create(likeService.getPostLikes(testedPost.getId()))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(likeService.getPostLikeCount(testedPost.getId()))
+                .expectNext(1L)
+                .verifyComplete();
+
+        likeService.unlikePost(user.getId(), testedPost.getId()).block();
+        likeService.unlikePost(user.getId(), testedPost.getId()).block();
+
+        StepVerifier.create(likeService.getPostLikes(testedPost.getId()))
+                .expectNextCount(0)
+                .verifyComplete();
+        StepVerifier.create(likeService.getPostLikeCount(testedPost.getId()))
+                .expectNext(0L)
+                .verifyComplete();
+
+        StepVerifier.create(likeService.likePost(user.getId(), -1L))
+                .expectErrorMessage("User " + user.getId() + " or post -1 not found")
+                .verify();
+    }
+
+    @Test
+    public void testConcurrentLikesOfOnePost() throws InterruptedException {
+
+        int usersCount = 20;
+        int threadsCount = 16;
+        int likesPerThread = 100;
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post testedPost = createPost(author);
+        postService.createPost(testedPost).block();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < usersCount; i++) {
+            User user = createUser();
+            userService.createUser(user).block();
+            userIds.add(user.getId());
+        }
+
+        // every thread likes the post on behalf of all users, over and over
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadsCount; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < likesPerThread; i++) {
+                    likeService.likePost(userIds.get((offset + i) % usersCount), testedPost.getId()).block();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            assertDoesNotThrow(() -> future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        StepVerifier.create(likeService.getPostLikes(testedPost.getId()))
+                .expectNextCount(usersCount)
+                .verifyComplete();
+        StepVerifier.create(likeService.getPostLikeCount(testedPost.getId()))
+                .expectNext((long) usersCount)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testLikeUnlikePostStatements() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post post = createPost(user);
+        postService.createPost(post).block();
+
+        // a single insert, the user and the post aren't loaded
+        assertStatementCount(1, () -> likeService.likePost(user.getId(), post.getId()).block());
+        // the insert of an existing like inserts nothing
+        assertStatementCount(1, () -> likeService.likePost(user.getId(), post.getId()).block());
+        assertStatementCount(1, () -> likeService.unlikePost(user.getId(), post.getId()).block());
+        assertStatementCount(1, () -> likeService.unlikePost(user.getId(), post.getId()).block());
+    }
+
     @BeforeEach
     void setUp() {
         setupLogger();
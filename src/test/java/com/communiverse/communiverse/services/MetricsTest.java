@@ -0,0 +1,135 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.MethodMetricsAspect;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import reactor.test.StepVerifier;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.createPost;
+import static com.communiverse.communiverse.utils.CreateDataUtils.createUser;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+public class MetricsTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final LikeService likeService;
+    private final MeterRegistry meterRegistry;
+    private final MockMvc mockMvc;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+
+    @Autowired
+    MetricsTest(UserService userService, PostService postService, LikeService likeService, MeterRegistry meterRegistry,
+                MockMvc mockMvc, UserRepository userRepository, PostRepository postRepository,
+                LikeOnPostRepository likeOnPostRepository) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.likeService = likeService;
+        this.meterRegistry = meterRegistry;
+        this.mockMvc = mockMvc;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        likeOnPostRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testServiceAndRepositoryMetrics() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post post = createPost(user);
+        postService.createPost(post).block();
+
+        long getUserCalls = serviceTimerCount("UserService", "getUserDtoById", "success");
+        StepVerifier.create(userService.getUserDtoById(user.getId()))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(getUserCalls + 1, serviceTimerCount("UserService", "getUserDtoById", "success"));
+
+        double updateErrors = serviceErrorCount("updateUser");
+        StepVerifier.create(userService.updateUser(-1L, createUser()))
+                .expectErrorMessage("No such user with id -1")
+                .verify();
+        assertEquals(updateErrors + 1, serviceErrorCount("updateUser"));
+        assertTrue(meterRegistry.get(MethodMetricsAspect.SERVICE_METRIC)
+                .tags("class", "UserService", "method", "updateUser", "outcome", "error", "exception", "RuntimeException")
+                .timer().count() > 0);
+
+        // the reactive repositories by the aspect, the JPA ones by Spring Data
+        likeService.likePost(user.getId(), post.getId()).block();
+        assertTrue(meterRegistry.get(MethodMetricsAspect.REPOSITORY_METRIC)
+                .tags("method", "insertPostLike", "outcome", "success").timer().count() > 0);
+        assertTrue(meterRegistry.get("spring.data.repository.invocations")
+                .tags("repository", "UserRepository", "method", "save").timer().count() > 0);
+    }
+
+    @Test
+    public void testHibernateAndPoolMetrics() throws Exception {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        userService.getUserById(user.getId()).block();
+
+        FunctionCounter preparedStatements = meterRegistry.get("hibernate.statements").tag("status", "prepared")
+                .functionCounter();
+        assertTrue(preparedStatements.count() > 0);
+        assertNotNull(meterRegistry.get("hibernate.entities.loads").functionCounter());
+        assertNotNull(meterRegistry.get("hibernate.collections.fetches").functionCounter());
+        assertNotNull(meterRegistry.get("hibernate.second.level.cache.requests").tag("result", "hit").functionCounter());
+        assertNotNull(meterRegistry.get("hikaricp.connections.active").gauge());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(Matchers.containsString("communiverse_service_seconds_bucket")))
+                .andExpect(content().string(Matchers.containsString("hibernate_statements_total")))
+                .andExpect(content().string(Matchers.containsString("hikaricp_connections_active")));
+    }
+
+    private long serviceTimerCount(String className, String method, String outcome) {
+        Timer timer = meterRegistry.find(MethodMetricsAspect.SERVICE_METRIC)
+                .tags("class", className, "method", method, "outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double serviceErrorCount(String method) {
+        Counter counter = meterRegistry.find(MethodMetricsAspect.SERVICE_METRIC + ".errors")
+                .tags("class", "UserService", "method", method).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
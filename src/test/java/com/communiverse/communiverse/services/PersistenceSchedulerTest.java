@@ -0,0 +1,110 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.createUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class PersistenceSchedulerTest {
+
+    private final UserService userService;
+    private final FeedService feedService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final MeterRegistry meterRegistry;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    PersistenceSchedulerTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                             LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                             PostRepository postRepository, FeedService feedService,
+                             PersistenceScheduler persistenceScheduler, MeterRegistry meterRegistry) {
+
+        this.userService = userService;
+        this.feedService = feedService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.meterRegistry = meterRegistry;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testRepositoryAccessIsDeferredToSubscription() {
+
+        User user = createUser();
+        Mono<User> userMono = userService.createUser(user);
+        assertEquals(0, userRepository.count());
+
+        StepVerifier.create(userMono)
+                .expectNextMatches(savedUser -> savedUser.getId() != null)
+                .verifyComplete();
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    public void testRepositoryAccessRunsOnVirtualThreads() {
+
+        StepVerifier.create(persistenceScheduler.mono(Thread::currentThread))
+                .expectNextMatches(thread -> thread.isVirtual() && thread.getName().startsWith("persistence-"))
+                .verifyComplete();
+
+        StepVerifier.create(persistenceScheduler.transactional(() -> userRepository.count()))
+                .expectNext(0L)
+                .verifyComplete();
+
+        assertFalse(meterRegistry.find(PersistenceScheduler.METRICS_PREFIX + ".scheduler.tasks.completed")
+                .timers().isEmpty());
+    }
+
+    @Test
+    public void testCountsAndFeedsAreReadOnVirtualThreads() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+
+        StepVerifier.create(userService.getFollowerCount(user.getId()).map(count -> Thread.currentThread()))
+                .expectNextMatches(thread -> thread.isVirtual() && thread.getName().startsWith("persistence-"))
+                .verifyComplete();
+
+        // the feed of a user following nobody is empty, it completes on the thread that read it
+        StepVerifier.create(feedService.getFeed(user.getId(), null, 10).then(Mono.fromSupplier(Thread::currentThread)))
+                .expectNextMatches(thread -> thread.isVirtual() && thread.getName().startsWith("persistence-"))
+                .verifyComplete();
+    }
+
+    private void  clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
@@ -3,15 +3,47 @@ package com.communiverse.communiverse.services;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import com.communiverse.communiverse.dto.PostDetailsDto;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
 import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.utils.PagingUtils;
+import com.communiverse.communiverse.utils.QueryStatisticsUtils.QueryStatistics;
+import com.communiverse.communiverse.utils.ReadThroughCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static com.communiverse.communiverse.utils.QueryStatisticsUtils.countSelects;
+import static com.communiverse.communiverse.utils.SqlStatementCountUtils.assertStatementCount;
+import static org.junit.jupiter.api.Assertions.*;
 
 @ActiveProfiles("test")
 @ExtendWith(SpringExtension.class)
@@ -28,6 +60,9 @@ public class PostServiceTest {
     private final CommentRepository commentRepository;
     private final LikeOnPostRepository likeOnPostRepository;
     private final LikeOnCommentRepository likeOnCommentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ReadThroughCache<PostDto> postCache;
 
     private ListAppender<ILoggingEvent> listAppender;
     private Logger logger;
@@ -35,7 +70,9 @@ public class PostServiceTest {
     @Autowired
     PostServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository, CommentService commentService,
                     LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
-                    PostRepository postRepository, PostService postService, LikeService likeService) {
+                    PostRepository postRepository, PostService postService, LikeService likeService,
+                    JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+                    ReadThroughCache<PostDto> postCache) {
 
         this.userService = userService;
         this.postService = postService;
@@ -47,6 +84,9 @@ public class PostServiceTest {
         this.commentRepository = commentRepository;
         this.likeOnCommentRepository = likeOnCommentRepository;
         this.likeOnPostRepository = likeOnPostRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.postCache = postCache;
     }
 
     @BeforeEach
@@ -59,6 +99,220 @@ public class PostServiceTest {
         clearTestData();
     }
 
+    @Test
+    public void testGetPostsPage() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+
+        // two posts share the same creation time to exercise the id tie-breaker of the cursor
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Post oldestPost = createPost(user);
+        oldestPost.setCreated(now.minusMinutes(2));
+        postService.createPost(oldestPost).block();
+        Post middlePost1 = createPost(user);
+        middlePost1.setCreated(now.minusMinutes(1));
+        postService.createPost(middlePost1).block();
+        Post middlePost2 = createPost(user);
+        middlePost2.setCreated(now.minusMinutes(1));
+        postService.createPost(middlePost2).block();
+        Post newestPost = createPost(user);
+        newestPost.setCreated(now);
+        postService.createPost(newestPost).block();
+
+        List<PostDto> firstPage = postService.getPostsPage(null, 2).collectList().block();
+        assert firstPage != null;
+        assertEquals(2, firstPage.size());
+        assertEquals(newestPost.getId(), firstPage.get(0).getId());
+        assertEquals(middlePost2.getId(), firstPage.get(1).getId());
+
+        // the cursor round-trips through its text form, and still pages once its post is deleted
+        PagingUtils.Cursor cursor = PagingUtils.Cursor.parse(
+                new PagingUtils.Cursor(firstPage.get(1).getCreated(), firstPage.get(1).getId()).toString());
+        postService.deletePost(middlePost2.getId()).block();
+        StepVerifier.create(postService.getPostsPage(cursor, 2))
+                .expectNextMatches(post -> post.getId().equals(middlePost1.getId()))
+                .expectNextMatches(post -> post.getId().equals(oldestPost.getId()))
+                .verifyComplete();
+
+        StepVerifier.create(postService.getPostsPage(new PagingUtils.Cursor(oldestPost.getCreated(), oldestPost.getId()), 2))
+                .expectNextCount(0)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testStreamAllPosts() {
+
+        final int NUMBER_OF_POSTS = 2 * PagingUtils.STREAM_CHUNK_SIZE + 200;
+
+        User user = createUser();
+        userService.createUser(user).block();
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate("INSERT INTO post (title, content, user_id, created, modified) VALUES (?, ?, ?, ?, ?)",
+                IntStream.range(0, NUMBER_OF_POSTS)
+                        .mapToObj(i -> new Object[]{"title " + i, "content " + i, user.getId(),
+                                Timestamp.valueOf(now), Timestamp.valueOf(now)})
+                        .toList());
+
+        // a slow client reading a few posts only costs the chunks read ahead of it
+        QueryStatistics firstPosts = countSelects(jdbcTemplate, () -> StepVerifier.create(postService.streamAllPosts(), 3)
+                .expectNextCount(3)
+                .thenCancel()
+                .verify());
+        assertTrue(firstPosts.statements() <= 2);
+
+        AtomicReference<List<PostDto>> posts = new AtomicReference<>();
+        QueryStatistics allPosts = countSelects(jdbcTemplate,
+                () -> posts.set(postService.streamAllPosts().collectList().block()));
+        assertEquals(NUMBER_OF_POSTS, posts.get().size());
+        assertEquals(posts.get().stream().map(PostDto::getId).sorted().toList(),
+                posts.get().stream().map(PostDto::getId).toList());
+        assertEquals(3, allPosts.statements());
+    }
+
+    @Test
+    public void testFetchPlans() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        for (int i = 0; i < 3; i++) {
+            User commenter = createUser();
+            userService.createUser(commenter).block();
+            commentService.createComment(createComment(commenter, post)).block();
+            likeService.likePost(commenter.getId(), post.getId()).block();
+        }
+
+        // statements per plan, constant whatever the number of comments and likes
+        Map<Set<String>, Long> expectedStatements = new LinkedHashMap<>();
+        expectedStatements.put(Set.of(), 1L);
+        expectedStatements.put(Set.of(PostDetailsDto.AUTHOR), 1L);
+        expectedStatements.put(Set.of(PostDetailsDto.COMMENTS), 2L);
+        expectedStatements.put(Set.of(PostDetailsDto.LIKES), 2L);
+        expectedStatements.put(Set.of(PostDetailsDto.COMMENTS, PostDetailsDto.LIKES), 3L);
+        expectedStatements.put(Set.of(PostDetailsDto.AUTHOR, PostDetailsDto.COMMENTS, PostDetailsDto.LIKES), 3L);
+
+        expectedStatements.forEach((expand, statements) -> {
+            AtomicReference<PostDetailsDto> details = new AtomicReference<>();
+            // cold caches, the post itself is loaded too
+            entityManagerFactory.getCache().evictAll();
+            postCache.invalidateAll();
+            QueryStatistics statistics = countSelects(jdbcTemplate,
+                    () -> details.set(postService.getPostDetails(post.getId(), expand).block()));
+
+            assertEquals(statements, statistics.statements(), "Statements for " + expand);
+            assertEquals(post.getId(), details.get().getPost().getId());
+            assertEquals(author.getUserName(), details.get().getPost().getUserName());
+            assertEquals(expand.contains(PostDetailsDto.AUTHOR), details.get().getAuthor() != null);
+            assertEquals(expand.contains(PostDetailsDto.COMMENTS) ? 3 : -1,
+                    details.get().getComments() == null ? -1 : details.get().getComments().size());
+            assertEquals(expand.contains(PostDetailsDto.LIKES) ? 3 : -1,
+                    details.get().getLikes() == null ? -1 : details.get().getLikes().size());
+        });
+
+        // counted on the JDBC connections instead of the Hibernate statistics, the L2 cache evicted before each fetch
+        expectedStatements.forEach((expand, statements) -> {
+            entityManagerFactory.getCache().evictAll();
+            postCache.invalidateAll();
+            assertStatementCount(statements, () -> postService.getPostDetails(post.getId(), expand).block());
+        });
+
+        StepVerifier.create(postService.getPostDetails(post.getId(), Set.of("followers")))
+                .expectErrorMatches(e -> e.getMessage().startsWith("Unknown expand followers"))
+                .verify();
+    }
+
+    @Test
+    public void testHotPostCache() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        Comment comment = createComment(author, post);
+        commentService.createComment(comment).block();
+
+        // concurrent misses share a single load
+        long loadStatements = countSelects(jdbcTemplate, () -> postService.getPostDetails(post.getId(), Set.of()).block()).statements();
+        postCache.invalidate(post.getId());
+        AtomicReference<List<PostDetailsDto>> posts = new AtomicReference<>();
+        QueryStatistics statistics = countSelects(jdbcTemplate, () -> posts.set(Flux.range(0, 100)
+                .flatMap(i -> postService.getPostDetails(post.getId(), Set.of()), 100)
+                .collectList()
+                .block()));
+        assertEquals(loadStatements, statistics.statements());
+        assertEquals(100, posts.get().size());
+        assertTrue(posts.get().stream().allMatch(details -> details.getPost() == posts.get().get(0).getPost()));
+        assertEquals(0, countSelects(jdbcTemplate, () -> postService.getPostDetails(post.getId(), Set.of()).block()).statements());
+
+        // invalidated by the post mutations
+        post.setTitle("updated title");
+        postService.updatePost(post.getId(), post).block();
+        StepVerifier.create(postService.getPostDetails(post.getId(), Set.of()))
+                .expectNextMatches(details -> details.getPost().getTitle().equals("updated title"))
+                .verifyComplete();
+        // along with the comments deleted with the post
+        commentService.getCommentDetails(comment.getId(), Set.of()).block();
+        postService.deletePost(post.getId()).block();
+        StepVerifier.create(postService.getPostDetails(post.getId(), Set.of()))
+                .expectErrorMatches(e -> e.getMessage().equals("Post not found " + post.getId()))
+                .verify();
+        StepVerifier.create(commentService.getCommentDetails(comment.getId(), Set.of()))
+                .expectErrorMatches(e -> e.getMessage().equals("Comment not found " + comment.getId()))
+                .verify();
+    }
+
+    @Test
+    public void testHotCachesInvalidatedOnUserDelete() {
+
+        User author = createUser();
+        userService.createUser(author).block();
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        Comment comment = createComment(author, post);
+        commentService.createComment(comment).block();
+        postService.getPostDetails(post.getId(), Set.of()).block();
+        commentService.getCommentDetails(comment.getId(), Set.of()).block();
+
+        userService.deleteUser(author.getId()).block();
+        StepVerifier.create(postService.getPostDetails(post.getId(), Set.of()))
+                .expectErrorMatches(e -> e.getMessage().equals("Post not found " + post.getId()))
+                .verify();
+        StepVerifier.create(commentService.getCommentDetails(comment.getId(), Set.of()))
+                .expectErrorMatches(e -> e.getMessage().equals("Comment not found " + comment.getId()))
+                .verify();
+    }
+
+    @Test
+    public void testReadThroughCacheRefreshAhead() throws InterruptedException {
+
+        AtomicInteger loads = new AtomicInteger();
+        ReadThroughCache<Integer> cache = new ReadThroughCache<>("test",
+                id -> Mono.fromCallable(loads::incrementAndGet).delaySubscription(Duration.ofMillis(20)),
+                10, Duration.ofMillis(50), Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+        assertEquals(1, cache.get(1L).block());
+        Thread.sleep(100);
+        // due for a refresh, the current value is served while it's reloaded
+        assertEquals(1, cache.get(1L).block());
+        // the reloaded value replaces it once the reload is done
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.get(1L).block() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, cache.get(1L).block());
+
+        // empty loads aren't cached
+        AtomicInteger emptyLoads = new AtomicInteger();
+        ReadThroughCache<Integer> emptyCache = new ReadThroughCache<>("empty",
+                id -> Mono.fromRunnable(emptyLoads::incrementAndGet), 10, Duration.ofMinutes(1), Duration.ofMinutes(1),
+                new SimpleMeterRegistry());
+        assertNull(emptyCache.get(1L).block());
+        assertNull(emptyCache.get(1L).block());
+        assertEquals(2, emptyLoads.get());
+    }
+
     private void setupLogger() {
         logger = (Logger) LoggerFactory.getLogger(UserService.class);
         listAppender = new ListAppender<>();
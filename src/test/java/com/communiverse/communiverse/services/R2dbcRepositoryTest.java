@@ -0,0 +1,210 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.model.Comment;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.repo.reactive.JpaReactivePostRepository;
+import com.communiverse.communiverse.repo.reactive.R2dbcReactivePostRepository;
+import com.communiverse.communiverse.repo.reactive.ReactivePostRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+@ActiveProfiles({"test", "r2dbc"})
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class R2dbcRepositoryTest {
+
+    private static final Logger log = LoggerFactory.getLogger(R2dbcRepositoryTest.class);
+
+    private final UserService userService;
+    private final PostService postService;
+    private final CommentService commentService;
+    private final LikeService likeService;
+    private final ReactivePostRepository reactivePostRepository;
+    private final PersistenceScheduler persistenceScheduler;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    R2dbcRepositoryTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                        CommentService commentService, LikeOnCommentRepository likeOnCommentRepository,
+                        LikeOnPostRepository likeOnPostRepository, PostRepository postRepository,
+                        PostService postService, LikeService likeService, ReactivePostRepository reactivePostRepository,
+                        PersistenceScheduler persistenceScheduler) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.likeService = likeService;
+        this.reactivePostRepository = reactivePostRepository;
+        this.persistenceScheduler = persistenceScheduler;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testReadModelsMatchJpa() {
+
+        assertInstanceOf(R2dbcReactivePostRepository.class, reactivePostRepository);
+
+        User author = createUser();
+        userService.createUser(author).block();
+        User follower = createUser();
+        userService.createUser(follower).block();
+        userService.followUser(author.getId(), follower.getId()).block();
+
+        Post post = createPost(author);
+        postService.createPost(post).block();
+        Comment comment = createComment(follower, post);
+        commentService.createComment(comment).block();
+        Comment reply = createCommentReply(author, comment);
+        commentService.createComment(reply).block();
+
+        StepVerifier.create(postService.getPostDtoById(post.getId()))
+                .expectNextMatches(dto -> dto.toString().equals(postRepository.findDtoById(post.getId()).orElseThrow().toString()))
+                .verifyComplete();
+        StepVerifier.create(postService.getPostDtoById(-1L))
+                .expectErrorMessage("Post not found -1")
+                .verify();
+        StepVerifier.create(postService.getPostsPage(null, 10))
+                .expectNextMatches(dto -> dto.getId().equals(post.getId()))
+                .verifyComplete();
+
+        StepVerifier.create(userService.getUserDtoById(author.getId()))
+                .expectNextMatches(dto -> dto.toString().equals(userRepository.findDtoById(author.getId()).orElseThrow().toString()))
+                .verifyComplete();
+        StepVerifier.create(userService.getUsersPage(author.getId(), 10))
+                .expectNextMatches(dto -> dto.getId().equals(follower.getId()))
+                .verifyComplete();
+        StepVerifier.create(userService.getUserFollowerDtos(author.getId()))
+                .expectNextMatches(dto -> dto.getId().equals(follower.getId()))
+                .verifyComplete();
+
+        StepVerifier.create(commentService.getCommentDtoById(reply.getId()))
+                .expectNextMatches(dto -> dto.toString().equals(commentRepository.findDtoById(reply.getId()).orElseThrow().toString()))
+                .verifyComplete();
+        StepVerifier.create(commentService.getPostCommentDtos(post.getId()))
+                .expectNextMatches(dto -> dto.getId().equals(comment.getId()) && dto.getParentCommentId() == null)
+                .expectNextMatches(dto -> dto.getId().equals(reply.getId()) && dto.getParentCommentId().equals(comment.getId()))
+                .verifyComplete();
+        StepVerifier.create(commentService.getPostCommentTree(post.getId(), null, 10, 0))
+                .expectNextMatches(node -> node.getComment().getId().equals(comment.getId())
+                        && node.getMoreRepliesCursor().equals(comment.getId()))
+                .verifyComplete();
+        StepVerifier.create(commentService.getPostCommentTree(post.getId(), null, 10, null))
+                .expectNextMatches(node -> node.getReplies().get(0).getComment().toString()
+                        .equals(commentRepository.findDtoById(reply.getId()).orElseThrow().toString()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testLikeUnlike() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post post = createPost(user);
+        postService.createPost(post).block();
+
+        StepVerifier.create(likeService.likePost(user.getId(), post.getId())).verifyComplete();
+        StepVerifier.create(likeService.likePost(user.getId(), post.getId())).verifyComplete();
+        assertEquals(1, likeOnPostRepository.findLikesByPostId(post.getId()).size());
+
+        StepVerifier.create(likeService.likePost(user.getId(), -1L))
+                .expectErrorMessage("User " + user.getId() + " or post -1 not found")
+                .verify();
+
+        StepVerifier.create(likeService.unlikePost(user.getId(), post.getId())).verifyComplete();
+        assertEquals(0, likeOnPostRepository.findLikesByPostId(post.getId()).size());
+        StepVerifier.create(likeService.getPostLikeCount(post.getId()))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    /**
+     * Not a pass/fail benchmark, logs the throughput of concurrent post reads through R2DBC and through JPA.
+     * JPA reads are subscribed on the bounded elastic scheduler, as they block the subscribing thread.
+     */
+    @Test
+    public void testThroughputComparedToJpa() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        List<Long> postIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Post post = createPost(user);
+            postService.createPost(post).block();
+            postIds.add(post.getId());
+        }
+
+        ReactivePostRepository jpaRepository = new JpaReactivePostRepository(postRepository, persistenceScheduler);
+        int reads = 5000;
+        int concurrency = 64;
+
+        Function<Long, Mono<PostDto>> r2dbcRead = reactivePostRepository::findDtoById;
+        Function<Long, Mono<PostDto>> jpaRead = postId -> jpaRepository.findDtoById(postId)
+                .subscribeOn(Schedulers.boundedElastic());
+
+        // warm-up
+        runReads(r2dbcRead, postIds, reads / 5, concurrency);
+        runReads(jpaRead, postIds, reads / 5, concurrency);
+
+        double r2dbcThroughput = runReads(r2dbcRead, postIds, reads, concurrency);
+        double jpaThroughput = runReads(jpaRead, postIds, reads, concurrency);
+        log.info("Post reads with concurrency {}: R2DBC {} ops/s, JPA {} ops/s",
+                concurrency, Math.round(r2dbcThroughput), Math.round(jpaThroughput));
+    }
+
+    private double runReads(Function<Long, Mono<PostDto>> read, List<Long> postIds, int reads, int concurrency) {
+        long start = System.nanoTime();
+        Long count = Flux.range(0, reads)
+                .flatMap(i -> read.apply(postIds.get(i % postIds.size())), concurrency)
+                .count()
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(reads, count);
+        return reads / seconds;
+    }
+
+    private void  clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
@@ -0,0 +1,173 @@
+package com.communiverse.communiverse.services;
+
+import com.communiverse.communiverse.config.PersistenceScheduler;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.createUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class RecommendationServiceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationServiceTest.class);
+
+    private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final PersistenceScheduler persistenceScheduler;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    RecommendationServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository,
+                              LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
+                              PostRepository postRepository, RecommendationService recommendationService,
+                              PersistenceScheduler persistenceScheduler, JdbcTemplate jdbcTemplate) {
+
+        this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.persistenceScheduler = persistenceScheduler;
+        this.jdbcTemplate = jdbcTemplate;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testRecommendations() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User followed1 = createUser();
+        userService.createUser(followed1).block();
+        User followed2 = createUser();
+        userService.createUser(followed2).block();
+        User candidate1 = createUser();
+        userService.createUser(candidate1).block();
+        User candidate2 = createUser();
+        userService.createUser(candidate2).block();
+
+        userService.followUser(followed1.getId(), user.getId()).block();
+        userService.followUser(followed2.getId(), user.getId()).block();
+        userService.followUser(candidate1.getId(), followed1.getId()).block();
+        userService.followUser(candidate1.getId(), followed2.getId()).block();
+        userService.followUser(candidate2.getId(), followed1.getId()).block();
+        // the user itself is not recommended
+        userService.followUser(user.getId(), followed2.getId()).block();
+
+        StepVerifier.create(recommendationService.getRecommendations(user.getId(), 10))
+                .expectNextMatches(recommendation -> recommendation.getUser().getId().equals(candidate1.getId())
+                        && recommendation.getMutualConnections() == 2)
+                .expectNextMatches(recommendation -> recommendation.getUser().getId().equals(candidate2.getId())
+                        && recommendation.getMutualConnections() == 1)
+                .verifyComplete();
+
+        // following a recommended user drops the cached ranking
+        userService.followUser(candidate1.getId(), user.getId()).block();
+
+        StepVerifier.create(recommendationService.getRecommendations(user.getId(), 10))
+                .expectNextMatches(recommendation -> recommendation.getUser().getId().equals(candidate2.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testRankingOnPowerLawGraph() {
+
+        // 1M follows between 100k users, followed and following users skewed towards the low ids
+        int userCount = 100_000;
+        int followCount = 1_000_000;
+        Random random = new Random(42);
+        long[] follows = new long[followCount];
+        for (int i = 0; i < followCount; i++) {
+            long userId = 1 + (long) (userCount * Math.pow(random.nextDouble(), 3));
+            long followerId = 1 + (long) (userCount * Math.pow(random.nextDouble(), 2));
+            follows[i] = userId * (userCount + 1) + followerId;
+        }
+        follows = Arrays.stream(follows)
+                .filter(follow -> follow / (userCount + 1) != follow % (userCount + 1))
+                .sorted().distinct().toArray();
+        long[] userIds = Arrays.stream(follows).map(follow -> follow / (userCount + 1)).toArray();
+        long[] followerIds = Arrays.stream(follows).map(follow -> follow % (userCount + 1)).toArray();
+
+        FollowerGraphService graph = new FollowerGraphService(jdbcTemplate, "");
+        graph.loadEdges(userIds, followerIds);
+        RecommendationService sequential =
+                new RecommendationService(graph, userRepository, persistenceScheduler, 100, 0, 0, 60_000, 1);
+        RecommendationService parallel =
+                new RecommendationService(graph, userRepository, persistenceScheduler, 100, 0, 0, 60_000, 0);
+        RecommendationService outOfTime =
+                new RecommendationService(graph, userRepository, persistenceScheduler, 100, 0, 0, 0, 0);
+        try {
+            int sampleSize = 200;
+            for (long userId = 1; userId <= 20; userId++) {
+                // warm up
+                parallel.rank(userId);
+                sequential.rank(userId);
+            }
+
+            long sequentialNanos = 0;
+            long parallelNanos = 0;
+            for (long userId = 1; userId <= sampleSize; userId++) {
+                long start = System.nanoTime();
+                RecommendationService.Ranking expected = sequential.rank(userId);
+                sequentialNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                RecommendationService.Ranking ranking = parallel.rank(userId);
+                parallelNanos += System.nanoTime() - start;
+
+                assertTrue(ranking.complete());
+                assertArrayEquals(expected.userIds(), ranking.userIds());
+                assertArrayEquals(expected.mutualConnections(), ranking.mutualConnections());
+                for (long recommendedId : ranking.userIds()) {
+                    assertFalse(graph.isFollowing(recommendedId, userId));
+                }
+            }
+            assertFalse(outOfTime.rank(1).complete());
+
+            // not a pass/fail benchmark
+            log.info("Ranked recommendations over {} follows, the {} most following users took {} us sequentially and {} us in parallel on average",
+                    follows.length, sampleSize, sequentialNanos / sampleSize / 1000, parallelNanos / sampleSize / 1000);
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+            outOfTime.shutdown();
+        }
+    }
+
+    private void  clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+}
@@ -0,0 +1,122 @@
+package com.communiverse.communiverse.services;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.communiverse.communiverse.config.SqlStatementBudgetConfig;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.communiverse.communiverse.repo.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static com.communiverse.communiverse.utils.SqlStatementCountUtils.countStatements;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "communiverse.sql.max-statements-per-request=1")
+@AutoConfigureMockMvc
+public class SqlStatementBudgetTest {
+
+    private final UserService userService;
+    private final PostService postService;
+    private final CommentService commentService;
+    private final MockMvc mockMvc;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+
+    private ListAppender<ILoggingEvent> listAppender;
+    private Logger logger;
+
+    @Autowired
+    SqlStatementBudgetTest(UserService userService, PostService postService, CommentService commentService,
+                           MockMvc mockMvc, UserRepository userRepository, PostRepository postRepository,
+                           CommentRepository commentRepository) {
+
+        this.userService = userService;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.mockMvc = mockMvc;
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+    }
+
+    @Test
+    public void testRequestOverBudgetIsLogged() throws Exception {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        Post post = createPost(user);
+        postService.createPost(post).block();
+        commentService.createComment(createComment(user, post)).block();
+
+        // counted in the scope of the request, though run on the persistence scheduler threads
+        long statements = countStatements(() -> performAsync("/api/posts/" + post.getId() + "/get?expand=author,comments,likes"));
+        assertTrue(statements > 1);
+        List<ILoggingEvent> warnings = warnings();
+        assertEquals(1, warnings.size());
+        assertEquals("GET /api/posts/{id}/get executed " + statements + " SQL statements, over the budget of 1",
+                warnings.get(0).getFormattedMessage());
+
+        listAppender.list.clear();
+        performAsync("/api/posts/" + post.getId() + "/get");
+        assertTrue(warnings().isEmpty());
+    }
+
+    @BeforeEach
+    void setUp() {
+        logger = (Logger) LoggerFactory.getLogger(SqlStatementBudgetConfig.class);
+        listAppender = new ListAppender<>();
+        listAppender.start();
+        logger.addAppender(listAppender);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        logger.detachAppender(listAppender);
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    private void performAsync(String uri) {
+        try {
+            MvcResult result = mockMvc.perform(get(uri))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<ILoggingEvent> warnings() {
+        return listAppender.list.stream()
+                .filter(event -> event.getLevel() == Level.WARN)
+                .toList();
+    }
+}
@@ -3,6 +3,7 @@ package com.communiverse.communiverse.services;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import com.communiverse.communiverse.dto.UserDto;
 import com.communiverse.communiverse.model.Comment;
 import com.communiverse.communiverse.model.Post;
 import com.communiverse.communiverse.model.User;
@@ -10,6 +11,7 @@ import com.communiverse.communiverse.model.like.Like;
 import com.communiverse.communiverse.model.like.LikeOnComment;
 import com.communiverse.communiverse.model.like.LikeOnPost;
 import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.utils.QueryStatisticsUtils.QueryStatistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,16 +19,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
 
 import static com.communiverse.communiverse.utils.CreateDataUtils.*;
+import static com.communiverse.communiverse.utils.QueryStatisticsUtils.countSelects;
 import static com.communiverse.communiverse.utils.VerificationResultsUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 //@Disabled("Disabled until issue #??? is fixed")
 @ActiveProfiles("test")
@@ -34,6 +46,8 @@ import static com.communiverse.communiverse.utils.VerificationResultsUtils.*;
 @SpringBootTest
 public class UserServiceTest {
 
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(UserServiceTest.class);
+
     private final UserService userService;
     private final PostService postService;
     private final LikeService likeService;
@@ -44,6 +58,7 @@ public class UserServiceTest {
     private final CommentRepository commentRepository;
     private final LikeOnPostRepository likeOnPostRepository;
     private final LikeOnCommentRepository likeOnCommentRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     private ListAppender<ILoggingEvent> listAppender;
     private Logger logger;
@@ -51,7 +66,8 @@ public class UserServiceTest {
     @Autowired
     UserServiceTest(UserRepository userRepository, UserService userService, CommentRepository commentRepository, CommentService commentService,
                     LikeOnCommentRepository likeOnCommentRepository, LikeOnPostRepository likeOnPostRepository,
-                    PostRepository postRepository, PostService postService, LikeService likeService) {
+                    PostRepository postRepository, PostService postService, LikeService likeService,
+                    JdbcTemplate jdbcTemplate) {
 
         this.userService = userService;
         this.postService = postService;
@@ -63,6 +79,7 @@ public class UserServiceTest {
         this.commentRepository = commentRepository;
         this.likeOnCommentRepository = likeOnCommentRepository;
         this.likeOnPostRepository = likeOnPostRepository;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @BeforeEach
@@ -78,12 +95,70 @@ public class UserServiceTest {
     @Test
     public void testGetUserById() {
         User user = createUser();
-        userService.createUser(user);
+        userService.createUser(user).block();
 
         Mono<User> userMono = userService.getUserEagerlyById(user.getId());
         verifyCreatedUser(user, userMono);
     }
 
+    @Test
+    public void testLoadHeavyUserWithoutCartesianProduct() {
+
+        final int NUMBER_OF_POSTS = 1000;
+        final int NUMBER_OF_COMMENTS = 5000;
+
+        // the user's posts and comments, each liked by the user, inserted directly for speed
+        User user = createUser();
+        userService.createUser(user).block();
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate("INSERT INTO post (title, content, user_id, created, modified) VALUES (?, ?, ?, ?, ?)",
+                IntStream.range(0, NUMBER_OF_POSTS)
+                        .mapToObj(i -> new Object[]{"title " + i, "content " + i, user.getId(),
+                                Timestamp.valueOf(now.plusNanos(i * 1000L)), Timestamp.valueOf(now)})
+                        .toList());
+        List<Long> postIds = jdbcTemplate.queryForList("SELECT p.id FROM post p WHERE p.user_id = ? ORDER BY p.id",
+                Long.class, user.getId());
+        jdbcTemplate.batchUpdate("INSERT INTO comment (content, user_id, post_id, created, modified) VALUES (?, ?, ?, ?, ?)",
+                IntStream.range(0, NUMBER_OF_COMMENTS)
+                        .mapToObj(i -> new Object[]{"comment " + i, user.getId(), postIds.get(i % NUMBER_OF_POSTS),
+                                Timestamp.valueOf(now.plusNanos(i * 1000L)), Timestamp.valueOf(now)})
+                        .toList());
+        List<Long> commentIds = jdbcTemplate.queryForList("SELECT c.id FROM comment c WHERE c.user_id = ? ORDER BY c.id",
+                Long.class, user.getId());
+        jdbcTemplate.batchUpdate("INSERT INTO like_post (user_id, post_id, created, modified) VALUES (?, ?, ?, ?)",
+                IntStream.range(0, NUMBER_OF_POSTS)
+                        .mapToObj(i -> new Object[]{user.getId(), postIds.get(i),
+                                Timestamp.valueOf(now.plusNanos(i * 1000L)), Timestamp.valueOf(now)})
+                        .toList());
+        jdbcTemplate.batchUpdate("INSERT INTO like_comment (user_id, comment_id, created, modified) VALUES (?, ?, ?, ?)",
+                IntStream.range(0, NUMBER_OF_COMMENTS)
+                        .mapToObj(i -> new Object[]{user.getId(), commentIds.get(i),
+                                Timestamp.valueOf(now.plusNanos(i * 1000L)), Timestamp.valueOf(now)})
+                        .toList());
+
+        AtomicReference<User> loadedUserReference = new AtomicReference<>();
+        long start = System.nanoTime();
+        QueryStatistics statistics = countSelects(jdbcTemplate,
+                () -> loadedUserReference.set(userService.getUserEagerlyById(user.getId()).block()));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        User loadedUser = loadedUserReference.get();
+
+        assertNotNull(loadedUser);
+        assertEquals(NUMBER_OF_POSTS, loadedUser.getPosts().size());
+        assertEquals(NUMBER_OF_COMMENTS, loadedUser.getComments().size());
+        assertEquals(NUMBER_OF_POSTS, loadedUser.getLikeOnPosts().size());
+        assertEquals(NUMBER_OF_COMMENTS, loadedUser.getLikeOnComments().size());
+
+        // a statement per collection, each row read at most twice: through the user and through its post or comment
+        long aggregateRows = 1 + 2L * NUMBER_OF_POSTS + 2L * NUMBER_OF_COMMENTS;
+        long cartesianRows = (long) NUMBER_OF_POSTS * NUMBER_OF_COMMENTS * NUMBER_OF_POSTS * NUMBER_OF_COMMENTS;
+        assertTrue(statistics.statements() <= 20, "Statements: " + statistics.statements());
+        assertTrue(statistics.rows() <= 2 * aggregateRows, "Rows: " + statistics.rows());
+        assertTrue(elapsedMs < 10_000, "Load took " + elapsedMs + " ms");
+        log.info("Heavy user loaded in {} ms with {} statements reading {} rows, joining the collections would read {} rows",
+                elapsedMs, statistics.statements(), statistics.rows(), cartesianRows);
+    }
+
     @Test
     public void testGetAllUsers() {
 
@@ -91,7 +166,7 @@ public class UserServiceTest {
 
         IntStream.range(0, NUMBER_OF_USERS)
                 .mapToObj(i -> createUser())
-                .forEach(userService::createUser);
+                .forEach(user -> userService.createUser(user).block());
 
         // Test getAllUsers method
         Flux<User> result = userService.getAllUsers();
@@ -100,6 +175,23 @@ public class UserServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testGetUsersPage() {
+
+        final int NUMBER_OF_USERS = 5;
+
+        IntStream.range(0, NUMBER_OF_USERS)
+                .mapToObj(i -> createUser())
+                .forEach(user -> userService.createUser(user).block());
+
+        UserDto lastUserOfFirstPage = userService.getUsersPage(null, 3).blockLast();
+        assert lastUserOfFirstPage != null;
+
+        StepVerifier.create(userService.getUsersPage(lastUserOfFirstPage.getId(), 3))
+                .expectNextCount(NUMBER_OF_USERS - 3)
+                .verifyComplete();
+    }
+
     @Test
     public void testCreateUser() {
         // Create a test user
@@ -120,77 +212,77 @@ public class UserServiceTest {
     public void testUpdateAllUserData() {
 
         User testedUser = createUser();
-        userService.createUser(testedUser);
+        userService.createUser(testedUser).block();
         User anyUser1 = createUser();
-        userService.createUser(anyUser1);
+        userService.createUser(anyUser1).block();
         User anyUser2 = createUser();
-        userService.createUser(anyUser2);
+        userService.createUser(anyUser2).block();
         User anyUser3 = createUser();
-        userService.createUser(anyUser3);
+        userService.createUser(anyUser3).block();
         User anyUser4 = createUser();
-        userService.createUser(anyUser4);
+        userService.createUser(anyUser4).block();
         User anyUser5 = createUser();
-        userService.createUser(anyUser5);
+        userService.createUser(anyUser5).block();
         User anyUser6 = createUser();
-        userService.createUser(anyUser6);
+        userService.createUser(anyUser6).block();
         User anyUser7 = createUser();
-        userService.createUser(anyUser7);
+        userService.createUser(anyUser7).block();
         User replyingUser = createUser();
-        userService.createUser(replyingUser);
+        userService.createUser(replyingUser).block();
 
         testedUser = userService.getUserEagerlyById(testedUser.getId()).block();
 
         Post post1 = createPost(testedUser);
-        postService.createPost(post1);
+        postService.createPost(post1).block();
         Post post2 = createPost(testedUser);
-        postService.createPost(post2);
+        postService.createPost(post2).block();
         Post post3 = createPost(testedUser);
-        postService.createPost(post3);
+        postService.createPost(post3).block();
         Post post4 = createPost(anyUser1);
-        postService.createPost(post4);
+        postService.createPost(post4).block();
 
         Comment comment1 = createComment(anyUser1, post1);
-        commentService.createComment(comment1);
+        commentService.createComment(comment1).block();
         Comment comment2 = createComment(anyUser2, post1);
-        commentService.createComment(comment2);
+        commentService.createComment(comment2).block();
         Comment comment3 = createComment(anyUser3, post1);
-        commentService.createComment(comment3);
+        commentService.createComment(comment3).block();
         Comment comment4 = createComment(anyUser4, post1);
-        commentService.createComment(comment4);
+        commentService.createComment(comment4).block();
 
         Comment comment5 = createComment(anyUser5, post2);
-        commentService.createComment(comment5);
+        commentService.createComment(comment5).block();
         Comment comment6 = createComment(anyUser6, post2);
-        commentService.createComment(comment6);
+        commentService.createComment(comment6).block();
         Comment comment7 = createComment(anyUser7, post2);
-        commentService.createComment(comment7);
+        commentService.createComment(comment7).block();
 
         Comment initialComment = createComment(replyingUser, post3);
-        commentService.createComment(initialComment);
+        commentService.createComment(initialComment).block();
         Comment commentWithReplies1 = createCommentReply(testedUser, initialComment);
-        commentService.createComment(commentWithReplies1);
+        commentService.createComment(commentWithReplies1).block();
         Comment commentWithReplies2 = createCommentReply(replyingUser, commentWithReplies1);
-        commentService.createComment(commentWithReplies2);
+        commentService.createComment(commentWithReplies2).block();
         Comment commentWithReplies3 = createCommentReply(testedUser, commentWithReplies2);
-        commentService.createComment(commentWithReplies3);
+        commentService.createComment(commentWithReplies3).block();
 
         LikeOnPost likeOnPost1 = createPostLike(anyUser3, post1);
-        likeService.createPostLike(likeOnPost1);
+        likeService.createPostLike(likeOnPost1).block();
         LikeOnPost likeOnPost2 = createPostLike(replyingUser, post1);
-        likeService.createPostLike(likeOnPost2);
+        likeService.createPostLike(likeOnPost2).block();
         LikeOnPost likeOnPost3 = createPostLike(anyUser4, post3);
-        likeService.createPostLike(likeOnPost3);
+        likeService.createPostLike(likeOnPost3).block();
         LikeOnPost likeOnPost4 = createPostLike(testedUser, post4);
-        likeService.createPostLike(likeOnPost4);
+        likeService.createPostLike(likeOnPost4).block();
 
         Comment likeOnComment1 = createCommentReply(anyUser7, initialComment);
-        commentService.createComment(likeOnComment1);
+        commentService.createComment(likeOnComment1).block();
         LikeOnComment likeOnComment2 = createCommentLike(anyUser6, commentWithReplies1);
-        likeService.createCommentLike(likeOnComment2);
+        likeService.createCommentLike(likeOnComment2).block();
         LikeOnComment likeOnComment3 = createCommentLike(anyUser7, initialComment);
-        likeService.createCommentLike(likeOnComment3);
+        likeService.createCommentLike(likeOnComment3).block();
         LikeOnComment likeOnComment4 = createCommentLike(testedUser, likeOnComment1);
-        likeService.createCommentLike(likeOnComment4);
+        likeService.createCommentLike(likeOnComment4).block();
 
 // TODO: need to understand why the error of Out of memory.; SQL statement happens in case when applying likes on its own comment or post
 
@@ -272,18 +364,18 @@ public class UserServiceTest {
     public void testAddAndRemoveFollowers() {
 
         User user = createUser();
-        userService.createUser(user);
+        userService.createUser(user).block();
         User follower1 = createUser();
-        userService.createUser(follower1);
+        userService.createUser(follower1).block();
         User follower2 = createUser();
-        userService.createUser(follower2);
+        userService.createUser(follower2).block();
         User follower3 = createUser();
-        userService.createUser(follower3);
+        userService.createUser(follower3).block();
 
         // Add followers to the user
-        userService.followUser(user.getId(), follower1.getId());
-        userService.followUser(user.getId(), follower2.getId());
-        userService.followUser(user.getId(), follower3.getId());
+        userService.followUser(user.getId(), follower1.getId()).block();
+        userService.followUser(user.getId(), follower2.getId()).block();
+        userService.followUser(user.getId(), follower3.getId()).block();
 
         Flux<User> followers = userService.getUserFollowers(user.getId());
         // Retrieve followers and verify
@@ -292,12 +384,137 @@ public class UserServiceTest {
                 .verifyComplete();
 
         // Remove follower from the user
-        userService.unfollowUser(user.getId(), follower3.getId());
+        userService.unfollowUser(user.getId(), follower3.getId()).block();
         // Retrieve followers and verify
         followers = userService.getUserFollowers(user.getId());
         StepVerifier.create(followers)
                 .expectNextCount(2)
                 .verifyComplete();
+
+        // following again is a no-op
+        userService.followUser(user.getId(), follower1.getId()).block();
+        StepVerifier.create(userService.getUserFollowerDtos(user.getId()))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        StepVerifier.create(userService.followUser(-1L, follower1.getId()))
+                .expectErrorMessage("No such user with id -1")
+                .verify();
+        StepVerifier.create(userService.followUser(user.getId(), user.getId()))
+                .expectErrorMessage("User " + user.getId() + " can't follow itself")
+                .verify();
+    }
+
+    @Test
+    public void testConcurrentFollowsOfTheSameUser() throws InterruptedException {
+
+        int threadsCount = 16;
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User follower = createUser();
+        userService.createUser(follower).block();
+
+        // the follows pass the NOT EXISTS guard together, those losing on the unique index are no-ops
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadsCount; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                userService.followUser(user.getId(), follower.getId()).block();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            assertDoesNotThrow(() -> future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(1, userService.getFollowerCount(user.getId()).block());
+        assertEquals(1, userService.getFollowingCount(follower.getId()).block());
+    }
+
+    @Test
+    public void testBatchFollow() {
+
+        User follower = createUser();
+        userService.createUser(follower).block();
+        User user1 = createUser();
+        userService.createUser(user1).block();
+        User user2 = createUser();
+        userService.createUser(user2).block();
+        User user3 = createUser();
+        userService.createUser(user3).block();
+
+        // duplicates and unknown users are skipped
+        StepVerifier.create(userService.followUsers(follower.getId(), List.of(user1.getId(), user2.getId(), user1.getId(), -1L)))
+                .expectNext(2)
+                .verifyComplete();
+        // already followed users and the follower itself are skipped
+        StepVerifier.create(userService.followUsers(follower.getId(), List.of(user2.getId(), user3.getId(), follower.getId())))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(userService.isFollowing(follower.getId(), follower.getId()))
+                .expectNext(false)
+                .verifyComplete();
+
+        StepVerifier.create(userService.isFollowing(user3.getId(), follower.getId()))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(userService.getUserFollowerDtos(user2.getId()))
+                .expectNextMatches(followerDto -> followerDto.getId().equals(follower.getId()))
+                .verifyComplete();
+
+        StepVerifier.create(userService.followUsers(-1L, List.of(user1.getId())))
+                .expectErrorMessage("No such follower with id -1")
+                .verify();
+    }
+
+    @Test
+    public void testFollowerCountsOfUpdatedAndDeletedUsers() {
+
+        User user = createUser();
+        userService.createUser(user).block();
+        User follower1 = createUser();
+        userService.createUser(follower1).block();
+        User follower2 = createUser();
+        userService.createUser(follower2).block();
+        User follower3 = createUser();
+        userService.createUser(follower3).block();
+
+        userService.updateUser(user.getId(), followersUpdate(follower1, follower2)).block();
+        assertEquals(2, userService.getFollowerCount(user.getId()).block());
+        assertEquals(1, userService.getFollowingCount(follower1.getId()).block());
+
+        userService.updateUser(user.getId(), followersUpdate(follower2, follower3)).block();
+        assertEquals(2, userService.getFollowerCount(user.getId()).block());
+        assertEquals(0, userService.getFollowingCount(follower1.getId()).block());
+        assertEquals(1, userService.getFollowingCount(follower3.getId()).block());
+
+        // the deleted user follows follower1 too, both ways are uncounted
+        userService.followUser(follower1.getId(), user.getId()).block();
+        assertEquals(1, userService.getFollowerCount(follower1.getId()).block());
+        userService.deleteUser(user.getId()).block();
+        assertEquals(0, userService.getFollowerCount(follower1.getId()).block());
+        assertEquals(0, userService.getFollowingCount(follower2.getId()).block());
+        assertEquals(0, userService.getFollowingCount(follower3.getId()).block());
+        StepVerifier.create(userService.isFollowing(follower1.getId(), user.getId()))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    // an update of the followers only, the other collections are left as they are
+    private static User followersUpdate(User... followers) {
+        User update = new User();
+        update.setPosts(null);
+        update.setComments(null);
+        update.setLikeOnPosts(null);
+        update.setLikeOnComments(null);
+        update.setFollowers(new HashSet<>(List.of(followers)));
+        return update;
     }
 
     private void setupLogger() {
@@ -0,0 +1,99 @@
+package com.communiverse.communiverse.utils;
+
+import com.communiverse.communiverse.dto.CommentDto;
+import com.communiverse.communiverse.dto.PostDto;
+import com.communiverse.communiverse.dto.UserDto;
+import com.communiverse.communiverse.model.Post;
+import com.communiverse.communiverse.model.User;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.communiverse.communiverse.utils.CreateDataUtils.createPost;
+import static com.communiverse.communiverse.utils.CreateDataUtils.createUser;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactJsonTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactJsonTest.class);
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 3, 1, 10, 0, 0);
+    private static final LocalDateTime MODIFIED = LocalDateTime.of(2024, 3, 2, 11, 30, 15, 123_000_000);
+
+    @Test
+    public void testSameJsonAsGson() {
+
+        PostDto post = new PostDto(1L, "title \"quoted\" <b>", "line\nnext\ttab \u0001 \u2028 ünï", null,
+                2L, "author", 3, 4, CREATED, MODIFIED);
+        UserDto user = new UserDto(2L, "author", "author@communiverse.com", null, null, 5, 6, CREATED, MODIFIED);
+        CommentDto comment = new CommentDto(7L, "c:\\path", 2L, "author", 1L, null, 0, 1,
+                LocalDateTime.of(1999, 12, 31, 23, 59, 59, 1), LocalDateTime.of(12024, 1, 1, 0, 0));
+
+        for (Object dto : List.of(post, user, comment)) {
+            String json = CompactJson.toJson(dto);
+            assertEquals(JsonParser.parseString(JsonUtils.toJson(dto)), JsonParser.parseString(json));
+            assertFalse(json.contains("\n"));
+        }
+        assertEquals(JsonParser.parseString(JsonUtils.toJson(List.of(post, user))),
+                JsonParser.parseString(CompactJson.toJson(List.of(post, user))));
+
+        // dates are read back in the format they're written
+        PostDto parsedPost = JsonUtils.fromJson(CompactJson.toJson(post), PostDto.class);
+        assertEquals(CREATED, parsedPost.getCreated());
+        assertEquals(MODIFIED, parsedPost.getModified());
+        assertEquals(post.getContent(), parsedPost.getContent());
+
+        String error = "BAD REQUEST, Status: 400, Error: \"invalid\"";
+        assertEquals(error, JsonParser.parseString(CompactJson.toJson(error)).getAsString());
+        assertEquals("null", CompactJson.toJson(null));
+    }
+
+    @Test
+    public void testEntitiesWrittenLikeTheirDtos() {
+
+        User user = createUser();
+        user.setId(2L);
+        Post post = createPost(user);
+        post.setId(1L);
+
+        JsonObject postJson = JsonParser.parseString(CompactJson.toJson(post)).getAsJsonObject();
+        assertEquals(JsonParser.parseString(CompactJson.toJson(PostDto.of(post))), postJson);
+        assertFalse(postJson.has("comments"));
+        assertEquals(JsonParser.parseString(CompactJson.toJson(UserDto.of(user))),
+                JsonParser.parseString(CompactJson.toJson(user)));
+        assertFalse(CompactJson.toJson(user).contains("password"));
+    }
+
+    @Test
+    public void testCompactJsonFasterThanGson() {
+
+        PostDto post = new PostDto(1L, "title", "content of the post", null, 2L, "author", 3, 4, CREATED, MODIFIED);
+        int conversions = 200_000;
+        // warm up both
+        for (int i = 0; i < conversions; i++) {
+            CompactJson.toJson(post);
+            JsonUtils.toJson(post);
+        }
+
+        // not a pass/fail benchmark, the JMH one is
+        long start = System.nanoTime();
+        long length = 0;
+        for (int i = 0; i < conversions; i++) {
+            length += CompactJson.toJson(post).length();
+        }
+        long compactNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < conversions; i++) {
+            length += JsonUtils.toJson(post).length();
+        }
+        long gsonNanos = System.nanoTime() - start;
+        assertTrue(length > 0);
+        log.info("Post DTO to JSON took {} ns with CompactJson, {} ns with JsonUtils on average",
+                compactNanos / conversions, gsonNanos / conversions);
+    }
+}
@@ -0,0 +1,33 @@
+package com.communiverse.communiverse.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+public class QueryStatisticsUtils {
+
+    public record QueryStatistics(long statements, long rows) {
+    }
+
+    /**
+     * Runs the action with H2 query statistics on, counting the SELECT statements it executed and the rows they returned.
+     * The statistics are database-wide, so statements run concurrently by other threads are counted too.
+     */
+    public static @NotNull QueryStatistics countSelects(@NotNull JdbcTemplate jdbcTemplate, @NotNull Runnable action) {
+        // turning the statistics off drops the collected ones
+        jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        jdbcTemplate.execute("SET QUERY_STATISTICS TRUE");
+        try {
+            action.run();
+            Map<String, Object> statistics = jdbcTemplate.queryForMap("SELECT " +
+                    "COALESCE(SUM(s.EXECUTION_COUNT), 0) AS statements, COALESCE(SUM(s.CUMULATIVE_ROW_COUNT), 0) AS row_count " +
+                    "FROM INFORMATION_SCHEMA.QUERY_STATISTICS s " +
+                    "WHERE LOWER(s.SQL_STATEMENT) LIKE 'select%' AND LOWER(s.SQL_STATEMENT) NOT LIKE '%query_statistics%'");
+            return new QueryStatistics(((Number) statistics.get("STATEMENTS")).longValue(),
+                    ((Number) statistics.get("ROW_COUNT")).longValue());
+        } finally {
+            jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.communiverse.communiverse.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SqlStatementCountUtils {
+
+    /**
+     * Runs the action in its own {@link SqlStatementCounter} scope, counting the JDBC statements it executed, reads and
+     * writes, including those deferred to the persistence scheduler. Unlike {@link QueryStatisticsUtils}, statements
+     * run by unrelated threads are not counted.
+     */
+    public static long countStatements(@NotNull Runnable action) {
+        SqlStatementCounter.Scope scope = SqlStatementCounter.newScope();
+        SqlStatementCounter.Activation activation = scope.activate();
+        try {
+            action.run();
+        } finally {
+            activation.close();
+        }
+        return scope.getStatements();
+    }
+
+    public static void assertStatementCount(long expected, @NotNull Runnable action) {
+        assertEquals(expected, countStatements(action), "Number of SQL statements mismatch");
+    }
+}
@@ -0,0 +1,477 @@
+package com.communiverse.communiverse.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes a synthetic social graph of configurable scale straight to the DB with JDBC batches, H2 or MySQL alike
+ * (add {@code rewriteBatchedStatements=true} to a MySQL URL to have the batches sent as multi-row inserts).
+ * The same seed and scale always write the same rows, only shifted by the ids already in the tables.
+ * <ul>
+ *     <li>Follower counts follow a power law: the user of rank r has {@code maxFollowers / r^followerExponent}
+ *     followers, rank 1 being the celebrity.</li>
+ *     <li>Post likes and comments are Zipf distributed over the posts, the post of rank 1 being the most liked and
+ *     the most commented. Comment likes are Zipf distributed over the comments in the same order.</li>
+ *     <li>The likers of a post are spread over all the users but start at a user picked by a Zipf distribution of
+ *     their activity, so low ranked users like far more than the others.</li>
+ *     <li>A comment replies to the previous comment of its post with {@code replyProbability}, and a chain of
+ *     {@code deepReplyChain} replies hangs below the first comment of the post of rank 1.</li>
+ * </ul>
+ * The engagement counters and the comment closure rows are written consistent with the generated rows, the ids
+ * generated afterwards follow the written ones. The rows are written behind Hibernate and the in-memory views of a
+ * running application: reload its follower graph and evict its caches before using them.
+ */
+public class SyntheticDataGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] WORDS = ("lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod " +
+            "tempor incididunt ut labore et dolore magna aliqua enim ad minim veniam quis nostrud exercitation").split(" ");
+
+    // independent random streams, so changing one part of the scale doesn't reshuffle the others
+    private static final long FOLLOWS = 1;
+    private static final long POSTS = 2;
+    private static final long POST_LIKES = 3;
+    private static final long COMMENTS = 4;
+    private static final long COMMENT_LIKES = 5;
+
+    /**
+     * Sizes and shapes of the generated data, the defaults write a few tens of thousands of rows in seconds.
+     */
+    public static final class Scale {
+
+        private long seed = 42;
+        private int users = 1_000;
+        private int maxFollowers = 200;
+        private double followerExponent = 1.0;
+        private int posts = 5_000;
+        private long postLikes = 20_000;
+        private long comments = 10_000;
+        private double popularityExponent = 1.0;
+        private double activityExponent = 1.0;
+        private double replyProbability = 0.3;
+        private int deepReplyChain = 50;
+        private long commentLikes = 10_000;
+        private int batchSize = 5_000;
+
+        public static @NotNull Scale defaults() {
+            return new Scale();
+        }
+
+        public Scale seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Scale users(int users) {
+            this.users = users;
+            return this;
+        }
+
+        // followers of the most followed user, capped at the other users
+        public Scale maxFollowers(int maxFollowers) {
+            this.maxFollowers = maxFollowers;
+            return this;
+        }
+
+        public Scale followerExponent(double followerExponent) {
+            this.followerExponent = followerExponent;
+            return this;
+        }
+
+        public Scale posts(int posts) {
+            this.posts = posts;
+            return this;
+        }
+
+        // about that many, the Zipf shares are rounded down and capped at one like per user and post
+        public Scale postLikes(long postLikes) {
+            this.postLikes = postLikes;
+            return this;
+        }
+
+        // about that many, the Zipf shares are rounded down, not counting the deep reply chain
+        public Scale comments(long comments) {
+            this.comments = comments;
+            return this;
+        }
+
+        // skew of the post likes, post comments and comment likes
+        public Scale popularityExponent(double popularityExponent) {
+            this.popularityExponent = popularityExponent;
+            return this;
+        }
+
+        // skew of the users liking
+        public Scale activityExponent(double activityExponent) {
+            this.activityExponent = activityExponent;
+            return this;
+        }
+
+        public Scale replyProbability(double replyProbability) {
+            this.replyProbability = replyProbability;
+            return this;
+        }
+
+        public Scale deepReplyChain(int deepReplyChain) {
+            this.deepReplyChain = deepReplyChain;
+            return this;
+        }
+
+        public Scale commentLikes(long commentLikes) {
+            this.commentLikes = commentLikes;
+            return this;
+        }
+
+        public Scale batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+    }
+
+    /**
+     * The ids and row counts written. Ids are consecutive, in rank order.
+     */
+    public record Dataset(long firstUserId, int users, long firstPostId, int posts, long firstCommentId, long comments,
+                          long follows, long postLikes, long commentLikes, long durationMs) {
+
+        // rank 1 is the most followed user
+        public long userId(int rank) {
+            return firstUserId + rank - 1;
+        }
+
+        // rank 1 is the most liked and commented post
+        public long postId(int rank) {
+            return firstPostId + rank - 1;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SyntheticDataGenerator(@NotNull JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public @NotNull Dataset generate(@NotNull Scale scale) {
+        if (scale.users < 2 && (scale.maxFollowers > 0 || scale.posts > 0)) {
+            throw new IllegalArgumentException("At least 2 users are needed to generate follows, posts and likes");
+        }
+        long start = System.nanoTime();
+        long firstUserId = nextId("user");
+        long firstPostId = nextId("post");
+        long firstCommentId = nextId("comment");
+
+        long follows = writeUsers(scale, firstUserId);
+        Counts counts = writePosts(scale, firstUserId, firstPostId, firstCommentId);
+        for (String table : List.of("user", "post", "comment")) {
+            IdentityUtils.moveIdentityPastMaxId(jdbcTemplate, table);
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        Dataset dataset = new Dataset(firstUserId, scale.users, firstPostId, scale.posts, firstCommentId,
+                counts.comments, follows, counts.postLikes, counts.commentLikes, durationMs);
+        log.info("Generated {}", dataset);
+        return dataset;
+    }
+
+    private long writeUsers(@NotNull Scale scale, long firstUserId) {
+        int[] followerCounts = new int[scale.users];
+        int[] followingCounts = new int[scale.users];
+        long follows = 0;
+        for (int user = 0; user < scale.users; user++) {
+            followerCounts[user] = followerCount(scale, user + 1);
+            follows += followerCounts[user];
+            forEachFollower(scale, user, followerCounts[user], follower -> followingCounts[follower]++);
+        }
+
+        BatchWriter users = new BatchWriter(scale.batchSize, "INSERT INTO user (id, username, email, password, " +
+                "profile_picture, last_login, follower_count, following_count, created, modified) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        for (int user = 0; user < scale.users; user++) {
+            long id = firstUserId + user;
+            Timestamp created = timestamp(user);
+            users.add(id, "synthetic_" + id, "synthetic_" + id + "@communiverse.com", "password_" + id,
+                    "picture_" + id + ".png", created, followerCounts[user], followingCounts[user], created, created);
+        }
+        users.flush();
+
+        // a row of user_followers means followed_id follows follower_id
+        BatchWriter followers = new BatchWriter(scale.batchSize,
+                "INSERT INTO user_followers (follower_id, followed_id) VALUES (?, ?)");
+        for (int user = 0; user < scale.users; user++) {
+            long userId = firstUserId + user;
+            forEachFollower(scale, user, followerCounts[user], follower -> followers.add(userId, firstUserId + follower));
+        }
+        followers.flush();
+        return follows;
+    }
+
+    private @NotNull Counts writePosts(@NotNull Scale scale, long firstUserId, long firstPostId, long firstCommentId) {
+        Zipf popularity = new Zipf(scale.posts, scale.popularityExponent, false);
+        Zipf commentPopularity = new Zipf(scale.comments, scale.popularityExponent, false);
+        Zipf activity = new Zipf(scale.users, scale.activityExponent, true);
+
+        BatchWriter posts = new BatchWriter(scale.batchSize, "INSERT INTO post (id, title, content, image, user_id, " +
+                "like_count, comment_count, created, modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        BatchWriter postLikes = new BatchWriter(scale.batchSize,
+                "INSERT INTO like_post (user_id, post_id, created, modified) VALUES (?, ?, ?, ?)", posts);
+        BatchWriter comments = new BatchWriter(scale.batchSize, "INSERT INTO comment (id, content, user_id, post_id, " +
+                "parent_comment_id, like_count, reply_count, created, modified) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", posts);
+        BatchWriter closure = new BatchWriter(scale.batchSize,
+                "INSERT INTO comment_closure (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)", comments);
+        BatchWriter commentLikes = new BatchWriter(scale.batchSize,
+                "INSERT INTO like_comment (user_id, comment_id, created, modified) VALUES (?, ?, ?, ?)", comments);
+
+        Counts counts = new Counts();
+        long nextCommentId = firstCommentId;
+        for (int post = 0; post < scale.posts; post++) {
+            int rank = post + 1;
+            long postId = firstPostId + post;
+            SplittableRandom random = random(scale, POSTS, post);
+            long authorId = firstUserId + random.nextInt(scale.users);
+            Timestamp created = timestamp(scale.users + post);
+
+            int likeCount = (int) Math.min(popularity.share(rank, scale.postLikes), scale.users);
+            int commentCount = (int) popularity.share(rank, scale.comments) + (rank == 1 ? scale.deepReplyChain : 0);
+            int[] parents = replyParents(scale, random(scale, COMMENTS, post), commentCount, rank == 1);
+            int[] replyCounts = new int[commentCount];
+            for (int parent : parents) {
+                if (parent >= 0) {
+                    replyCounts[parent]++;
+                }
+            }
+
+            posts.add(postId, "Post " + postId, text(random, 5, 60), "image_" + postId + ".png", authorId,
+                    likeCount, commentCount, created, created);
+
+            forEachLiker(scale, activity, random(scale, POST_LIKES, post), likeCount, (liker, index) ->
+                    postLikes.add(firstUserId + liker, postId, timestamp(created, index), timestamp(created, index)));
+            counts.postLikes += likeCount;
+
+            for (int comment = 0; comment < commentCount; comment++) {
+                long commentId = nextCommentId + comment;
+                long commentIndex = commentId - firstCommentId;
+                SplittableRandom commentRandom = random(scale, COMMENT_LIKES, commentIndex);
+                int commentLikeCount = (int) Math.min(commentPopularity.share(commentIndex + 1, scale.commentLikes),
+                        scale.users);
+                Timestamp commentCreated = timestamp(created, comment + 1);
+
+                comments.add(commentId, text(commentRandom, 3, 30), firstUserId + commentRandom.nextInt(scale.users),
+                        postId, parents[comment] < 0 ? null : nextCommentId + parents[comment], commentLikeCount,
+                        replyCounts[comment], commentCreated, commentCreated);
+
+                // the comment itself at depth 0, then its ancestors up to the top level one
+                int depth = 0;
+                for (int ancestor = comment; ancestor >= 0; ancestor = parents[ancestor]) {
+                    closure.add(nextCommentId + ancestor, commentId, depth++);
+                }
+
+                forEachLiker(scale, activity, commentRandom, commentLikeCount, (liker, index) -> commentLikes.add(
+                        firstUserId + liker, commentId, timestamp(commentCreated, index), timestamp(commentCreated, index)));
+                counts.commentLikes += commentLikeCount;
+            }
+            nextCommentId += commentCount;
+            counts.comments += commentCount;
+        }
+        for (BatchWriter writer : List.of(posts, postLikes, comments, closure, commentLikes)) {
+            writer.flush();
+        }
+        return counts;
+    }
+
+    private static int followerCount(@NotNull Scale scale, int rank) {
+        return (int) Math.min(scale.users - 1, Math.floor(scale.maxFollowers / Math.pow(rank, scale.followerExponent)));
+    }
+
+    // distinct followers other than the user, visited in the same order for the same seed
+    private static void forEachFollower(@NotNull Scale scale, int user, int followerCount, @NotNull IntConsumer action) {
+        if (followerCount == 0) {
+            return;
+        }
+        int others = scale.users - 1;
+        SplittableRandom random = random(scale, FOLLOWS, user);
+        long first = random.nextInt(others);
+        long stride = coprimeStride(random, others);
+        for (int i = 0; i < followerCount; i++) {
+            int other = (int) ((first + i * stride) % others);
+            action.accept(other < user ? other : other + 1);
+        }
+    }
+
+    @FunctionalInterface
+    private interface LikerAction {
+        void accept(int liker, int index);
+    }
+
+    // distinct users, the first one picked by activity
+    private static void forEachLiker(@NotNull Scale scale, @NotNull Zipf activity, @NotNull SplittableRandom random,
+                                     int likeCount, @NotNull LikerAction action) {
+        if (likeCount == 0) {
+            return;
+        }
+        long first = activity.sample(random) - 1;
+        long stride = coprimeStride(random, scale.users);
+        for (int i = 0; i < likeCount; i++) {
+            action.accept((int) ((first + i * stride) % scale.users), i);
+        }
+    }
+
+    // the index of the comment each comment replies to, -1 for top level comments
+    private static int @NotNull [] replyParents(@NotNull Scale scale, @NotNull SplittableRandom random,
+                                                int commentCount, boolean withDeepChain) {
+        int[] parents = new int[commentCount];
+        int chainStart = withDeepChain ? commentCount - scale.deepReplyChain : commentCount;
+        for (int comment = 0; comment < commentCount; comment++) {
+            if (comment > chainStart) {
+                parents[comment] = comment - 1;
+            } else if (comment == chainStart) {
+                // the deep chain starts below the first comment of the post
+                parents[comment] = comment == 0 ? -1 : 0;
+            } else {
+                parents[comment] = comment > 0 && random.nextDouble() < scale.replyProbability ? comment - 1 : -1;
+            }
+        }
+        return parents;
+    }
+
+    // a stride visiting all the values modulo n once
+    private static long coprimeStride(@NotNull SplittableRandom random, int n) {
+        if (n == 1) {
+            return 1;
+        }
+        int stride = 1 + random.nextInt(n - 1);
+        while (gcd(stride, n) != 1) {
+            stride = stride % (n - 1) + 1;
+        }
+        return stride;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    private static @NotNull SplittableRandom random(@NotNull Scale scale, long stream, long index) {
+        return new SplittableRandom(scale.seed * 1_000_003L + stream * 7_919L + index * 0x9E3779B97F4A7C15L);
+    }
+
+    private static @NotNull String text(@NotNull SplittableRandom random, int minWords, int maxWords) {
+        int words = minWords + random.nextInt(maxWords - minWords + 1);
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    // a minute apart for each index, so the rows sort by creation like by id
+    private static @NotNull Timestamp timestamp(long index) {
+        return Timestamp.valueOf(EPOCH.plusMinutes(index));
+    }
+
+    private static @NotNull Timestamp timestamp(@NotNull Timestamp start, long seconds) {
+        return new Timestamp(start.getTime() + seconds * 1000);
+    }
+
+    private long nextId(@NotNull String table) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return maxId == null ? 1 : maxId + 1;
+    }
+
+    private static final class Counts {
+        private long comments;
+        private long postLikes;
+        private long commentLikes;
+    }
+
+    /**
+     * Zipf distribution over ranks 1 to n. Only the sampled ones keep the cumulative weights, n values.
+     */
+    private static final class Zipf {
+
+        private final long n;
+        private final double exponent;
+        private final double totalWeight;
+        private final double[] cumulative;
+
+        private Zipf(long n, double exponent, boolean sampled) {
+            this.n = n;
+            this.exponent = exponent;
+            this.cumulative = sampled ? new double[(int) n] : null;
+            double sum = 0;
+            for (long rank = 1; rank <= n; rank++) {
+                sum += weight(rank);
+                if (sampled) {
+                    cumulative[(int) rank - 1] = sum;
+                }
+            }
+            this.totalWeight = sum;
+        }
+
+        // the share of the total going to the rank, rounded down
+        private long share(long rank, long total) {
+            return rank > n ? 0 : (long) (total * weight(rank) / totalWeight);
+        }
+
+        private int sample(@NotNull SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * totalWeight);
+            return Math.min((index >= 0 ? index : -index - 1) + 1, (int) n);
+        }
+
+        private double weight(long rank) {
+            return 1 / Math.pow(rank, exponent);
+        }
+    }
+
+    /**
+     * Collects the rows of an INSERT and writes them in JDBC batches. The writers the rows depend on by foreign key
+     * are flushed first.
+     */
+    private final class BatchWriter {
+
+        private final int batchSize;
+        private final String sql;
+        private final List<BatchWriter> dependencies;
+        private final List<Object[]> rows;
+
+        private BatchWriter(int batchSize, @NotNull String sql, BatchWriter @NotNull ... dependencies) {
+            this.batchSize = batchSize;
+            this.sql = sql;
+            this.dependencies = List.of(dependencies);
+            this.rows = new ArrayList<>(batchSize);
+        }
+
+        private void add(Object @NotNull ... row) {
+            rows.add(row);
+            if (rows.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            dependencies.forEach(BatchWriter::flush);
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.communiverse.communiverse.utils;
+
+import com.communiverse.communiverse.repo.*;
+import com.communiverse.communiverse.services.FollowerGraphService;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Dataset;
+import com.communiverse.communiverse.utils.SyntheticDataGenerator.Scale;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class SyntheticDataGeneratorTest {
+
+    private static final int DEEP_REPLY_CHAIN = 40;
+    private static final Scale SCALE = Scale.defaults()
+            .users(200)
+            .maxFollowers(150)
+            .posts(300)
+            .postLikes(3000)
+            .comments(1500)
+            .deepReplyChain(DEEP_REPLY_CHAIN)
+            .commentLikes(1000)
+            .batchSize(100);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FollowerGraphService followerGraphService;
+    private final SyntheticDataGenerator generator;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeOnPostRepository likeOnPostRepository;
+    private final LikeOnCommentRepository likeOnCommentRepository;
+
+    @Autowired
+    SyntheticDataGeneratorTest(JdbcTemplate jdbcTemplate, FollowerGraphService followerGraphService,
+                               UserRepository userRepository, PostRepository postRepository,
+                               CommentRepository commentRepository, LikeOnPostRepository likeOnPostRepository,
+                               LikeOnCommentRepository likeOnCommentRepository) {
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.followerGraphService = followerGraphService;
+        this.generator = new SyntheticDataGenerator(jdbcTemplate);
+
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeOnPostRepository = likeOnPostRepository;
+        this.likeOnCommentRepository = likeOnCommentRepository;
+    }
+
+    @AfterEach
+    void cleanUp() {
+        clearTestData();
+    }
+
+    @Test
+    public void testGeneratedShapes() {
+
+        // like on an empty DB, the ids to write haven't been generated yet
+        for (String table : List.of("user", "post", "comment")) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH 1");
+        }
+        Dataset dataset = generator.generate(SCALE);
+
+        assertEquals(dataset.users(), count("SELECT COUNT(*) FROM user"));
+        assertEquals(dataset.posts(), count("SELECT COUNT(*) FROM post"));
+        assertEquals(dataset.comments(), count("SELECT COUNT(*) FROM comment"));
+        assertEquals(dataset.follows(), count("SELECT COUNT(*) FROM user_followers"));
+        assertEquals(dataset.postLikes(), count("SELECT COUNT(*) FROM like_post"));
+        assertEquals(dataset.commentLikes(), count("SELECT COUNT(*) FROM like_comment"));
+
+        // power law follower counts, the celebrity first
+        assertEquals(150, count("SELECT follower_count FROM user WHERE id = " + dataset.userId(1)));
+        assertEquals(75, count("SELECT follower_count FROM user WHERE id = " + dataset.userId(2)));
+        assertEquals(50, count("SELECT follower_count FROM user WHERE id = " + dataset.userId(3)));
+        // Zipf popularity, the deep reply chain hangs below the most commented post
+        assertEquals(dataset.postId(1), count("SELECT id FROM post ORDER BY like_count DESC, id LIMIT 1"));
+        assertEquals(dataset.postId(1), count("SELECT id FROM post ORDER BY comment_count DESC, id LIMIT 1"));
+        assertTrue(count("SELECT MAX(depth) FROM comment_closure") >= DEEP_REPLY_CHAIN);
+        // active users like far more than their share
+        assertTrue(count("SELECT MAX(likes) FROM (SELECT COUNT(*) AS likes FROM like_post GROUP BY user_id) l")
+                > 3 * dataset.postLikes() / dataset.users());
+
+        // the counters match the rows
+        assertEquals(0, count("SELECT COUNT(*) FROM post p WHERE " +
+                "like_count <> (SELECT COUNT(*) FROM like_post l WHERE l.post_id = p.id) OR " +
+                "comment_count <> (SELECT COUNT(*) FROM comment c WHERE c.post_id = p.id)"));
+        assertEquals(0, count("SELECT COUNT(*) FROM comment c WHERE " +
+                "like_count <> (SELECT COUNT(*) FROM like_comment l WHERE l.comment_id = c.id) OR " +
+                "reply_count <> (SELECT COUNT(*) FROM comment r WHERE r.parent_comment_id = c.id)"));
+        assertEquals(0, count("SELECT COUNT(*) FROM user u WHERE " +
+                "follower_count <> (SELECT COUNT(*) FROM user_followers f WHERE f.follower_id = u.id) OR " +
+                "following_count <> (SELECT COUNT(*) FROM user_followers f WHERE f.followed_id = u.id)"));
+        // the closure rows match the reply tree
+        assertEquals(count("WITH RECURSIVE paths (ancestor_id, descendant_id, depth) AS (" +
+                        "SELECT c.id, c.id, 0 FROM comment c UNION ALL " +
+                        "SELECT p.ancestor_id, c.id, p.depth + 1 FROM paths p JOIN comment c ON c.parent_comment_id = p.descendant_id) " +
+                        "SELECT COUNT(*) FROM paths"),
+                count("SELECT COUNT(*) FROM comment_closure"));
+
+        followerGraphService.load();
+        assertEquals(150, followerGraphService.getFollowerCount(dataset.userId(1)));
+
+        // new rows don't collide with the generated ids
+        jdbcTemplate.update("INSERT INTO user (username, email, password, created, modified) " +
+                "VALUES ('new', 'new@communiverse.com', 'password', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+        assertEquals(dataset.userId(dataset.users() + 1), count("SELECT id FROM user WHERE username = 'new'"));
+    }
+
+    @Test
+    public void testSameSeedSameData() {
+
+        generator.generate(SCALE);
+        List<Map<String, Object>> firstRun = readRows();
+        clearTestData();
+
+        generator.generate(SCALE);
+        assertEquals(firstRun, readRows());
+
+        clearTestData();
+        generator.generate(Scale.defaults().users(200).maxFollowers(150).posts(300).seed(7));
+        assertNotEquals(firstRun, readRows());
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    // without the generated like ids, they aren't reset between runs
+    private List<Map<String, Object>> readRows() {
+        return jdbcTemplate.queryForList("SELECT 'user_followers' AS t, follower_id AS a, followed_id AS b, 0 AS c FROM user_followers " +
+                "UNION ALL SELECT 'post', id, user_id, like_count FROM post " +
+                "UNION ALL SELECT 'comment', id, COALESCE(parent_comment_id, 0), user_id FROM comment " +
+                "UNION ALL SELECT 'like_post', post_id, user_id, 0 FROM like_post " +
+                "UNION ALL SELECT 'like_comment', comment_id, user_id, 0 FROM like_comment " +
+                "ORDER BY 1, 2, 3");
+    }
+
+    private void clearTestData() {
+        likeOnCommentRepository.deleteAllInBatch();
+        likeOnPostRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        followerGraphService.load();
+    }
+}